@@ -0,0 +1,75 @@
+package cz.cuni.mff.golyshet.benchmark;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.automaton.DFA;
+import cz.cuni.mff.golyshet.automaton.NFA;
+import cz.cuni.mff.golyshet.automaton.Transition;
+
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * Random automata used as inputs of the benchmarks.
+ * The automata are generated from a fixed seed, so every run measures the same inputs.
+ */
+public final class BenchmarkAutomata {
+    private BenchmarkAutomata() {
+    }
+
+    /**
+     * Generates a random DFA
+     * @param states number of states
+     * @param symbols size of the alphabet
+     * @param density probability that a state has a transition on a symbol
+     * @param seed of the random generator
+     * @return random DFA with the initial state 0
+     */
+    public static DFA dfa(int states, int symbols, double density, long seed) {
+        DFA automaton = new DFA();
+        fill(automaton, states, symbols, density, 1, seed);
+        return automaton;
+    }
+
+    /**
+     * Generates a random NFA
+     * @param states number of states
+     * @param symbols size of the alphabet
+     * @param density probability that a state has a transition on a symbol
+     * @param seed of the random generator
+     * @return random NFA with the initial state 0 and up to two targets per state and symbol
+     */
+    public static NFA nfa(int states, int symbols, double density, long seed) {
+        NFA automaton = new NFA();
+        fill(automaton, states, symbols, density, 2, seed);
+        return automaton;
+    }
+
+    /**
+     * Fills the empty automaton with random states and transitions, every fourth state is final
+     */
+    private static void fill(Automaton automaton, int states, int symbols, double density, int targets, long seed) {
+        Random random = new Random(seed);
+        for (int symbol = 0; symbol < symbols; symbol++)
+            automaton.getAlphabet().add(symbol(symbol));
+        for (int state = 0; state < states; state++) {
+            automaton.getStates().add(state);
+            if (state % 4 == 3)
+                automaton.getFinalStates().add(state);
+            for (int symbol = 0; symbol < symbols; symbol++) {
+                for (int target = 0; target < targets; target++) {
+                    if (random.nextDouble() < density)
+                        automaton.getTransitionTable().computeIfAbsent(state, k -> new HashSet<>())
+                                .add(Transition.of(symbol(symbol), random.nextInt(states)));
+                }
+            }
+        }
+        automaton.getInitialStates().add(0);
+    }
+
+    /**
+     * @return name of the symbol with the given index
+     */
+    private static String symbol(int index) {
+        return "s" + index;
+    }
+}
@@ -0,0 +1,68 @@
+package cz.cuni.mff.golyshet.benchmark;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.automaton.BatchMatcher;
+import cz.cuni.mff.golyshet.automaton.BitParallelNFA;
+import cz.cuni.mff.golyshet.generator.Generator;
+import cz.cuni.mff.golyshet.operation.Determinization;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Check of the bit-parallel NFA simulation: the words accepted by BitParallelNFA must be the words accepted by the DFA
+ * matcher of the determinized automaton. The NFAs are generated from consecutive seeds, with epsilon transitions
+ * and up to 100 states, so the bitsets have several longs, and the NFAs of the n-th symbol from the end are linear chains
+ * simulated by Shift-And. The words are random, with some symbols outside the alphabet.
+ * Usage: java -cp target/benchmarks.jar cz.cuni.mff.golyshet.benchmark.BitParallelCheck [automata] [first seed]
+ * The program prints the seeds of the automata with different results and ends with the exit code 1 if there are any.
+ */
+public class BitParallelCheck {
+    // Number of words run by both matchers for every automaton
+    private static final int WORDS = 500;
+
+    public static void main(String[] args) {
+        int automata = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        int failed = 0;
+        int shiftAnd = 0;
+        for (int n = 1; n <= 12; n++) {
+            BitParallelNFA simulator = new BitParallelNFA(Generator.nthSymbolFromEnd(n));
+            if (simulator.isShiftAnd())
+                shiftAnd++;
+            if (!same(simulator, Generator.nthSymbolFromEnd(n), 2, new Random(n))) {
+                System.out.println("Different results for the " + n + "-th symbol from the end");
+                failed++;
+            }
+        }
+        for (int automaton = 0; automaton < automata; automaton++, seed++) {
+            Generator generator = new Generator(seed);
+            int symbols = 1 + (int) (seed % 3);
+            Automaton nfa = generator.randomNFA(2 + (int) (seed % 99), symbols, 1.2 / symbols, 0.1, 0.2);
+            if (!same(new BitParallelNFA(nfa), nfa, symbols, new Random(seed))) {
+                System.out.println("Different results for the seed " + seed);
+                failed++;
+            }
+        }
+        System.out.println((automata + 12) + " automata, " + shiftAnd + " by Shift-And, " + failed + " different");
+        if (failed > 0)
+            System.exit(1);
+    }
+
+    /**
+     * @return true if both matchers accept the same random words
+     */
+    private static boolean same(BitParallelNFA simulator, Automaton nfa, int symbols, Random random) {
+        BatchMatcher matcher = new BatchMatcher(new Determinization().apply(List.of(nfa)));
+        for (int i = 0; i < WORDS; i++) {
+            List<String> word = new ArrayList<>();
+            for (int length = random.nextInt(16); length > 0; length--)
+                // One symbol more than the alphabet, which neither automaton has
+                word.add(Generator.symbol(random.nextInt(random.nextInt(20) == 0 ? symbols + 1 : symbols)));
+            if (simulator.accepts(word) != matcher.matches(matcher.encode(word)))
+                return false;
+        }
+        return true;
+    }
+}
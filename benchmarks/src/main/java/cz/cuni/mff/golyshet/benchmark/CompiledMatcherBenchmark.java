@@ -0,0 +1,70 @@
+package cz.cuni.mff.golyshet.benchmark;
+
+import cz.cuni.mff.golyshet.automaton.BatchMatcher;
+import cz.cuni.mff.golyshet.automaton.CompiledMatcher;
+import cz.cuni.mff.golyshet.automaton.DFA;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of matching keys one after another by the table of BatchMatcher and by the CompiledMatcher
+ * generated from small DFAs, which are the ones short enough to be compiled.
+ * The keys are uniformly random, or skewed so that most of their symbols are the first one and the jumps are predictable
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledMatcherBenchmark {
+    // Number of keys matched by one invocation
+    private static final int KEYS = 4096;
+    private static final int LENGTH = 16;
+
+    @Param({"8", "32"})
+    public int states;
+
+    @Param({"2", "8"})
+    public int symbols;
+
+    // Probability that a symbol of a key is the first symbol instead of a random one
+    @Param({"0", "0.95"})
+    public double skew;
+
+    private BatchMatcher table;
+    private CompiledMatcher compiled;
+    private int[][] keys;
+    private boolean[] results;
+
+    @Setup
+    public void setup() {
+        DFA automaton = BenchmarkAutomata.dfa(states, symbols, 0.9, 42);
+        table = new BatchMatcher(automaton);
+        compiled = CompiledMatcher.compile(automaton);
+        if (!compiled.isGenerated())
+            throw new IllegalStateException("The DFA is too large to be compiled.");
+        Random random = new Random(42);
+        keys = new int[KEYS][LENGTH];
+        for (int[] key : keys)
+            for (int i = 0; i < LENGTH; i++)
+                key[i] = random.nextDouble() < skew ? 0 : random.nextInt(symbols);
+        results = new boolean[KEYS];
+    }
+
+    @Benchmark
+    public boolean[] table() {
+        for (int i = 0; i < KEYS; i++)
+            results[i] = table.matches(keys[i]);
+        return results;
+    }
+
+    @Benchmark
+    public boolean[] compiled() {
+        for (int i = 0; i < KEYS; i++)
+            results[i] = compiled.matches(keys[i]);
+        return results;
+    }
+}
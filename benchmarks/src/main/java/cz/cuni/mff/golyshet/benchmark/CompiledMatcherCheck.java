@@ -0,0 +1,71 @@
+package cz.cuni.mff.golyshet.benchmark;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.automaton.BatchMatcher;
+import cz.cuni.mff.golyshet.automaton.CompiledMatcher;
+import cz.cuni.mff.golyshet.generator.Generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Check of the compiled matchers: the words accepted by CompiledMatcher must be the words accepted by the DFA matcher.
+ * The partial DFAs are generated from consecutive seeds with up to 400 states, so the larger ones are too long
+ * to be compiled and get the table matcher, and the DFAs of divisibility are complete.
+ * The words are random, with some symbols outside the alphabet, and there are enough of them
+ * for the JIT to compile the generated methods.
+ * Usage: java -cp target/benchmarks.jar cz.cuni.mff.golyshet.benchmark.CompiledMatcherCheck [automata] [first seed]
+ * The program prints the seeds of the automata with different results and ends with the exit code 1 if there are any.
+ */
+public class CompiledMatcherCheck {
+    // Number of words run by both matchers for every automaton
+    private static final int WORDS = 2000;
+
+    public static void main(String[] args) {
+        int automata = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        int failed = 0;
+        int generated = 0;
+        for (int n = 1; n <= 10; n++) {
+            CompiledMatcher matcher = CompiledMatcher.compile(Generator.divisibility(n, 3));
+            if (matcher.isGenerated())
+                generated++;
+            if (!same(matcher, Generator.divisibility(n, 3), 3, new Random(n))) {
+                System.out.println("Different results for the divisibility by " + n);
+                failed++;
+            }
+        }
+        for (int automaton = 0; automaton < automata; automaton++, seed++) {
+            Generator generator = new Generator(seed);
+            int symbols = 1 + (int) (seed % 5);
+            Automaton dfa = generator.randomDFA(1 + (int) (seed * 2 % 400), symbols, 0.8, 0.3);
+            CompiledMatcher matcher = CompiledMatcher.compile(dfa);
+            if (matcher.isGenerated())
+                generated++;
+            if (!same(matcher, dfa, symbols, new Random(seed))) {
+                System.out.println("Different results for the seed " + seed);
+                failed++;
+            }
+        }
+        System.out.println((automata + 10) + " automata, " + generated + " compiled, " + failed + " different");
+        if (failed > 0)
+            System.exit(1);
+    }
+
+    /**
+     * @return true if both matchers accept the same random words
+     */
+    private static boolean same(CompiledMatcher compiled, Automaton dfa, int symbols, Random random) {
+        BatchMatcher matcher = new BatchMatcher(dfa);
+        for (int i = 0; i < WORDS; i++) {
+            List<String> word = new ArrayList<>();
+            for (int length = random.nextInt(16); length > 0; length--)
+                // One symbol more than the alphabet, which the DFA does not have
+                word.add(Generator.symbol(random.nextInt(random.nextInt(20) == 0 ? symbols + 1 : symbols)));
+            if (compiled.matches(compiled.encode(word)) != matcher.matches(matcher.encode(word)))
+                return false;
+        }
+        return true;
+    }
+}
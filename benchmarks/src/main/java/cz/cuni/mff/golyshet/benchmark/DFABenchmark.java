@@ -0,0 +1,58 @@
+package cz.cuni.mff.golyshet.benchmark;
+
+import cz.cuni.mff.golyshet.automaton.DFA;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of DFA.save and DFA.rename
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DFABenchmark {
+    @Param({"16", "256", "4096"})
+    public int states;
+
+    @Param({"2", "16"})
+    public int symbols;
+
+    @Param({"0.2", "0.8"})
+    public double density;
+
+    private DFA automaton;
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        automaton = BenchmarkAutomata.dfa(states, symbols, density, 42);
+        file = File.createTempFile("dfa-benchmark", ".txt");
+        file.deleteOnExit();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Benchmark
+    public void save() {
+        automaton.save(file.getPath());
+    }
+
+    /**
+     * Renaming from 0 again produces the same automaton, so it can be repeated on the same instance
+     */
+    @Benchmark
+    public DFA rename() {
+        automaton.rename(0);
+        return automaton;
+    }
+}
@@ -0,0 +1,67 @@
+package cz.cuni.mff.golyshet.benchmark;
+
+import cz.cuni.mff.golyshet.automaton.BatchMatcher;
+import cz.cuni.mff.golyshet.automaton.DFA;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of matching a batch of keys by a DFA one key after another, by the interleaved scalar BatchMatcher
+ * and by the matcher of BatchMatcher.create, which is the VectorBatchMatcher if the core module was installed
+ * by mvn -Pvector install (the fork adds the incubator module), for different key lengths and alphabet sizes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class MatcherBenchmark {
+    // Number of keys matched by one invocation
+    private static final int KEYS = 4096;
+
+    @Param({"4", "16", "64"})
+    public int length;
+
+    @Param({"2", "16", "64"})
+    public int symbols;
+
+    private BatchMatcher scalar;
+    private BatchMatcher vector;
+    private int[][] keys;
+    private boolean[] results;
+
+    @Setup
+    public void setup() {
+        DFA automaton = BenchmarkAutomata.dfa(1024, symbols, 0.9, 42);
+        scalar = new BatchMatcher(automaton);
+        vector = BatchMatcher.create(automaton);
+        Random random = new Random(42);
+        keys = new int[KEYS][length];
+        for (int[] key : keys)
+            for (int i = 0; i < length; i++)
+                key[i] = random.nextInt(symbols);
+        results = new boolean[KEYS];
+    }
+
+    @Benchmark
+    public boolean[] oneByOne() {
+        for (int i = 0; i < KEYS; i++)
+            results[i] = scalar.matches(keys[i]);
+        return results;
+    }
+
+    @Benchmark
+    public boolean[] batched() {
+        scalar.match(keys, results);
+        return results;
+    }
+
+    @Benchmark
+    public boolean[] vector() {
+        vector.match(keys, results);
+        return results;
+    }
+}
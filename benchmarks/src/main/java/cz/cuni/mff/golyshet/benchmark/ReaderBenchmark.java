@@ -0,0 +1,49 @@
+package cz.cuni.mff.golyshet.benchmark;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.fileReader.Reader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of parsing the automaton file by Reader.read
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReaderBenchmark {
+    @Param({"16", "256", "4096"})
+    public int states;
+
+    @Param({"2", "16"})
+    public int symbols;
+
+    @Param({"0.2", "0.8"})
+    public double density;
+
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        file = File.createTempFile("reader-benchmark", ".txt");
+        file.deleteOnExit();
+        BenchmarkAutomata.nfa(states, symbols, density, 42).save(file.getPath());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Benchmark
+    public Automaton read() {
+        return new Reader().read(file.getPath());
+    }
+}
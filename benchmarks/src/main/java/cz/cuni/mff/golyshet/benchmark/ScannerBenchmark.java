@@ -0,0 +1,95 @@
+package cz.cuni.mff.golyshet.benchmark;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.automaton.NFA;
+import cz.cuni.mff.golyshet.automaton.TextScanner;
+import cz.cuni.mff.golyshet.automaton.Transition;
+import cz.cuni.mff.golyshet.operation.Minimization;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of scanning a text of random words for the matches of [a-z]{0,2}error[0-9]+,
+ * by the DFA at every position and with the prefilter jumping to the occurrences of the literal "error",
+ * for different average distances between the matches
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScannerBenchmark {
+    private static final int LENGTH = 1 << 20;
+
+    @Param({"100", "10000"})
+    public int gap;
+
+    private TextScanner plain;
+    private TextScanner prefiltered;
+    private String text;
+
+    @Setup
+    public void setup() {
+        Automaton automaton = new Minimization().apply(List.of(pattern()));
+        plain = TextScanner.of(automaton, false);
+        prefiltered = TextScanner.of(automaton);
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder(LENGTH);
+        while (builder.length() < LENGTH) {
+            if (random.nextInt(gap) < 8)
+                builder.append("error").append(random.nextInt(1000));
+            else
+                builder.append(random.nextInt(6) == 0 ? ' ' : (char) ('a' + random.nextInt(26)));
+        }
+        text = builder.toString();
+    }
+
+    /**
+     * @return NFA of [a-z]{0,2}error[0-9]+, the states 0 to 2 read the prefix and the states 3 to 8 the rest
+     */
+    private static NFA pattern() {
+        NFA automaton = new NFA();
+        for (char c = 'a'; c <= 'z'; c++)
+            automaton.getAlphabet().add(String.valueOf(c));
+        for (char c = '0'; c <= '9'; c++)
+            automaton.getAlphabet().add(String.valueOf(c));
+        for (int state = 0; state <= 8; state++)
+            automaton.getStates().add(state);
+        automaton.getInitialStates().add(0);
+        automaton.getFinalStates().add(8);
+        for (int state = 0; state <= 2; state++) {
+            if (state < 2)
+                for (char c = 'a'; c <= 'z'; c++)
+                    add(automaton, state, c, state + 1);
+            add(automaton, state, 'e', 4);
+        }
+        add(automaton, 4, 'r', 5);
+        add(automaton, 5, 'r', 6);
+        add(automaton, 6, 'o', 7);
+        add(automaton, 7, 'r', 3);
+        for (char c = '0'; c <= '9'; c++) {
+            add(automaton, 3, c, 8);
+            add(automaton, 8, c, 8);
+        }
+        return automaton;
+    }
+
+    private static void add(NFA automaton, int from, char symbol, int to) {
+        automaton.getTransitionTable().computeIfAbsent(from, state -> new HashSet<>()).add(Transition.of(String.valueOf(symbol), to));
+    }
+
+    @Benchmark
+    public int plain() {
+        return plain.findAll(text).size();
+    }
+
+    @Benchmark
+    public int prefiltered() {
+        return prefiltered.findAll(text).size();
+    }
+}
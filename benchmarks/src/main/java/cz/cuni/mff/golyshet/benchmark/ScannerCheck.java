@@ -0,0 +1,36 @@
+package cz.cuni.mff.golyshet.benchmark;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.automaton.TextScanner;
+import cz.cuni.mff.golyshet.fileReader.Reader;
+import cz.cuni.mff.golyshet.operation.Minimization;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Check of the prefiltered scanning: prints the matches of the minimal DFA of an automaton file in a text file,
+ * one per line as the start, the end (exclusive) and the matched factor.
+ * The matches found with the prefilter are compared with the matches of the DFA run at every position.
+ * Usage: java -cp target/benchmarks.jar cz.cuni.mff.golyshet.benchmark.ScannerCheck automaton text
+ * The program ends with the exit code 1 if the scanners find different matches.
+ */
+public class ScannerCheck {
+    public static void main(String[] args) throws IOException {
+        Automaton automaton = new Minimization().apply(List.of(new Reader().read(args[0])));
+        String text = Files.readString(Path.of(args[1]));
+        List<int[]> matches = TextScanner.of(automaton).findAll(text);
+        List<int[]> expected = TextScanner.of(automaton, false).findAll(text);
+        for (int[] match : matches)
+            System.out.println(match[0] + " " + match[1] + " " + text.substring(match[0], match[1]));
+        boolean same = matches.size() == expected.size();
+        for (int i = 0; same && i < matches.size(); i++)
+            same = matches.get(i)[0] == expected.get(i)[0] && matches.get(i)[1] == expected.get(i)[1];
+        if (!same) {
+            System.out.println("The prefiltered scanner and the scanner without the prefilter find different matches");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package cz.cuni.mff.golyshet.benchmark;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.automaton.Transition;
+import cz.cuni.mff.golyshet.fileReader.Reader;
+
+import java.util.Comparator;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Check of the interned transitions: prints the transitions of an automaton file read with repeated targets,
+ * which must be in the rows once, and checks that Transition.of shares the transitions to small states
+ * and that the transitions outside the cache, to large states or after the caps are reached, are equal to the cached ones.
+ * Usage: java -cp target/benchmarks.jar cz.cuni.mff.golyshet.benchmark.TransitionCheck automaton
+ * The program ends with the exit code 1 if a check fails.
+ */
+public class TransitionCheck {
+    public static void main(String[] args) {
+        Automaton automaton = new Reader().read(args[0]);
+        for (Integer state : automaton.getStates()) {
+            Set<Transition> row = automaton.getTransitionTable().getOrDefault(state, Set.of());
+            System.out.println(state + ": " + row.stream()
+                    .sorted(Comparator.comparing(Transition::getSymbol).thenComparing(Transition::getTo_state))
+                    .map(Transition::toString).collect(Collectors.joining(", ")));
+        }
+
+        boolean passed = true;
+        // A symbol built at run time is not the same string as the literal
+        String symbol = new String(new char[]{'a'});
+        passed &= check("transitions to small states are shared", Transition.of("a", 7) == Transition.of(symbol, 7));
+        passed &= check("symbols are interned", Transition.of(symbol, 1 << 20).getSymbol() == "a");
+        Transition large = Transition.of("a", 1 << 20);
+        passed &= check("transitions to large states are equal",
+                large != Transition.of("a", 1 << 20) && large.equals(Transition.of("a", 1 << 20))
+                        && large.hashCode() == Transition.of("a", 1 << 20).hashCode());
+        passed &= check("transitions differ by the symbol and the state",
+                !Transition.of("a", 7).equals(Transition.of("b", 7)) && !Transition.of("a", 7).equals(Transition.of("a", 8)));
+
+        // Fill the cache up to its caps of symbols and chunks, the transitions after them are fresh but still equal
+        Transition cached = Transition.of("a", 3);
+        for (int i = 0; i < 5000; i++)
+            Transition.of("filler" + i, i * 1024 % 65536);
+        passed &= check("cached transitions stay shared", cached == Transition.of("a", 3));
+        passed &= check("transitions of new symbols after the cap are equal",
+                Transition.of("new", 3) != Transition.of("new", 3) && Transition.of("new", 3).equals(Transition.of("new", 3)));
+        passed &= check("transitions in new chunks after the cap are equal",
+                Transition.of("a", 60000) != Transition.of("a", 60000) && Transition.of("a", 60000).equals(Transition.of("a", 60000)));
+        if (!passed)
+            System.exit(1);
+    }
+
+    private static boolean check(String description, boolean passed) {
+        System.out.println((passed ? "ok " : "FAILED ") + description);
+        return passed;
+    }
+}
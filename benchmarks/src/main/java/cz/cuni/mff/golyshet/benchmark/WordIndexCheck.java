@@ -0,0 +1,86 @@
+package cz.cuni.mff.golyshet.benchmark;
+
+import cz.cuni.mff.golyshet.automaton.WordIndex;
+import cz.cuni.mff.golyshet.operation.FromWords;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Check of the word index: every word of a sorted word list must have its line number as its index
+ * and the index must map back to the word, the other words must have the index -1.
+ * The words of the file are checked first and then the word lists generated from consecutive seeds.
+ * Usage: java -cp target/benchmarks.jar cz.cuni.mff.golyshet.benchmark.WordIndexCheck words [lists] [first seed]
+ * The program prints the number of words with a wrong index and ends with the exit code 1 if there are any.
+ */
+public class WordIndexCheck {
+    public static void main(String[] args) throws IOException {
+        int lists = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        int failed = check(Files.readAllLines(Path.of(args[0])), List.of());
+        System.out.println(args[0] + ", " + failed + " different");
+        int generated = 0;
+        for (int list = 0; list < lists; list++, seed++) {
+            // Up to 200 words of 1 to 8 symbols over 1 to 4 symbols and as many words which are not in the list
+            Random random = new Random(seed);
+            TreeSet<String> words = new TreeSet<>();
+            TreeSet<String> others = new TreeSet<>();
+            int k = 1 + random.nextInt(4);
+            for (int i = 1 + random.nextInt(200); i > 0; i--) {
+                words.add(randomWord(random, k));
+                others.add(randomWord(random, k));
+            }
+            others.removeAll(words);
+            generated += words.size();
+            int different = check(List.copyOf(words), List.copyOf(others));
+            if (different > 0)
+                System.out.println("Different indexes for the seed " + seed);
+            failed += different;
+        }
+        System.out.println(lists + " generated lists, " + generated + " words");
+        if (failed > 0)
+            System.exit(1);
+    }
+
+    private static String randomWord(Random random, int k) {
+        StringBuilder word = new StringBuilder();
+        for (int length = 1 + random.nextInt(8); length > 0; length--)
+            word.append((char) ('a' + random.nextInt(k)));
+        return word.toString();
+    }
+
+    /**
+     * @param words sorted words of the index
+     * @param others words which are not in the index
+     * @return number of the words with a wrong index, or whose index maps to a different word
+     */
+    private static int check(List<String> words, List<String> others) throws IOException {
+        WordIndex index = new WordIndex(new FromWords().build(new BufferedReader(new StringReader(String.join("\n", words)))));
+        int failed = index.size() == words.size() ? 0 : 1;
+        int[] symbols = new int[index.maxLength()];
+        for (int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            StringBuilder builder = new StringBuilder();
+            int length = index.wordAt(i, symbols);
+            StringBuilder fromSymbols = new StringBuilder();
+            for (int j = 0; j < length; j++)
+                fromSymbols.append(index.symbol(symbols[j]));
+            if (index.indexOf(word) != i || index.indexOf(word.isEmpty() ? List.of() : List.of(word.split(""))) != i
+                    || !index.wordAt(i, builder) || !builder.toString().equals(word) || !fromSymbols.toString().equals(word))
+                failed++;
+        }
+        for (String word : others)
+            if (index.indexOf(word) != -1)
+                failed++;
+        if (index.wordAt(-1, new StringBuilder()) || index.wordAt(index.size(), new StringBuilder())
+                || index.wordAt(index.size(), symbols) != -1)
+            failed++;
+        return failed;
+    }
+}
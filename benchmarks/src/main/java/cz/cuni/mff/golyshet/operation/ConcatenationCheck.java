@@ -0,0 +1,61 @@
+package cz.cuni.mff.golyshet.operation;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.automaton.ImmutableAutomaton;
+import cz.cuni.mff.golyshet.generator.Generator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Check that the concatenation of two DFAs built directly as a DFA is the same automaton as the concatenation
+ * by epsilon transitions and determinization. The pairs are generated from consecutive seeds, the same inputs
+ * marked as NFAs take the epsilon path, and both results are compared in their canonical minimal form.
+ * Usage: java -cp target/benchmarks.jar cz.cuni.mff.golyshet.operation.ConcatenationCheck [pairs] [first seed]
+ * The program prints the seeds of the pairs with different results and ends with the exit code 1 if there are any.
+ */
+public class ConcatenationCheck {
+    public static void main(String[] args) {
+        int pairs = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        int failed = 0;
+        for (int pair = 0; pair < pairs; pair++, seed++) {
+            Generator generator = new Generator(seed);
+            // Small DFAs with 1 to 3 symbols and partial transition functions, so both paths stay fast,
+            // the alphabets of the pair may differ
+            Automaton automaton1 = generator.randomDFA(2 + (int) (seed % 7), 1 + (int) (seed % 3), 0.7, 0.3);
+            Automaton automaton2 = generator.randomDFA(2 + (int) (seed % 5), 1 + (int) (seed / 3 % 3), 0.7, 0.3);
+            String direct = text(new Concatenation().apply(List.of(automaton1, automaton2)));
+            String epsilon = text(new Concatenation().apply(List.of(asNFA(automaton1), asNFA(automaton2))));
+            if (!direct.equals(epsilon)) {
+                System.out.println("Different results for the seed " + seed);
+                failed++;
+            }
+        }
+        System.out.println(pairs + " pairs, " + failed + " different");
+        if (failed > 0)
+            System.exit(1);
+    }
+
+    /**
+     * @return the same automaton marked as an NFA, which the concatenation does not build directly
+     */
+    private static Automaton asNFA(Automaton automaton) {
+        return ImmutableAutomaton.of(automaton).toBuilder().type(Automaton.Type.NFA).build();
+    }
+
+    /**
+     * @return the automaton in the format of the automaton file
+     */
+    private static String text(Automaton automaton) {
+        StringWriter writer = new StringWriter();
+        try {
+            automaton.write(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+}
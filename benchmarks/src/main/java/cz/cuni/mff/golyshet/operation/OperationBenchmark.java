@@ -0,0 +1,66 @@
+package cz.cuni.mff.golyshet.operation;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.benchmark.BenchmarkAutomata;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the operations.
+ * The class is in the package cz.cuni.mff.golyshet.operation to reach determinize and minimize directly.
+ * The inputs are generated once per trial and shared by the invocations, the operations never modify them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperationBenchmark {
+    @Param({"8", "16"})
+    public int states;
+
+    @Param({"2", "4"})
+    public int symbols;
+
+    @Param({"0.2", "0.8"})
+    public double density;
+
+    private Automaton nfa;
+    private Automaton dfa1;
+    private Automaton dfa2;
+
+    @Setup
+    public void setup() {
+        nfa = BenchmarkAutomata.nfa(states, symbols, density, 42);
+        dfa1 = BenchmarkAutomata.dfa(states, symbols, density, 43);
+        dfa2 = BenchmarkAutomata.dfa(states, symbols, density, 44);
+    }
+
+    @Benchmark
+    public Automaton determinize() {
+        return new Determinization().determinize(nfa);
+    }
+
+    @Benchmark
+    public Automaton minimize() {
+        return new Minimization().minimize(dfa1);
+    }
+
+    @Benchmark
+    public Automaton intersection() {
+        return new Intersection().apply(List.of(dfa1, dfa2));
+    }
+
+    @Benchmark
+    public Automaton union() {
+        return new Union().apply(List.of(dfa1, dfa2));
+    }
+
+    @Benchmark
+    public Automaton concatenation() {
+        return new Concatenation().apply(List.of(dfa1, dfa2));
+    }
+}
@@ -0,0 +1,106 @@
+package cz.cuni.mff.golyshet.operation;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.generator.Generator;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Harness that runs every operation on generated automata of growing size and prints the time and memory curves as CSV.
+ * The size is doubled until one run takes longer than the time limit, the maximal size is reached or the heap runs out.
+ * The class is in the package cz.cuni.mff.golyshet.operation to reach determinize and minimize directly.
+ * Usage: java -cp target/benchmarks.jar cz.cuni.mff.golyshet.operation.ScalingHarness [time limit in seconds] [maximal size]
+ */
+public class ScalingHarness {
+    private final double limitSeconds;
+    private final int maxSize;
+
+    /**
+     * Creates a new harness
+     * @param limitSeconds the curve stops after a run longer than this
+     * @param maxSize the maximal size of the input
+     */
+    public ScalingHarness(double limitSeconds, int maxSize) {
+        this.limitSeconds = limitSeconds;
+        this.maxSize = maxSize;
+    }
+
+    public static void main(String[] args) {
+        double limit = args.length > 0 ? Double.parseDouble(args[0]) : 10;
+        int maxSize = args.length > 1 ? Integer.parseInt(args[1]) : 1 << 14;
+        new ScalingHarness(limit, maxSize).run();
+    }
+
+    /**
+     * Runs all the curves
+     */
+    public void run() {
+        System.out.println("operation,input,size,time_ms,allocated_bytes,peak_heap_bytes,result_states");
+        curve("determinize", "random_nfa", 4, n -> () -> new Determinization().determinize(
+                new Generator(n).randomNFA(n, 4, 0.3, 0.1, 0.25)));
+        curve("determinize", "nth_symbol_from_end", 2, n -> () -> new Determinization().determinize(
+                Generator.nthSymbolFromEnd(n)), 1);
+        curve("minimize", "random_dfa", 4, n -> () -> new Minimization().minimize(
+                new Generator(n).randomDFA(n, 4, 0.9, 0.25)));
+        // n+1 is odd, so it is coprime with the base 2 and the input is already minimal
+        curve("minimize", "divisibility", 4, n -> () -> new Minimization().minimize(
+                Generator.divisibility(n + 1, 2)));
+        curve("intersection", "random_dfa", 4, n -> () -> new Intersection().apply(List.of(
+                new Generator(n).randomDFA(n, 4, 0.9, 0.5), new Generator(n + 1).randomDFA(n, 4, 0.9, 0.5))));
+        curve("union", "random_dfa", 4, n -> () -> new Union().apply(List.of(
+                new Generator(n).randomDFA(n, 4, 0.9, 0.5), new Generator(n + 1).randomDFA(n, 4, 0.9, 0.5))));
+        curve("concatenation", "random_dfa", 4, n -> () -> new Concatenation().apply(List.of(
+                new Generator(n).randomDFA(n, 4, 0.9, 0.5), new Generator(n + 1).randomDFA(n, 4, 0.9, 0.5))));
+    }
+
+    /**
+     * Runs one curve with sizes doubled from the start
+     */
+    private void curve(String operation, String input, int start, IntFunction<Supplier<Automaton>> run) {
+        curve(operation, input, start, run, 0);
+    }
+
+    /**
+     * Runs one curve with sizes growing from the start, doubled or increased by the given step
+     * @param step the size is increased by the step, or doubled if the step is 0
+     */
+    private void curve(String operation, String input, int start, IntFunction<Supplier<Automaton>> run, int step) {
+        for (int size = start; size <= maxSize; size = step == 0 ? size * 2 : size + step) {
+            Supplier<Automaton> task = run.apply(size);
+            System.gc();
+            List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+            pools.forEach(MemoryPoolMXBean::resetPeakUsage);
+            long allocatedBefore = allocatedBytes();
+            long begin = System.nanoTime();
+            Automaton result;
+            try {
+                result = task.get();
+            } catch (OutOfMemoryError e) {
+                System.out.println(operation + "," + input + "," + size + ",,,,out of memory");
+                return;
+            }
+            double millis = (System.nanoTime() - begin) / 1e6;
+            long allocated = allocatedBytes() - allocatedBefore;
+            long peak = pools.stream().filter(pool -> pool.getType() == MemoryType.HEAP)
+                    .mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+            System.out.printf("%s,%s,%d,%.3f,%d,%d,%d%n", operation, input, size, millis, allocated, peak,
+                    result.getStates().size());
+            if (millis > limitSeconds * 1000)
+                return;
+        }
+    }
+
+    /**
+     * @return bytes allocated by the current thread so far, or 0 if the JVM cannot tell
+     */
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean)
+            return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        return 0;
+    }
+}
@@ -1,8 +1,20 @@
 package cz.cuni.mff.golyshet;
 
-import cz.cuni.mff.golyshet.automaton.Automaton;
 import cz.cuni.mff.golyshet.input_parser.CommandLineParser;
+import cz.cuni.mff.golyshet.operation.ExternalDeterminization;
 import cz.cuni.mff.golyshet.operation.Operation;
+import cz.cuni.mff.golyshet.operation.ShardWorker;
+import cz.cuni.mff.golyshet.operation.ShardedDeterminization;
+import cz.cuni.mff.golyshet.operation.SimulationReduction;
+import cz.cuni.mff.golyshet.scheduler.Scheduler;
+import cz.cuni.mff.golyshet.scheduler.Watcher;
+import cz.cuni.mff.golyshet.server.Server;
+import cz.cuni.mff.golyshet.stats.Statistics;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
@@ -10,9 +22,21 @@ import java.util.Scanner;
 /**
  * Main class of the program
  * It parses the command line arguments and performs the operations
- * It also asks the user for the name of the file to save the result of the operation
+ * The output file of an operation is given by --out after the operation ("-" means stdout)
+ * For operations without --out it asks the user for the name of the file to save the result of the operation
  * If the user does not enter anything, the result is printed in stdout
+ * Independent operations are performed in parallel
+ * With --stats the statistics of the phases of the operations are printed to stderr
+ * With --reduce the NFAs are reduced by simulations before determinization
+ * With --spill directory the subset construction runs in external memory
+ * With --workers host:port,... the subset construction runs in the worker processes
+ * With --watch the program keeps running and updates the results of the operations when their input files change
+ * With --server port [--reduce] the program runs as a server instead
+ * With --worker port [address] the program runs as a worker of the distributed subset construction instead
  * @see CommandLineParser
+ * @see Server
+ * @see Scheduler
+ * @see Watcher
  */
 
 public class Main {
@@ -21,17 +45,64 @@ public class Main {
      * @param args command line arguments
      */
     public static void main(String[] args) {
+        // In server mode the operations are requested over a socket
+        if (args.length > 0 && args[0].equals("--server")) {
+            if (args.length != 2 && !(args.length == 3 && args[2].equals("--reduce"))) {
+                System.out.println("Error port for server");
+                System.exit(1);
+            }
+            if (args.length == 3)
+                SimulationReduction.enable();
+            new Server(Integer.parseInt(args[1])).run();
+            return;
+        }
+        // In worker mode the subsets of distributed determinizations are kept, by default for workers on this machine
+        if (args.length > 0 && args[0].equals("--worker")) {
+            if (args.length != 2 && args.length != 3) {
+                System.out.println("Error port for worker");
+                System.exit(1);
+            }
+            try {
+                InetAddress address = args.length == 3 ? InetAddress.getByName(args[2]) : InetAddress.getLoopbackAddress();
+                new ShardWorker(Integer.parseInt(args[1]), address).run();
+            } catch (IOException | NumberFormatException e) {
+                System.out.println("Error address for worker");
+                System.exit(1);
+            }
+            return;
+        }
         CommandLineParser parser = new CommandLineParser();
         Map<Operation, List<String>> operation_list = parser.parse(args);
-        Automaton automaton = null;
-        // Perform the operations and save the result in the file or print it in stdout
-        for (Map.Entry<Operation, List<String>> entry: operation_list.entrySet()) {
-            System.out.println("Enter the name of file to save result of operation or press enter to print in stdout:");
-            Scanner scanner = new Scanner(System.in);
-            String filename = scanner.nextLine();
-            filename = filename.strip();
-            automaton = entry.getKey().perform(entry.getValue());
-            automaton.save(String.valueOf(filename));
+        if (parser.isStats())
+            Statistics.enable();
+        if (parser.isReduce())
+            SimulationReduction.enable();
+        if (parser.getSpill() != null)
+            ExternalDeterminization.enable(Path.of(parser.getSpill()));
+        if (parser.getWorkers() != null)
+            ShardedDeterminization.enable(parser.getWorkers());
+        Map<Operation, String> outputs = new LinkedHashMap<>();
+        Scanner scanner = new Scanner(System.in);
+        // Find out where to save the result of each operation, ask the user only if --out is missing
+        for (Operation operation : operation_list.keySet()) {
+            String filename = parser.getOutputs().get(operation);
+            if (filename == null) {
+                System.out.println("Enter the name of file to save result of operation or press enter to print in stdout:");
+                filename = scanner.hasNextLine() ? scanner.nextLine() : "";
+            } else if (filename.equals("-")) {
+                filename = "";
+            }
+            outputs.put(operation, filename.strip());
+        }
+        // In watch mode the results are kept in memory and updated until the program is terminated
+        if (parser.isWatch()) {
+            new Watcher(operation_list, outputs, parser.getBudget()).run();
+            return;
         }
+        // Perform the operations and save the result in the file or print it in stdout
+        new Scheduler(Runtime.getRuntime().availableProcessors(), parser.getBudget()).run(operation_list, outputs);
+        // Print the statistics to stderr, so they do not mix with the automata in stdout
+        if (parser.isStats())
+            Statistics.report(System.err);
     }
 }
@@ -67,4 +67,16 @@ public interface Automaton {
      * @param filename
      */
     void save(String filename);
+
+    /**
+     * Writes the automaton in the format of the automaton file to the given writer.
+     * @param writer to which the automaton is written
+     * @throws java.io.IOException if the writer fails
+     */
+    void write(java.io.Writer writer) throws java.io.IOException;
+
+    /**
+     * @return a deep copy of the automaton, which can be modified independently of the original
+     */
+    Automaton copy();
 }
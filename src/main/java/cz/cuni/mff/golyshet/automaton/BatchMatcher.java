@@ -0,0 +1,140 @@
+package cz.cuni.mff.golyshet.automaton;
+
+import java.util.*;
+
+/**
+ * Matcher that runs a DFA on many short words at once.
+ * The DFA is stored as a flat int table of (n+1)*(k+2) transitions: the extra state is a dead sink,
+ * the extra symbol k is any symbol outside the alphabet (it leads to the sink)
+ * and the extra symbol k+1 is padding which keeps every state, so words of different lengths advance together without branches.
+ * The words are processed in groups of LANES interleaved words, one step of every word after another,
+ * so the independent loads of the transitions overlap instead of waiting for each other.
+ * When the module jdk.incubator.vector is available, create returns a matcher doing the steps of a group by vector gathers.
+ * All automata must be in the package cz.cuni.mff.golyshet.automaton
+ */
+public class BatchMatcher {
+    // Number of words processed together by the scalar matcher
+    protected static final int LANES = 8;
+
+    protected final String[] alphabet;
+    protected final int columns;
+    protected final int unknown;
+    protected final int padding;
+    protected final int initial;
+    protected final int[] table;
+    protected final boolean[] accepting;
+
+    /**
+     * Builds the scalar matcher, the states are numbered in their sorted order
+     * @param automaton DFA with exactly one initial state
+     */
+    public BatchMatcher(Automaton automaton) {
+        if (automaton.getType() != Automaton.Type.DFA || automaton.getInitialStates().size() != 1)
+            throw new IllegalArgumentException("Only a DFA with one initial state can be matched.");
+        Map<Integer, Integer> index = new HashMap<>();
+        for (Integer state : automaton.getStates())
+            index.put(state, index.size());
+        alphabet = automaton.getAlphabet().toArray(new String[0]);
+        int n = index.size();
+        int sink = n;
+        unknown = alphabet.length;
+        padding = alphabet.length + 1;
+        columns = alphabet.length + 2;
+        if ((long) (n + 1) * columns > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The DFA is too large to be matched.");
+
+        // Missing transitions and unknown symbols lead to the sink, padding keeps the state
+        table = new int[(n + 1) * columns];
+        Arrays.fill(table, sink);
+        for (int state = 0; state <= n; state++)
+            table[state * columns + padding] = state;
+        for (Map.Entry<Integer, Set<Transition>> entry : automaton.getTransitionTable().entrySet())
+            for (Transition transition : entry.getValue())
+                table[index.get(entry.getKey()) * columns + Arrays.binarySearch(alphabet, transition.getSymbol())] =
+                        index.get(transition.getTo_state());
+        accepting = new boolean[n + 1];
+        for (Integer state : automaton.getFinalStates())
+            accepting[index.get(state)] = true;
+        initial = index.get(automaton.getInitialStates().first());
+    }
+
+    /**
+     * Creates the vector matcher if the module jdk.incubator.vector is available, the scalar matcher otherwise
+     * @param automaton DFA with exactly one initial state
+     * @return the fastest available matcher
+     */
+    public static BatchMatcher create(Automaton automaton) {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (BatchMatcher) Class.forName("cz.cuni.mff.golyshet.automaton.VectorBatchMatcher")
+                        .getConstructor(Automaton.class).newInstance(automaton);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Fall back to the scalar matcher
+            }
+        }
+        return new BatchMatcher(automaton);
+    }
+
+    /**
+     * @param word the word as a list of symbols
+     * @return the word as indexes of the symbols, symbols outside the alphabet are k
+     */
+    public int[] encode(List<String> word) {
+        int[] result = new int[word.size()];
+        for (int i = 0; i < result.length; i++) {
+            int symbol = Arrays.binarySearch(alphabet, word.get(i));
+            result[i] = symbol < 0 ? unknown : symbol;
+        }
+        return result;
+    }
+
+    /**
+     * @param word the word, every code point is one symbol
+     * @return the word as indexes of the symbols, symbols outside the alphabet are k
+     */
+    public int[] encode(CharSequence word) {
+        return word.codePoints().map(codePoint -> {
+            int symbol = Arrays.binarySearch(alphabet, Character.toString(codePoint));
+            return symbol < 0 ? unknown : symbol;
+        }).toArray();
+    }
+
+    /**
+     * Runs the DFA on one word
+     * @param word indexes of the symbols
+     * @return true if the word is accepted
+     */
+    public boolean matches(int[] word) {
+        int state = initial;
+        for (int symbol : word)
+            state = table[state * columns + symbol];
+        return accepting[state];
+    }
+
+    /**
+     * Runs the DFA on all the words
+     * @param words indexes of the symbols of the words
+     * @param results whether the words are accepted, at least as long as words
+     */
+    public void match(int[][] words, boolean[] results) {
+        int[] states = new int[LANES];
+        for (int start = 0; start < words.length; start += LANES) {
+            int lanes = Math.min(LANES, words.length - start);
+            int length = 0;
+            for (int lane = 0; lane < lanes; lane++) {
+                states[lane] = initial;
+                length = Math.max(length, words[start + lane].length);
+            }
+            // One step of every word of the group, shorter words are padded
+            for (int position = 0; position < length; position++) {
+                for (int lane = 0; lane < lanes; lane++) {
+                    int[] word = words[start + lane];
+                    int symbol = position < word.length ? word[position] : padding;
+                    states[lane] = table[states[lane] * columns + symbol];
+                }
+            }
+            for (int lane = 0; lane < lanes; lane++)
+                results[start + lane] = accepting[states[lane]];
+        }
+    }
+}
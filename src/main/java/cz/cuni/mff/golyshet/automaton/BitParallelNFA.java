@@ -0,0 +1,223 @@
+package cz.cuni.mff.golyshet.automaton;
+
+import java.util.*;
+
+/**
+ * Simulator of an NFA without determinization, the set of active states is a bitset in a long array.
+ * The epsilon closures are folded into the transitions ahead of time, so a step never follows epsilon transitions.
+ * The states are numbered in DFS preorder, so most transitions lead from a state s to s+1.
+ * Such transitions on a symbol are done for all states at once by shifting the bitset by one and masking it
+ * with the states entered from their predecessor by the symbol, self-loops are done by masking with the states
+ * looping on the symbol, and only the remaining transitions are done one by one.
+ * If there are no remaining transitions and at most 64 states, the NFA is a linear chain
+ * and the simulation is the Shift-And algorithm on one long.
+ * The memory is linear in the number of states and transitions: two masks per symbol and the list of remaining transitions.
+ * All automata must be in the package cz.cuni.mff.golyshet.automaton
+ */
+public final class BitParallelNFA {
+    private final String[] alphabet;
+    private final int states;
+    private final int words;
+    private final long[] initial;
+    private final long[] accepting;
+    // Per symbol: states entered by the symbol from the previous state, states looping on the symbol
+    private final long[][] shift;
+    private final long[][] loop;
+    // Per symbol: the remaining transitions as pairs of source and target states
+    private final int[][] from;
+    private final int[][] to;
+    private final boolean shiftAnd;
+
+    /**
+     * Builds the simulator
+     * @param automaton DFA or NFA, "*" is an epsilon transition
+     */
+    public BitParallelNFA(Automaton automaton) {
+        SortedSet<String> symbols = new TreeSet<>(automaton.getAlphabet());
+        symbols.remove("*");
+        alphabet = symbols.toArray(new String[0]);
+        int k = alphabet.length;
+
+        // Number the states in DFS preorder from the initial states, unreachable states are left out
+        Map<Integer, Integer> index = new HashMap<>();
+        Deque<Integer> stack = new ArrayDeque<>();
+        List<Integer> initialStates = new ArrayList<>(automaton.getInitialStates());
+        Collections.reverse(initialStates);
+        initialStates.forEach(stack::push);
+        while (!stack.isEmpty()) {
+            int state = stack.pop();
+            if (index.containsKey(state))
+                continue;
+            index.put(state, index.size());
+            // Successors are pushed in reverse order, so the first one is numbered right after the state
+            List<Transition> transitions = new ArrayList<>(automaton.getTransitionTable().getOrDefault(state, Collections.emptySet()));
+            transitions.sort(Comparator.comparing(Transition::getSymbol).thenComparing(Transition::getTo_state).reversed());
+            for (Transition transition : transitions)
+                if (!index.containsKey(transition.getTo_state()))
+                    stack.push(transition.getTo_state());
+        }
+        states = Math.max(1, index.size());
+        words = (states + 63) >>> 6;
+
+        // Epsilon closures of the states
+        List<Set<Integer>> closures = new ArrayList<>();
+        for (int i = 0; i < index.size(); i++)
+            closures.add(null);
+        for (Map.Entry<Integer, Integer> entry : index.entrySet())
+            closures.set(entry.getValue(), closure(automaton, entry.getKey(), index));
+
+        initial = new long[words];
+        for (Integer state : automaton.getInitialStates())
+            for (int target : closures.get(index.get(state)))
+                set(initial, target);
+        accepting = new long[words];
+        for (Integer state : automaton.getFinalStates())
+            if (index.containsKey(state))
+                set(accepting, index.get(state));
+
+        // Split the transitions with folded epsilon closures into shifts, loops and the remaining ones
+        shift = new long[k][words];
+        loop = new long[k][words];
+        List<List<int[]>> remaining = new ArrayList<>();
+        for (int symbol = 0; symbol < k; symbol++)
+            remaining.add(new ArrayList<>());
+        for (Map.Entry<Integer, Integer> entry : index.entrySet()) {
+            int source = entry.getValue();
+            Set<Integer> added = new HashSet<>();
+            for (Transition transition : automaton.getTransitionTable().getOrDefault(entry.getKey(), Collections.emptySet())) {
+                if (transition.getSymbol().equals("*"))
+                    continue;
+                int symbol = Arrays.binarySearch(alphabet, transition.getSymbol());
+                for (int target : closures.get(index.get(transition.getTo_state()))) {
+                    if (!added.add(symbol * states + target))
+                        continue;
+                    if (target == source)
+                        set(loop[symbol], target);
+                    else if (target == source + 1)
+                        set(shift[symbol], target);
+                    else
+                        remaining.get(symbol).add(new int[]{source, target});
+                }
+            }
+        }
+        // Bit t of a shift mask only says that t-1 enters t by the symbol, other transitions into t are remaining ones
+        from = new int[k][];
+        to = new int[k][];
+        int count = 0;
+        for (int symbol = 0; symbol < k; symbol++) {
+            List<int[]> pairs = remaining.get(symbol);
+            pairs.sort(Comparator.comparingInt(pair -> pair[0]));
+            from[symbol] = pairs.stream().mapToInt(pair -> pair[0]).toArray();
+            to[symbol] = pairs.stream().mapToInt(pair -> pair[1]).toArray();
+            count += pairs.size();
+        }
+        shiftAnd = count == 0 && words == 1;
+    }
+
+    /**
+     * @return indexes of the states reachable from the state by epsilon transitions, including it
+     */
+    private static Set<Integer> closure(Automaton automaton, int state, Map<Integer, Integer> index) {
+        Set<Integer> visited = new HashSet<>();
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(state);
+        visited.add(state);
+        while (!stack.isEmpty())
+            for (Transition transition : automaton.getTransitionTable().getOrDefault(stack.pop(), Collections.emptySet()))
+                if (transition.getSymbol().equals("*") && visited.add(transition.getTo_state()))
+                    stack.push(transition.getTo_state());
+        Set<Integer> result = new HashSet<>();
+        for (Integer reached : visited)
+            result.add(index.get(reached));
+        return result;
+    }
+
+    private static void set(long[] bits, int bit) {
+        bits[bit >>> 6] |= 1L << bit;
+    }
+
+    /**
+     * @return true if the simulation is the Shift-And algorithm on one long
+     */
+    public boolean isShiftAnd() {
+        return shiftAnd;
+    }
+
+    /**
+     * @return number of states of the simulated NFA
+     */
+    public int getStates() {
+        return states;
+    }
+
+    /**
+     * @param word the word as a list of symbols
+     * @return the word as indexes of the symbols, -1 for symbols outside the alphabet
+     */
+    public int[] encode(List<String> word) {
+        int[] result = new int[word.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = Math.max(-1, Arrays.binarySearch(alphabet, word.get(i)));
+        return result;
+    }
+
+    /**
+     * @param word the word as a list of symbols
+     * @return true if the word is accepted
+     */
+    public boolean accepts(List<String> word) {
+        return accepts(encode(word));
+    }
+
+    /**
+     * @param word indexes of the symbols
+     * @return true if the word is accepted
+     */
+    public boolean accepts(int[] word) {
+        if (shiftAnd)
+            return acceptsShiftAnd(word);
+        long[] current = initial.clone();
+        long[] next = new long[words];
+        for (int symbol : word) {
+            if (symbol < 0)
+                return false;
+            long[] shiftMask = shift[symbol];
+            long[] loopMask = loop[symbol];
+            long carry = 0;
+            long active = 0;
+            for (int i = 0; i < words; i++) {
+                long bits = current[i];
+                next[i] = ((bits << 1 | carry) & shiftMask[i]) | (bits & loopMask[i]);
+                carry = bits >>> 63;
+                active |= bits;
+            }
+            if (active == 0)
+                return false;
+            int[] sources = from[symbol];
+            int[] targets = to[symbol];
+            for (int i = 0; i < sources.length; i++)
+                if ((current[sources[i] >>> 6] & (1L << sources[i])) != 0)
+                    next[targets[i] >>> 6] |= 1L << targets[i];
+            long[] swap = current;
+            current = next;
+            next = swap;
+        }
+        for (int i = 0; i < words; i++)
+            if ((current[i] & accepting[i]) != 0)
+                return true;
+        return false;
+    }
+
+    /**
+     * Shift-And on one long for linear chains with self-loops
+     */
+    private boolean acceptsShiftAnd(int[] word) {
+        long current = initial[0];
+        for (int symbol : word) {
+            if (symbol < 0 || current == 0)
+                return false;
+            current = ((current << 1) & shift[symbol][0]) | (current & loop[symbol][0]);
+        }
+        return (current & accepting[0]) != 0;
+    }
+}
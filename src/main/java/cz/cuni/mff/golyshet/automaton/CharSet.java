@@ -0,0 +1,231 @@
+package cz.cuni.mff.golyshet.automaton;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of Unicode code points represented by sorted disjoint ranges.
+ * The ranges are stored in one int array as pairs of inclusive bounds, adjacent ranges are always joined,
+ * so two sets are equal if and only if their arrays are equal.
+ * All automata must be in the package cz.cuni.mff.golyshet.automaton
+ */
+public final class CharSet implements Comparable<CharSet> {
+    public static final int MAX = Character.MAX_CODE_POINT;
+    public static final CharSet EMPTY = new CharSet(new int[0]);
+    public static final CharSet ALL = new CharSet(new int[]{0, MAX});
+
+    private final int[] ranges;
+
+    private CharSet(int[] ranges) {
+        this.ranges = ranges;
+    }
+
+    /**
+     * @param from the first code point
+     * @param to the last code point
+     * @return set of the code points from the range, empty if from is greater than to
+     */
+    public static CharSet range(int from, int to) {
+        if (from < 0 || to > MAX)
+            throw new IllegalArgumentException("Code point out of range");
+        return from > to ? EMPTY : new CharSet(new int[]{from, to});
+    }
+
+    /**
+     * @param codePoint the code point
+     * @return set of the single code point
+     */
+    public static CharSet of(int codePoint) {
+        return range(codePoint, codePoint);
+    }
+
+    /**
+     * @return true if the set contains the code point
+     */
+    public boolean contains(int codePoint) {
+        // Index of the first range whose end is not smaller than the code point
+        int low = 0;
+        int high = ranges.length / 2;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ranges[2 * middle + 1] < codePoint)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low < ranges.length / 2 && ranges[2 * low] <= codePoint;
+    }
+
+    /**
+     * @return true if the set is empty
+     */
+    public boolean isEmpty() {
+        return ranges.length == 0;
+    }
+
+    /**
+     * @return number of the ranges of the set
+     */
+    public int rangeCount() {
+        return ranges.length / 2;
+    }
+
+    /**
+     * @return the first code point of the i-th range
+     */
+    public int from(int i) {
+        return ranges[2 * i];
+    }
+
+    /**
+     * @return the last code point of the i-th range
+     */
+    public int to(int i) {
+        return ranges[2 * i + 1];
+    }
+
+    /**
+     * @return number of the code points of the set
+     */
+    public long size() {
+        long size = 0;
+        for (int i = 0; i < ranges.length; i += 2)
+            size += ranges[i + 1] - ranges[i] + 1;
+        return size;
+    }
+
+    /**
+     * @return the smallest code point of the set, or -1 if it is empty
+     */
+    public int min() {
+        return ranges.length == 0 ? -1 : ranges[0];
+    }
+
+    /**
+     * @return the code points which are in either set
+     */
+    public CharSet union(CharSet other) {
+        int[] a = ranges;
+        int[] b = other.ranges;
+        int[] result = new int[a.length + b.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        // Join overlapping or adjacent ranges in the order of their starts
+        while (i < a.length || j < b.length) {
+            int from, to;
+            if (j >= b.length || (i < a.length && a[i] <= b[j])) {
+                from = a[i];
+                to = a[i + 1];
+                i += 2;
+            } else {
+                from = b[j];
+                to = b[j + 1];
+                j += 2;
+            }
+            if (size > 0 && from <= result[size - 1] + 1)
+                result[size - 1] = Math.max(result[size - 1], to);
+            else {
+                result[size++] = from;
+                result[size++] = to;
+            }
+        }
+        return new CharSet(Arrays.copyOf(result, size));
+    }
+
+    /**
+     * @return the code points which are in both sets
+     */
+    public CharSet intersection(CharSet other) {
+        int[] a = ranges;
+        int[] b = other.ranges;
+        int[] result = new int[a.length + b.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        // Overlap of the current ranges, then skip the one which ends first
+        while (i < a.length && j < b.length) {
+            int from = Math.max(a[i], b[j]);
+            int to = Math.min(a[i + 1], b[j + 1]);
+            if (from <= to) {
+                result[size++] = from;
+                result[size++] = to;
+            }
+            if (a[i + 1] < b[j + 1])
+                i += 2;
+            else
+                j += 2;
+        }
+        return new CharSet(Arrays.copyOf(result, size));
+    }
+
+    /**
+     * @return the code points of this set which are not in the other set
+     */
+    public CharSet minus(CharSet other) {
+        return intersection(other.complement());
+    }
+
+    /**
+     * @return the code points which are not in this set
+     */
+    public CharSet complement() {
+        int[] result = new int[ranges.length + 2];
+        int size = 0;
+        int next = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (ranges[i] > next) {
+                result[size++] = next;
+                result[size++] = ranges[i] - 1;
+            }
+            next = ranges[i + 1] + 1;
+        }
+        if (next <= MAX) {
+            result[size++] = next;
+            result[size++] = MAX;
+        }
+        return new CharSet(Arrays.copyOf(result, size));
+    }
+
+    /**
+     * Orders the sets by their ranges, so the sets of a partition are ordered by their smallest code points
+     */
+    @Override
+    public int compareTo(CharSet other) {
+        return Arrays.compare(ranges, other.ranges);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return Arrays.equals(ranges, ((CharSet) o).ranges);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(ranges);
+    }
+
+    /**
+     * @return the set in the form [a-z0], code points outside printable ASCII are written as \\u{hex}
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < ranges.length; i += 2) {
+            append(builder, ranges[i]);
+            if (ranges[i + 1] != ranges[i]) {
+                builder.append('-');
+                append(builder, ranges[i + 1]);
+            }
+        }
+        return builder.append(']').toString();
+    }
+
+    private static void append(StringBuilder builder, int codePoint) {
+        if (codePoint > ' ' && codePoint < 0x7F && "[]-\\".indexOf(codePoint) < 0)
+            builder.append((char) codePoint);
+        else
+            builder.append("\\u{").append(Integer.toHexString(codePoint)).append('}');
+    }
+}
@@ -0,0 +1,135 @@
+package cz.cuni.mff.golyshet.automaton;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.*;
+
+/**
+ * Matcher of words by a DFA compiled into the bytecode of its own class.
+ * compile generates a hidden class whose method matches has a block of code with a switch over the symbols for every state,
+ * the cases jump to the blocks of the target states, so the DFA is in the code instead of a table
+ * and the JIT can compile it like a matcher written by hand and inline it into the callers.
+ * It pays off when the jumps are predictable, for random words the table is faster.
+ * HotSpot does not compile methods longer than 8000 bytes of bytecode, so larger DFAs get a matcher running the transition table.
+ * All automata must be in the package cz.cuni.mff.golyshet.automaton
+ */
+public abstract class CompiledMatcher {
+    // Longest generated method, HotSpot does not compile longer methods (HugeMethodLimit)
+    public static final int CODE_LIMIT = 8000;
+
+    private String[] alphabet;
+
+    /**
+     * Only the generated classes and the table matcher extend the matcher
+     */
+    protected CompiledMatcher() {
+    }
+
+    /**
+     * Compiles the DFA, the states unreachable from the initial state are left out
+     * @param automaton DFA with exactly one initial state, e.g. minimal
+     * @return the generated matcher, or the table matcher if the code would be too long
+     */
+    public static CompiledMatcher compile(Automaton automaton) {
+        if (automaton.getType() != Automaton.Type.DFA || automaton.getInitialStates().size() != 1)
+            throw new IllegalArgumentException("Only a DFA with one initial state can be compiled.");
+        String[] alphabet = automaton.getAlphabet().toArray(new String[0]);
+        int k = alphabet.length;
+
+        // Number the states by BFS, so the initial state is 0
+        Map<Integer, Integer> index = new HashMap<>();
+        List<Integer> order = new ArrayList<>();
+        index.put(automaton.getInitialStates().first(), 0);
+        order.add(automaton.getInitialStates().first());
+        for (int head = 0; head < order.size(); head++)
+            for (Transition transition : automaton.getTransitionTable().getOrDefault(order.get(head), Collections.emptySet()))
+                if (!index.containsKey(transition.getTo_state())) {
+                    index.put(transition.getTo_state(), order.size());
+                    order.add(transition.getTo_state());
+                }
+        int n = order.size();
+        int[] table = new int[n * k];
+        Arrays.fill(table, -1);
+        boolean[] accepting = new boolean[n];
+        for (int state = 0; state < n; state++) {
+            for (Transition transition : automaton.getTransitionTable().getOrDefault(order.get(state), Collections.emptySet()))
+                table[state * k + Arrays.binarySearch(alphabet, transition.getSymbol())] = index.get(transition.getTo_state());
+            accepting[state] = automaton.getFinalStates().contains(order.get(state));
+        }
+
+        CompiledMatcher matcher = null;
+        byte[] bytes = MatcherClassWriter.write(table, accepting, k);
+        if (bytes != null) {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+                matcher = (CompiledMatcher) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+            } catch (Throwable e) {
+                throw new IllegalStateException("The generated matcher cannot be loaded.", e);
+            }
+        }
+        if (matcher == null)
+            matcher = new TableMatcher(table, accepting, k);
+        matcher.alphabet = alphabet;
+        return matcher;
+    }
+
+    /**
+     * @return true if the matcher is generated code, false if it runs the transition table
+     */
+    public boolean isGenerated() {
+        return !(this instanceof TableMatcher);
+    }
+
+    /**
+     * @param word the word as a list of symbols
+     * @return the word as indexes of the symbols, -1 for symbols outside the alphabet
+     */
+    public int[] encode(List<String> word) {
+        int[] result = new int[word.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = Math.max(-1, Arrays.binarySearch(alphabet, word.get(i)));
+        return result;
+    }
+
+    /**
+     * @param word the word, every code point is one symbol
+     * @return the word as indexes of the symbols, -1 for symbols outside the alphabet
+     */
+    public int[] encode(CharSequence word) {
+        return word.codePoints().map(codePoint -> Math.max(-1, Arrays.binarySearch(alphabet, Character.toString(codePoint)))).toArray();
+    }
+
+    /**
+     * @param word indexes of the symbols
+     * @return true if the word is accepted
+     */
+    public abstract boolean matches(int[] word);
+
+    /**
+     * Matcher running the transition table, for DFAs too large to be compiled
+     */
+    private static final class TableMatcher extends CompiledMatcher {
+        private final int[] table;
+        private final boolean[] accepting;
+        private final int k;
+
+        TableMatcher(int[] table, boolean[] accepting, int k) {
+            this.table = table;
+            this.accepting = accepting;
+            this.k = k;
+        }
+
+        @Override
+        public boolean matches(int[] word) {
+            int state = 0;
+            for (int symbol : word) {
+                if (symbol < 0 || symbol >= k)
+                    return false;
+                state = table[state * k + symbol];
+                if (state < 0)
+                    return false;
+            }
+            return accepting[state];
+        }
+    }
+}
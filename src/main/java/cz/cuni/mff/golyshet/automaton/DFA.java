@@ -45,9 +45,11 @@ public class DFA implements Automaton {
         mappedStates.put(initial_states.first(), stateCounter++);
 
         // BFS to traverse all reachable states from the initial state
+        // Transitions are visited in alphabet order, so the numbering is canonical for a minimal DFA
         while (!queue.isEmpty()) {
             Integer currentState = queue.poll();
-            Set<Transition> transitions = transition_table.getOrDefault(currentState, Collections.emptySet());
+            List<Transition> transitions = new ArrayList<>(transition_table.getOrDefault(currentState, Collections.emptySet()));
+            transitions.sort(Comparator.comparing(Transition::getSymbol));
             for (Transition transition : transitions) {
                 if (!mappedStates.containsKey(transition.getTo_state())) {
                     mappedStates.put(transition.getTo_state(), stateCounter++);
@@ -71,7 +73,7 @@ public class DFA implements Automaton {
         Map<Integer, Set<Transition>> newTransitionTable = transition_table.entrySet().stream()
                 .collect(Collectors.toMap(entry -> mappedStates.get(entry.getKey()),
                         entry -> entry.getValue().stream()
-                                .map(transition -> new Transition(transition.getSymbol(), mappedStates.get(transition.getTo_state())))
+                                .map(transition -> Transition.of(transition.getSymbol(), mappedStates.get(transition.getTo_state())))
                                 .collect(Collectors.toSet())));
 
         // Clear the DFA's old fields and replace them with the new ones
@@ -127,38 +129,7 @@ public class DFA implements Automaton {
                 fileWriter = new java.io.FileWriter(FileDescriptor.out);
             else
                 fileWriter = new java.io.FileWriter(filename);
-            // Write the header line with "DFA" followed by the alphabet symbols separated by spaces
-            fileWriter.write("DFA ");
-            for (String symbol : alphabet)
-                fileWriter.write(symbol + " ");
-            fileWriter.write("\n");
-            // Write the lines for each state with its type (initial, final, both or none), ID, and transitions
-            for (Integer state : states) {
-                // Determine the state type and write the appropriate character(s) before the state ID
-                if (final_states.contains(state) && initial_states.contains(state))
-                    fileWriter.write("<>");
-                else if (initial_states.contains(state))
-                    fileWriter.write(" >");
-                else if (final_states.contains(state))
-                    fileWriter.write(" <");
-                else
-                    fileWriter.write("  ");
-                fileWriter.write(" ");
-                // Write the state ID followed by a space
-                fileWriter.write(state.toString());
-                fileWriter.write(" ");
-                // Write the transitions for each alphabet symbol separated by spaces
-                for (String symbol : alphabet) {
-                    // Find the transition with the current symbol for the current state
-                    Transition transition = transition_table.getOrDefault(state, Collections.emptySet()).stream().filter(t -> t.getSymbol().equals(symbol)).findFirst().orElse(null);
-                    if (transition == null)
-                        fileWriter.write("- ");
-                    // Write the ID of the destination state if there is a transition with the current symbol
-                    else
-                        fileWriter.write(transition.getTo_state() + " ");
-                }
-                fileWriter.write("\n");
-            }
+            write(fileWriter);
             fileWriter.flush();
             // Close the writer if a filename was provided
             if (!filename.isEmpty())
@@ -168,4 +139,52 @@ public class DFA implements Automaton {
             System.out.println("Error while saving DFA to file.");
         }
     }
+
+    @Override
+    public void write(java.io.Writer fileWriter) throws java.io.IOException {
+        // Write the header line with "DFA" followed by the alphabet symbols separated by spaces
+        fileWriter.write("DFA ");
+        for (String symbol : alphabet)
+            fileWriter.write(symbol + " ");
+        fileWriter.write("\n");
+        // Write the lines for each state with its type (initial, final, both or none), ID, and transitions
+        for (Integer state : states) {
+            // Determine the state type and write the appropriate character(s) before the state ID
+            if (final_states.contains(state) && initial_states.contains(state))
+                fileWriter.write("<>");
+            else if (initial_states.contains(state))
+                fileWriter.write(" >");
+            else if (final_states.contains(state))
+                fileWriter.write(" <");
+            else
+                fileWriter.write("  ");
+            fileWriter.write(" ");
+            // Write the state ID followed by a space
+            fileWriter.write(state.toString());
+            fileWriter.write(" ");
+            // Write the transitions for each alphabet symbol separated by spaces
+            for (String symbol : alphabet) {
+                // Find the transition with the current symbol for the current state
+                Transition transition = transition_table.getOrDefault(state, Collections.emptySet()).stream().filter(t -> t.getSymbol().equals(symbol)).findFirst().orElse(null);
+                if (transition == null)
+                    fileWriter.write("- ");
+                // Write the ID of the destination state if there is a transition with the current symbol
+                else
+                    fileWriter.write(transition.getTo_state() + " ");
+            }
+            fileWriter.write("\n");
+        }
+    }
+
+    @Override
+    public DFA copy() {
+        DFA result = new DFA();
+        result.alphabet.addAll(alphabet);
+        result.states.addAll(states);
+        result.final_states.addAll(final_states);
+        result.initial_states.addAll(initial_states);
+        for (Map.Entry<Integer, Set<Transition>> entry : transition_table.entrySet())
+            result.transition_table.put(entry.getKey(), new HashSet<>(entry.getValue()));
+        return result;
+    }
 }
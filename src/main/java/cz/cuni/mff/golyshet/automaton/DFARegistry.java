@@ -0,0 +1,95 @@
+package cz.cuni.mff.golyshet.automaton;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.*;
+
+/**
+ * Registry of minimal DFAs shared within the process (hash-consing).
+ * The registry maps the fingerprint of the canonical form to an ImmutableAutomaton.
+ * Minimal DFAs that accept the same language are interned to the same instance,
+ * so equality of languages can be tested by comparing references.
+ * Values are held by weak references, a DFA is removed from the registry when nobody else uses it.
+ * All registries must be in the package cz.cuni.mff.golyshet.automaton
+ */
+public final class DFARegistry {
+    private static final Map<Fingerprint, Entry> registry = new HashMap<>();
+    private static final ReferenceQueue<ImmutableAutomaton> collected = new ReferenceQueue<>();
+
+    private DFARegistry() {
+    }
+
+    /**
+     * Returns the shared immutable instance of the DFA.
+     * The DFA is expected to be in canonical form, i.e. minimized and renamed from 0.
+     * @param automaton immutable minimal DFA in canonical form
+     * @return shared immutable DFA accepting the same language, the given one if no such DFA is registered
+     */
+    public static synchronized ImmutableAutomaton intern(ImmutableAutomaton automaton) {
+        expunge();
+        Fingerprint fingerprint = Fingerprint.of(automaton);
+        Entry entry = registry.get(fingerprint);
+        ImmutableAutomaton shared = entry == null ? null : entry.get();
+        // Compare the canonical forms to be safe against fingerprint collisions
+        if (shared != null && sameCanonicalForm(shared, automaton))
+            return shared;
+        registry.put(fingerprint, new Entry(fingerprint, automaton, collected));
+        return automaton;
+    }
+
+    /**
+     * @return number of DFAs that are currently registered
+     */
+    public static synchronized int size() {
+        expunge();
+        return registry.size();
+    }
+
+    /**
+     * Removes the entries whose DFAs were garbage collected
+     */
+    private static void expunge() {
+        Entry entry;
+        while ((entry = (Entry) collected.poll()) != null) {
+            if (registry.get(entry.fingerprint) == entry)
+                registry.remove(entry.fingerprint);
+        }
+    }
+
+    /**
+     * Checks whether two automata in canonical form are identical
+     * @param automaton1 first automaton
+     * @param automaton2 second automaton
+     * @return true if the automata have the same alphabet, states, initial and final states and transitions
+     */
+    private static boolean sameCanonicalForm(Automaton automaton1, Automaton automaton2) {
+        if (!automaton1.getAlphabet().equals(automaton2.getAlphabet())
+                || !automaton1.getStates().equals(automaton2.getStates())
+                || !automaton1.getInitialStates().equals(automaton2.getInitialStates())
+                || !automaton1.getFinalStates().equals(automaton2.getFinalStates()))
+            return false;
+        for (Integer state : automaton1.getStates()) {
+            Map<String, Integer> row1 = new HashMap<>();
+            Map<String, Integer> row2 = new HashMap<>();
+            for (Transition transition : automaton1.getTransitionTable().getOrDefault(state, Collections.emptySet()))
+                row1.put(transition.getSymbol(), transition.getTo_state());
+            for (Transition transition : automaton2.getTransitionTable().getOrDefault(state, Collections.emptySet()))
+                row2.put(transition.getSymbol(), transition.getTo_state());
+            if (!row1.equals(row2))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Weak reference to a registered DFA that remembers its fingerprint
+     */
+    private static class Entry extends WeakReference<ImmutableAutomaton> {
+        final Fingerprint fingerprint;
+
+        Entry(Fingerprint fingerprint, ImmutableAutomaton automaton, ReferenceQueue<ImmutableAutomaton> queue) {
+            super(automaton, queue);
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package cz.cuni.mff.golyshet.automaton;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Represents a 128-bit fingerprint of an automaton in canonical form.
+ * The fingerprint is computed from the alphabet, the states, the final states and the transitions of the automaton.
+ * Two minimal DFAs renamed by rename(0) accept the same language if and only if they have the same canonical form,
+ * so equal fingerprints mean equal languages (up to a hash collision).
+ * All fingerprints must be in the package cz.cuni.mff.golyshet.automaton
+ */
+public final class Fingerprint {
+    private final long high;
+    private final long low;
+
+    /**
+     * Creates a new Fingerprint object from two halves of 128-bit value.
+     * @param high upper 64 bits
+     * @param low lower 64 bits
+     */
+    public Fingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Computes the fingerprint of the automaton.
+     * The automaton is expected to be in canonical form, i.e. minimized and renamed from 0.
+     * @param automaton for which the fingerprint should be computed
+     * @return fingerprint of the automaton
+     */
+    public static Fingerprint of(Automaton automaton) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("MD5 digest is not available.", e);
+        }
+        // Write the alphabet, every symbol is prefixed by its length
+        update(digest, automaton.getAlphabet().size());
+        for (String symbol : automaton.getAlphabet()) {
+            byte[] bytes = symbol.getBytes(StandardCharsets.UTF_8);
+            update(digest, bytes.length);
+            digest.update(bytes);
+        }
+        // Write the initial state and the number of states
+        update(digest, automaton.getInitialStates().isEmpty() ? -1 : automaton.getInitialStates().first());
+        update(digest, automaton.getStates().size());
+        // Write every state with its final flag and its transitions in alphabet order
+        for (Integer state : automaton.getStates()) {
+            update(digest, state);
+            update(digest, automaton.getFinalStates().contains(state) ? 1 : 0);
+            Map<String, Integer> row = new HashMap<>();
+            for (Transition transition : automaton.getTransitionTable().getOrDefault(state, Collections.emptySet()))
+                row.put(transition.getSymbol(), transition.getTo_state());
+            for (String symbol : automaton.getAlphabet())
+                update(digest, row.getOrDefault(symbol, -1));
+        }
+        byte[] hash = digest.digest();
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < 8; i++) {
+            high = (high << 8) | (hash[i] & 0xff);
+            low = (low << 8) | (hash[i + 8] & 0xff);
+        }
+        return new Fingerprint(high, low);
+    }
+
+    /**
+     * Writes an integer to the digest
+     * @param digest to which the integer should be written
+     * @param value integer to be written
+     */
+    private static void update(MessageDigest digest, int value) {
+        digest.update((byte) (value >>> 24));
+        digest.update((byte) (value >>> 16));
+        digest.update((byte) (value >>> 8));
+        digest.update((byte) value);
+    }
+
+    /**
+     * @return upper 64 bits of the fingerprint
+     */
+    public long getHigh() {
+        return high;
+    }
+
+    /**
+     * @return lower 64 bits of the fingerprint
+     */
+    public long getLow() {
+        return low;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Fingerprint that = (Fingerprint) o;
+        return high == that.high && low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(high, low);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+}
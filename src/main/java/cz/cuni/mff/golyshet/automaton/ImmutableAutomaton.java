@@ -0,0 +1,325 @@
+package cz.cuni.mff.golyshet.automaton;
+
+import java.util.*;
+
+/**
+ * Immutable automaton, either NFA or DFA.
+ * All getters return unmodifiable views, so the automaton can be shared safely across threads,
+ * and rename and clear throw UnsupportedOperationException.
+ * Derived automata are created by a Builder, which shares every component (and every row of the transition table)
+ * that is not replaced, so a stage of an operation allocates only what it changes.
+ * All automata must be in the package cz.cuni.mff.golyshet.automaton
+ */
+public final class ImmutableAutomaton implements Automaton {
+    private final Type type;
+    private final SortedSet<String> alphabet;
+    private final SortedSet<Integer> states;
+    private final SortedSet<Integer> final_states;
+    private final SortedSet<Integer> initial_states;
+    private final Map<Integer, Set<Transition>> transition_table;
+
+    private ImmutableAutomaton(Type type, SortedSet<String> alphabet, SortedSet<Integer> states, SortedSet<Integer> final_states,
+                               SortedSet<Integer> initial_states, Map<Integer, Set<Transition>> transition_table) {
+        this.type = type;
+        this.alphabet = alphabet;
+        this.states = states;
+        this.final_states = final_states;
+        this.initial_states = initial_states;
+        this.transition_table = transition_table;
+    }
+
+    /**
+     * Returns the automaton as an immutable automaton, a mutable automaton is copied
+     * @param automaton to be converted
+     * @return the same automaton if it is immutable, an immutable copy otherwise
+     */
+    public static ImmutableAutomaton of(Automaton automaton) {
+        if (automaton instanceof ImmutableAutomaton immutable)
+            return immutable;
+        Builder builder = builder(automaton.getType())
+                .alphabet(new TreeSet<>(automaton.getAlphabet()))
+                .states(new TreeSet<>(automaton.getStates()))
+                .finalStates(new TreeSet<>(automaton.getFinalStates()))
+                .initialStates(new TreeSet<>(automaton.getInitialStates()));
+        for (Map.Entry<Integer, Set<Transition>> entry : automaton.getTransitionTable().entrySet())
+            builder.transitions(entry.getKey(), new HashSet<>(entry.getValue()));
+        return builder.build();
+    }
+
+    /**
+     * @param type of the new automaton
+     * @return a builder of a new empty automaton
+     */
+    public static Builder builder(Type type) {
+        return new Builder(type);
+    }
+
+    /**
+     * @return a builder of an automaton derived from this one, sharing all components that are not replaced
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    @Override
+    public Type getType() {
+        return type;
+    }
+
+    @Override
+    public void rename(int start) {
+        throw new UnsupportedOperationException("Immutable automaton cannot be renamed, rename its copy instead.");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Immutable automaton cannot be cleared.");
+    }
+
+    @Override
+    public SortedSet<Integer> getStates() {
+        return states;
+    }
+
+    @Override
+    public SortedSet<String> getAlphabet() {
+        return alphabet;
+    }
+
+    @Override
+    public SortedSet<Integer> getFinalStates() {
+        return final_states;
+    }
+
+    @Override
+    public SortedSet<Integer> getInitialStates() {
+        return initial_states;
+    }
+
+    @Override
+    public Map<Integer, Set<Transition>> getTransitionTable() {
+        return transition_table;
+    }
+
+    @Override
+    public void save(String filename) {
+        try {
+            java.io.FileWriter fileWriter;
+            // Create a FileWriter object using the given filename or the standard output if filename is empty
+            if (filename.isEmpty())
+                fileWriter = new java.io.FileWriter(java.io.FileDescriptor.out);
+            else
+                fileWriter = new java.io.FileWriter(filename);
+            write(fileWriter);
+            fileWriter.flush();
+            // Close the writer if a filename was provided
+            if (!filename.isEmpty())
+                fileWriter.close();
+        } catch (java.io.IOException e) {
+            System.out.println("Error while saving " + type + " to file.");
+        }
+    }
+
+    @Override
+    public void write(java.io.Writer writer) throws java.io.IOException {
+        // Write the header line with the type followed by the alphabet symbols separated by spaces
+        writer.write(type + " ");
+        for (String symbol : alphabet)
+            writer.write(symbol + " ");
+        writer.write("\n");
+        Map<String, SortedSet<Integer>> row = new HashMap<>();
+        for (Integer state : states) {
+            // Determine the state type and write the appropriate character(s) before the state ID
+            if (final_states.contains(state) && initial_states.contains(state))
+                writer.write("<>");
+            else if (initial_states.contains(state))
+                writer.write(" >");
+            else if (final_states.contains(state))
+                writer.write(" <");
+            else
+                writer.write("  ");
+            writer.write(" " + state + " ");
+            // Write the destination states for each alphabet symbol separated by "|", or "-" if there are none,
+            // a DFA has at most one destination, so its rows are the same as written by DFA
+            row.clear();
+            for (Transition transition : transition_table.getOrDefault(state, Collections.emptySet()))
+                row.computeIfAbsent(transition.getSymbol(), symbol -> new TreeSet<>()).add(transition.getTo_state());
+            for (String symbol : alphabet) {
+                SortedSet<Integer> targets = row.get(symbol);
+                if (targets == null)
+                    writer.write("- ");
+                else {
+                    StringJoiner joiner = new StringJoiner("|", "", " ");
+                    for (Integer target : targets)
+                        joiner.add(target.toString());
+                    writer.write(joiner.toString());
+                }
+            }
+            writer.write("\n");
+        }
+    }
+
+    @Override
+    public Automaton copy() {
+        Automaton result = type == Type.DFA ? new DFA() : new NFA();
+        result.getAlphabet().addAll(alphabet);
+        result.getStates().addAll(states);
+        result.getFinalStates().addAll(final_states);
+        result.getInitialStates().addAll(initial_states);
+        for (Map.Entry<Integer, Set<Transition>> entry : transition_table.entrySet())
+            result.getTransitionTable().put(entry.getKey(), new HashSet<>(entry.getValue()));
+        return result;
+    }
+
+    /**
+     * Builder of an immutable automaton.
+     * The builder takes ownership of the collections passed to it, they must not be modified afterwards.
+     * Components that are not replaced are shared with the automaton the builder was created from.
+     * The built automaton owns the collections, so the builder cannot be used after build.
+     */
+    public static final class Builder {
+        private final ImmutableAutomaton base;
+        private Type type;
+        private SortedSet<String> alphabet;
+        private SortedSet<Integer> states;
+        private SortedSet<Integer> final_states;
+        private SortedSet<Integer> initial_states;
+        private Map<Integer, Set<Transition>> transition_table;
+        // True when the transition table is already a private copy of the builder
+        private boolean ownTable;
+        // True after build, the collections belong to the built automaton
+        private boolean built;
+
+        private Builder(Type type) {
+            this.base = null;
+            this.type = type;
+            this.alphabet = new TreeSet<>();
+            this.states = new TreeSet<>();
+            this.final_states = new TreeSet<>();
+            this.initial_states = new TreeSet<>();
+            this.transition_table = new HashMap<>();
+            this.ownTable = true;
+        }
+
+        private Builder(ImmutableAutomaton base) {
+            this.base = base;
+            this.type = base.type;
+            this.alphabet = base.alphabet;
+            this.states = base.states;
+            this.final_states = base.final_states;
+            this.initial_states = base.initial_states;
+            this.transition_table = base.transition_table;
+            this.ownTable = false;
+        }
+
+        /**
+         * Replaces the type of the automaton
+         * @return this builder
+         */
+        public Builder type(Type type) {
+            checkNotBuilt();
+            this.type = type;
+            return this;
+        }
+
+        /**
+         * Replaces the alphabet
+         * @return this builder
+         */
+        public Builder alphabet(SortedSet<String> alphabet) {
+            checkNotBuilt();
+            this.alphabet = alphabet;
+            return this;
+        }
+
+        /**
+         * Replaces the set of states
+         * @return this builder
+         */
+        public Builder states(SortedSet<Integer> states) {
+            checkNotBuilt();
+            this.states = states;
+            return this;
+        }
+
+        /**
+         * Replaces the set of final states
+         * @return this builder
+         */
+        public Builder finalStates(SortedSet<Integer> final_states) {
+            checkNotBuilt();
+            this.final_states = final_states;
+            return this;
+        }
+
+        /**
+         * Replaces the set of initial states
+         * @return this builder
+         */
+        public Builder initialStates(SortedSet<Integer> initial_states) {
+            checkNotBuilt();
+            this.initial_states = initial_states;
+            return this;
+        }
+
+        /**
+         * Replaces the transitions leaving the state, other rows stay shared
+         * @param state the source state
+         * @param transitions the new transitions of the state, an empty set removes the row
+         * @return this builder
+         */
+        public Builder transitions(int state, Set<Transition> transitions) {
+            checkNotBuilt();
+            ownTable();
+            if (transitions.isEmpty())
+                transition_table.remove(state);
+            else
+                transition_table.put(state, Collections.unmodifiableSet(transitions));
+            return this;
+        }
+
+        /**
+         * Keeps only the rows of the given states, the kept rows stay shared
+         * @param kept the states whose rows are kept
+         * @return this builder
+         */
+        public Builder retainTransitions(Set<Integer> kept) {
+            checkNotBuilt();
+            ownTable();
+            transition_table.keySet().retainAll(kept);
+            return this;
+        }
+
+        /**
+         * @return the immutable automaton
+         */
+        public ImmutableAutomaton build() {
+            checkNotBuilt();
+            built = true;
+            return new ImmutableAutomaton(type,
+                    base != null && alphabet == base.alphabet ? alphabet : Collections.unmodifiableSortedSet(alphabet),
+                    base != null && states == base.states ? states : Collections.unmodifiableSortedSet(states),
+                    base != null && final_states == base.final_states ? final_states : Collections.unmodifiableSortedSet(final_states),
+                    base != null && initial_states == base.initial_states ? initial_states : Collections.unmodifiableSortedSet(initial_states),
+                    base != null && !ownTable ? transition_table : Collections.unmodifiableMap(transition_table));
+        }
+
+        /**
+         * @throws IllegalStateException if the automaton was already built, a later change would modify it
+         */
+        private void checkNotBuilt() {
+            if (built)
+                throw new IllegalStateException("The builder was already used to build an automaton.");
+        }
+
+        /**
+         * Makes a shallow copy of the shared transition table before the first change, the rows stay shared
+         */
+        private void ownTable() {
+            if (!ownTable) {
+                transition_table = new HashMap<>(transition_table);
+                ownTable = true;
+            }
+        }
+    }
+}
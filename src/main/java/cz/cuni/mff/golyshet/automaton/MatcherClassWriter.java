@@ -0,0 +1,295 @@
+package cz.cuni.mff.golyshet.automaton;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Writer of the class files of the matchers generated by CompiledMatcher.compile.
+ * The class extends CompiledMatcher and its method matches(int[]) has a block of code for every state:
+ * <pre>
+ * state3:
+ *     if (i == word.length) return true;   // or false if the state is not final
+ *     switch (word[i++]) { case a: goto state5; case b: goto state3; ... default: return false; }
+ * </pre>
+ * The initial state is the first block, so the current state is the position in the code and is not stored at all,
+ * every step of the DFA is one jump.
+ * The class file has version 49, which is verified without stack map frames, so no frames have to be computed.
+ * All automata must be in the package cz.cuni.mff.golyshet.automaton
+ */
+final class MatcherClassWriter {
+    private static final String NAME = "cz/cuni/mff/golyshet/automaton/CompiledMatcher$Generated";
+    private static final String SUPER = "cz/cuni/mff/golyshet/automaton/CompiledMatcher";
+
+    // Opcodes
+    private static final int ICONST_0 = 0x03;
+    private static final int ILOAD_2 = 0x1c;
+    private static final int ILOAD_3 = 0x1d;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int IALOAD = 0x2e;
+    private static final int ISTORE_2 = 0x3d;
+    private static final int ISTORE_3 = 0x3e;
+    private static final int POP = 0x57;
+    private static final int IINC = 0x84;
+    private static final int IF_ICMPGE = 0xa2;
+    private static final int TABLESWITCH = 0xaa;
+    private static final int LOOKUPSWITCH = 0xab;
+    private static final int IRETURN = 0xac;
+    private static final int RETURN = 0xb1;
+    private static final int ARRAYLENGTH = 0xbe;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int GOTO_W = 0xc8;
+
+    private MatcherClassWriter() {
+    }
+
+    /**
+     * @param table target of state s by symbol a at s*k+a, negative if there is no transition, the initial state is 0
+     * @param accepting final states
+     * @param k number of symbols
+     * @return the class file, or null if the method would be longer than CompiledMatcher.CODE_LIMIT
+     */
+    static byte[] write(int[] table, boolean[] accepting, int k) {
+        byte[] code = matches(table, accepting, k);
+        if (code == null)
+            return null;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeInt(0xCAFEBABE);
+            output.writeShort(0);
+            output.writeShort(49);
+
+            // Constant pool
+            output.writeShort(12);
+            utf8(output, NAME);                             // 1
+            output.writeByte(7);                            // 2 class NAME
+            output.writeShort(1);
+            utf8(output, SUPER);                            // 3
+            output.writeByte(7);                            // 4 class SUPER
+            output.writeShort(3);
+            utf8(output, "<init>");                         // 5
+            utf8(output, "()V");                            // 6
+            output.writeByte(12);                           // 7 name and type <init>()V
+            output.writeShort(5);
+            output.writeShort(6);
+            output.writeByte(10);                           // 8 SUPER.<init>()V
+            output.writeShort(4);
+            output.writeShort(7);
+            utf8(output, "matches");                        // 9
+            utf8(output, "([I)Z");                          // 10
+            utf8(output, "Code");                           // 11
+
+            // Public final class without interfaces and fields
+            output.writeShort(0x0031);
+            output.writeShort(2);
+            output.writeShort(4);
+            output.writeShort(0);
+            output.writeShort(0);
+
+            output.writeShort(2);
+            method(output, 5, 6, 1, 1, new byte[]{(byte) ALOAD_0, (byte) INVOKESPECIAL, 0, 8, (byte) RETURN});
+            method(output, 9, 10, 2, 4, code);
+            output.writeShort(0);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void utf8(DataOutputStream output, String value) throws IOException {
+        output.writeByte(1);
+        output.writeUTF(value);
+    }
+
+    /**
+     * Writes a public method with its Code attribute without exception handlers
+     */
+    private static void method(DataOutputStream output, int name, int descriptor, int stack, int locals, byte[] code) throws IOException {
+        output.writeShort(0x0001);
+        output.writeShort(name);
+        output.writeShort(descriptor);
+        output.writeShort(1);
+        output.writeShort(11);
+        output.writeInt(12 + code.length);
+        output.writeShort(stack);
+        output.writeShort(locals);
+        output.writeInt(code.length);
+        output.write(code);
+        output.writeShort(0);
+        output.writeShort(0);
+    }
+
+    /**
+     * @return the code of matches, or null if it would be too long
+     */
+    private static byte[] matches(int[] table, boolean[] accepting, int k) {
+        int n = accepting.length;
+        Code code = new Code();
+        int accept = code.label();
+        int reject = code.label();
+        int[] states = new int[n];
+        for (int state = 0; state < n; state++)
+            states[state] = code.label();
+
+        // Local variables: this, word, i = 0, length = word.length
+        code.op(ICONST_0);
+        code.op(ISTORE_2);
+        code.op(ALOAD_1);
+        code.op(ARRAYLENGTH);
+        code.op(ISTORE_3);
+
+        for (int state = 0; state < n; state++) {
+            if (code.length() > CompiledMatcher.CODE_LIMIT)
+                return null;
+            code.place(states[state]);
+            // if (i == length) return accepting; symbol = word[i++]
+            code.op(ILOAD_2);
+            code.op(ILOAD_3);
+            code.jump(IF_ICMPGE, accepting[state] ? accept : reject);
+            code.op(ALOAD_1);
+            code.op(ILOAD_2);
+            code.op(IALOAD);
+            code.op(IINC, 2, 1);
+            // switch (symbol), every case jumps to the code of the target state
+            List<Integer> symbols = new ArrayList<>();
+            List<Integer> labels = new ArrayList<>();
+            for (int symbol = 0; symbol < k; symbol++) {
+                int target = table[state * k + symbol];
+                if (target < 0)
+                    continue;
+                symbols.add(symbol);
+                labels.add(states[target]);
+            }
+            if (symbols.isEmpty()) {
+                code.op(POP);
+                code.jump(GOTO_W, reject);
+                continue;
+            }
+            int low = symbols.get(0);
+            int high = symbols.get(symbols.size() - 1);
+            if (high - low + 1 <= 2 * symbols.size() + 4) {
+                int[] targets = new int[high - low + 1];
+                Arrays.fill(targets, reject);
+                for (int i = 0; i < symbols.size(); i++)
+                    targets[symbols.get(i) - low] = labels.get(i);
+                code.tableSwitch(low, targets, reject);
+            } else {
+                code.lookupSwitch(symbols.stream().mapToInt(Integer::intValue).toArray(),
+                        labels.stream().mapToInt(Integer::intValue).toArray(), reject);
+            }
+        }
+
+        code.place(accept);
+        code.op(ICONST_0 + 1);
+        code.op(IRETURN);
+        code.place(reject);
+        code.op(ICONST_0);
+        code.op(IRETURN);
+        if (code.length() > CompiledMatcher.CODE_LIMIT)
+            return null;
+        return code.toByteArray();
+    }
+
+    /**
+     * Bytecode with labels, the offsets of the jumps are patched when the code is finished
+     */
+    private static class Code {
+        private byte[] bytes = new byte[256];
+        private int length = 0;
+        private final List<Integer> positions = new ArrayList<>();
+        // Jumps to be patched: start of the instruction, position of the offset, label, size of the offset
+        private final List<int[]> jumps = new ArrayList<>();
+
+        int length() {
+            return length;
+        }
+
+        int label() {
+            positions.add(-1);
+            return positions.size() - 1;
+        }
+
+        void place(int label) {
+            positions.set(label, length);
+        }
+
+        void op(int... values) {
+            for (int value : values)
+                u1(value);
+        }
+
+        void jump(int opcode, int label) {
+            int start = length;
+            u1(opcode);
+            int size = opcode == GOTO_W ? 4 : 2;
+            jumps.add(new int[]{start, length, label, size});
+            for (int i = 0; i < size; i++)
+                u1(0);
+        }
+
+        void tableSwitch(int low, int[] labels, int otherwise) {
+            int start = align(TABLESWITCH);
+            offset(start, otherwise);
+            u4(low);
+            u4(low + labels.length - 1);
+            for (int label : labels)
+                offset(start, label);
+        }
+
+        void lookupSwitch(int[] keys, int[] labels, int otherwise) {
+            int start = align(LOOKUPSWITCH);
+            offset(start, otherwise);
+            u4(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                u4(keys[i]);
+                offset(start, labels[i]);
+            }
+        }
+
+        /**
+         * Writes the switch opcode and the padding up to a multiple of 4
+         * @return start of the instruction
+         */
+        private int align(int opcode) {
+            int start = length;
+            u1(opcode);
+            while (length % 4 != 0)
+                u1(0);
+            return start;
+        }
+
+        private void offset(int start, int label) {
+            jumps.add(new int[]{start, length, label, 4});
+            u4(0);
+        }
+
+        private void u1(int value) {
+            if (length == bytes.length)
+                bytes = Arrays.copyOf(bytes, 2 * length);
+            bytes[length++] = (byte) value;
+        }
+
+        private void u2(int value) {
+            u1(value >>> 8);
+            u1(value);
+        }
+
+        private void u4(int value) {
+            u2(value >>> 16);
+            u2(value);
+        }
+
+        byte[] toByteArray() {
+            for (int[] jump : jumps) {
+                int offset = positions.get(jump[2]) - jump[0];
+                for (int i = 0; i < jump[3]; i++)
+                    bytes[jump[1] + i] = (byte) (offset >>> (8 * (jump[3] - 1 - i)));
+            }
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+}
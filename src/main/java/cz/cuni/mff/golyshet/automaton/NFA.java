@@ -70,7 +70,7 @@ public class NFA implements Automaton {
         Map<Integer, Set<Transition>> newTransitionTable = transition_table.entrySet().stream()
                 .collect(Collectors.toMap(entry -> mappedStates.get(entry.getKey()),
                         entry -> entry.getValue().stream()
-                                .map(transition -> new Transition(transition.getSymbol(), mappedStates.get(transition.getTo_state())))
+                                .map(transition -> Transition.of(transition.getSymbol(), mappedStates.get(transition.getTo_state())))
                                 .collect(Collectors.toSet())));
 
         // Replace old sets and maps with new ones
@@ -118,6 +118,64 @@ public class NFA implements Automaton {
 
     @Override
     public void save(String filename) {
+        try {
+            java.io.FileWriter fileWriter;
+            // Create a FileWriter object using the given filename or the standard output if filename is empty
+            if (filename.isEmpty())
+                fileWriter = new java.io.FileWriter(java.io.FileDescriptor.out);
+            else
+                fileWriter = new java.io.FileWriter(filename);
+            write(fileWriter);
+            fileWriter.flush();
+            // Close the writer if a filename was provided
+            if (!filename.isEmpty())
+                fileWriter.close();
+        } catch (java.io.IOException e) {
+            System.out.println("Error while saving NFA to file.");
+        }
+    }
 
+    @Override
+    public void write(java.io.Writer fileWriter) throws java.io.IOException {
+        // Write the header line with "NFA" followed by the alphabet symbols separated by spaces
+        fileWriter.write("NFA ");
+        for (String symbol : alphabet)
+            fileWriter.write(symbol + " ");
+        fileWriter.write("\n");
+        for (Integer state : states) {
+            // Determine the state type and write the appropriate character(s) before the state ID
+            if (final_states.contains(state) && initial_states.contains(state))
+                fileWriter.write("<>");
+            else if (initial_states.contains(state))
+                fileWriter.write(" >");
+            else if (final_states.contains(state))
+                fileWriter.write(" <");
+            else
+                fileWriter.write("  ");
+            fileWriter.write(" " + state + " ");
+            // Write the destination states for each alphabet symbol separated by "|", or "-" if there are none
+            for (String symbol : alphabet) {
+                String targets = transition_table.getOrDefault(state, Collections.emptySet()).stream()
+                        .filter(t -> t.getSymbol().equals(symbol))
+                        .map(Transition::getTo_state)
+                        .sorted()
+                        .map(String::valueOf)
+                        .collect(Collectors.joining("|"));
+                fileWriter.write((targets.isEmpty() ? "-" : targets) + " ");
+            }
+            fileWriter.write("\n");
+        }
+    }
+
+    @Override
+    public NFA copy() {
+        NFA result = new NFA();
+        result.alphabet.addAll(alphabet);
+        result.states.addAll(states);
+        result.final_states.addAll(final_states);
+        result.initial_states.addAll(initial_states);
+        for (Map.Entry<Integer, Set<Transition>> entry : transition_table.entrySet())
+            result.transition_table.put(entry.getKey(), new HashSet<>(entry.getValue()));
+        return result;
     }
 }
@@ -0,0 +1,316 @@
+package cz.cuni.mff.golyshet.automaton;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Deterministic finite automaton whose transition table and final states are stored outside the Java heap.
+ * States are numbered from 0 to n-1 and symbols are indexes into the sorted alphabet.
+ * The transition table is a flat array of n*k ints, where -1 means no transition,
+ * the final states are a bitmap of n bits.
+ * The storage is either in direct buffers, or in a memory-mapped file, which can be larger than the heap.
+ * The file starts with a header (magic, version, number of states, number of symbols, initial state, alphabet),
+ * followed by the transition table and the bitmap of final states.
+ * All automata must be in the package cz.cuni.mff.golyshet.automaton
+ */
+public final class OffHeapDFA implements AutoCloseable {
+    private static final int MAGIC = 0x4155544D;
+    private static final int VERSION = 1;
+
+    private final List<String> alphabet;
+    private final int states;
+    private final int initial;
+    private final OffHeapIntArray transitions;
+    private final OffHeapIntArray finals;
+    private final FileChannel channel;
+
+    private OffHeapDFA(List<String> alphabet, int states, int initial, OffHeapIntArray transitions,
+                       OffHeapIntArray finals, FileChannel channel) {
+        this.alphabet = alphabet;
+        this.states = states;
+        this.initial = initial;
+        this.transitions = transitions;
+        this.finals = finals;
+        this.channel = channel;
+    }
+
+    /**
+     * Allocates a new DFA in direct buffers without transitions and final states
+     * @param alphabet sorted alphabet of the DFA
+     * @param states number of states
+     * @param initial the initial state
+     * @return the new DFA
+     */
+    public static OffHeapDFA allocate(List<String> alphabet, int states, int initial) {
+        OffHeapIntArray transitions = OffHeapIntArray.allocate((long) states * alphabet.size());
+        transitions.fill(-1);
+        return new OffHeapDFA(List.copyOf(alphabet), states, initial, transitions,
+                OffHeapIntArray.allocate(bitmapLength(states)), null);
+    }
+
+    /**
+     * Creates a new DFA backed by the file without transitions and final states, an existing file is overwritten
+     * @param file the backing file
+     * @param alphabet sorted alphabet of the DFA
+     * @param states number of states
+     * @param initial the initial state
+     * @return the new DFA, it must be closed
+     * @throws IOException if the file cannot be created
+     */
+    public static OffHeapDFA create(Path file, List<String> alphabet, int states, int initial) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = header(alphabet, states, initial);
+        channel.write(header, 0);
+        long offset = align(header.capacity());
+        long transitionsLength = (long) states * alphabet.size();
+        OffHeapIntArray transitions = OffHeapIntArray.map(channel, offset, transitionsLength, FileChannel.MapMode.READ_WRITE);
+        transitions.fill(-1);
+        OffHeapIntArray finals = OffHeapIntArray.map(channel, offset + transitionsLength * Integer.BYTES,
+                bitmapLength(states), FileChannel.MapMode.READ_WRITE);
+        return new OffHeapDFA(List.copyOf(alphabet), states, initial, transitions, finals, channel);
+    }
+
+    /**
+     * Opens the DFA stored in the file
+     * @param file the backing file created by create
+     * @param writable true if the DFA may be modified
+     * @return the DFA, it must be closed
+     * @throws IOException if the file cannot be read or has a wrong format
+     */
+    public static OffHeapDFA open(Path file, boolean writable) throws IOException {
+        FileChannel channel = writable
+                ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer fixed = ByteBuffer.allocate(6 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(fixed, 0);
+            fixed.flip();
+            if (fixed.remaining() < 6 * Integer.BYTES || fixed.getInt() != MAGIC || fixed.getInt() != VERSION)
+                throw new IOException("Wrong format of off-heap automaton file");
+            int states = fixed.getInt();
+            int symbols = fixed.getInt();
+            int initial = fixed.getInt();
+            int alphabetBytes = fixed.getInt();
+            ByteBuffer encoded = ByteBuffer.allocate(alphabetBytes).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(encoded, 6 * Integer.BYTES);
+            encoded.flip();
+            List<String> alphabet = new ArrayList<>();
+            for (int i = 0; i < symbols; i++) {
+                byte[] bytes = new byte[encoded.getInt()];
+                encoded.get(bytes);
+                alphabet.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+            FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+            long offset = align(6 * Integer.BYTES + alphabetBytes);
+            long transitionsLength = (long) states * symbols;
+            OffHeapIntArray transitions = OffHeapIntArray.map(channel, offset, transitionsLength, mode);
+            OffHeapIntArray finals = OffHeapIntArray.map(channel, offset + transitionsLength * Integer.BYTES,
+                    bitmapLength(states), mode);
+            return new OffHeapDFA(List.copyOf(alphabet), states, initial, transitions, finals, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Copies the DFA into direct buffers, the states are numbered in their sorted order
+     * @param automaton DFA with exactly one initial state
+     * @return the off-heap DFA
+     */
+    public static OffHeapDFA from(Automaton automaton) {
+        if (automaton.getType() != Automaton.Type.DFA || automaton.getInitialStates().size() != 1)
+            throw new IllegalArgumentException("Only a DFA with one initial state can be stored off heap.");
+        Map<Integer, Integer> index = new HashMap<>();
+        for (Integer state : automaton.getStates())
+            index.put(state, index.size());
+        List<String> alphabet = new ArrayList<>(automaton.getAlphabet());
+        OffHeapDFA result = allocate(alphabet, index.size(), index.get(automaton.getInitialStates().first()));
+        for (Map.Entry<Integer, Set<Transition>> entry : automaton.getTransitionTable().entrySet())
+            for (Transition transition : entry.getValue())
+                result.setTransition(index.get(entry.getKey()), Collections.binarySearch(alphabet, transition.getSymbol()),
+                        index.get(transition.getTo_state()));
+        for (Integer state : automaton.getFinalStates())
+            result.setFinal(index.get(state), true);
+        return result;
+    }
+
+    /**
+     * Copies the DFA to the heap
+     * @return the DFA with the same states, alphabet and transitions
+     */
+    public DFA toDFA() {
+        DFA result = new DFA();
+        result.getAlphabet().addAll(alphabet);
+        result.getInitialStates().add(initial);
+        for (int state = 0; state < states; state++) {
+            result.getStates().add(state);
+            if (isFinal(state))
+                result.getFinalStates().add(state);
+            for (int symbol = 0; symbol < alphabet.size(); symbol++) {
+                int target = getTransition(state, symbol);
+                if (target >= 0)
+                    result.getTransitionTable().computeIfAbsent(state, k -> new HashSet<>())
+                            .add(Transition.of(alphabet.get(symbol), target));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return sorted alphabet of the DFA
+     */
+    public List<String> getAlphabet() {
+        return alphabet;
+    }
+
+    /**
+     * @return number of states
+     */
+    public int getStates() {
+        return states;
+    }
+
+    /**
+     * @return the initial state
+     */
+    public int getInitialState() {
+        return initial;
+    }
+
+    /**
+     * @param symbol the symbol
+     * @return index of the symbol in the alphabet, or a negative number if it is not in the alphabet
+     */
+    public int symbolIndex(String symbol) {
+        return Collections.binarySearch(alphabet, symbol);
+    }
+
+    /**
+     * @param state the source state
+     * @param symbol index of the symbol
+     * @return the target state, or -1 if there is no transition
+     */
+    public int getTransition(int state, int symbol) {
+        return transitions.get((long) state * alphabet.size() + symbol);
+    }
+
+    /**
+     * @param state the source state
+     * @param symbol index of the symbol
+     * @param target the target state, or -1 to remove the transition
+     */
+    public void setTransition(int state, int symbol, int target) {
+        transitions.set((long) state * alphabet.size() + symbol, target);
+    }
+
+    /**
+     * @param state the state
+     * @return true if the state is final
+     */
+    public boolean isFinal(int state) {
+        return (finals.get(state >>> 5) & (1 << (state & 31))) != 0;
+    }
+
+    /**
+     * @param state the state
+     * @param isFinal true if the state should be final
+     */
+    public void setFinal(int state, boolean isFinal) {
+        int word = finals.get(state >>> 5);
+        finals.set(state >>> 5, isFinal ? word | (1 << (state & 31)) : word & ~(1 << (state & 31)));
+    }
+
+    /**
+     * Checks whether the DFA accepts the word
+     * @param word indexes of the symbols of the word
+     * @return true if the word is accepted
+     */
+    public boolean accepts(int[] word) {
+        int state = initial;
+        for (int symbol : word) {
+            state = getTransition(state, symbol);
+            if (state < 0)
+                return false;
+        }
+        return isFinal(state);
+    }
+
+    /**
+     * Checks whether the DFA accepts the word
+     * @param word symbols of the word
+     * @return true if the word is accepted, false also if a symbol is not in the alphabet
+     */
+    public boolean accepts(List<String> word) {
+        int state = initial;
+        for (String symbol : word) {
+            int index = symbolIndex(symbol);
+            if (index < 0)
+                return false;
+            state = getTransition(state, index);
+            if (state < 0)
+                return false;
+        }
+        return isFinal(state);
+    }
+
+    /**
+     * Writes the changes of a file-backed DFA to the file
+     */
+    public void force() {
+        transitions.force();
+        finals.force();
+    }
+
+    /**
+     * Closes the backing file, the DFA must not be used afterwards
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            force();
+            channel.close();
+        }
+    }
+
+    /**
+     * Encodes the header of the file
+     */
+    private static ByteBuffer header(List<String> alphabet, int states, int initial) {
+        List<byte[]> encoded = new ArrayList<>();
+        int alphabetBytes = 0;
+        for (String symbol : alphabet) {
+            byte[] bytes = symbol.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            alphabetBytes += Integer.BYTES + bytes.length;
+        }
+        ByteBuffer header = ByteBuffer.allocate(6 * Integer.BYTES + alphabetBytes).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(states).putInt(alphabet.size()).putInt(initial).putInt(alphabetBytes);
+        for (byte[] bytes : encoded)
+            header.putInt(bytes.length).put(bytes);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * @return the position rounded up to a multiple of 8
+     */
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    /**
+     * @return number of ints of the bitmap for the given number of states
+     */
+    private static long bitmapLength(int states) {
+        return (states + 31L) >>> 5;
+    }
+}
@@ -0,0 +1,113 @@
+package cz.cuni.mff.golyshet.automaton;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Array of ints stored outside the Java heap, in direct or memory-mapped byte buffers.
+ * A single buffer holds at most 2 GB, so the array is split into chunks and can be longer than Integer.MAX_VALUE.
+ * The garbage collector does not scan the content, so large arrays do not make GC pauses longer.
+ * All automata storages must be in the package cz.cuni.mff.golyshet.automaton
+ */
+public final class OffHeapIntArray {
+    // Every chunk holds 2^26 ints (256 MB)
+    private static final int CHUNK_SHIFT = 26;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final IntBuffer[] chunks;
+    private final ByteBuffer[] buffers;
+    private final long length;
+
+    private OffHeapIntArray(ByteBuffer[] buffers, long length) {
+        this.buffers = buffers;
+        this.chunks = new IntBuffer[buffers.length];
+        for (int i = 0; i < buffers.length; i++)
+            chunks[i] = buffers[i].order(ByteOrder.nativeOrder()).asIntBuffer();
+        this.length = length;
+    }
+
+    /**
+     * Allocates a new array in direct buffers, filled with zeros
+     * @param length number of ints
+     * @return the new array
+     */
+    public static OffHeapIntArray allocate(long length) {
+        ByteBuffer[] buffers = new ByteBuffer[chunkCount(length)];
+        for (int i = 0; i < buffers.length; i++)
+            buffers[i] = ByteBuffer.allocateDirect(chunkLength(length, i) * Integer.BYTES);
+        return new OffHeapIntArray(buffers, length);
+    }
+
+    /**
+     * Maps a region of the file as an array, the file is extended if it is too short
+     * @param channel of the file
+     * @param offset position of the first int in the file in bytes
+     * @param length number of ints
+     * @param mode READ_ONLY or READ_WRITE
+     * @return the array backed by the file
+     * @throws IOException if the file cannot be mapped
+     */
+    public static OffHeapIntArray map(FileChannel channel, long offset, long length, FileChannel.MapMode mode) throws IOException {
+        ByteBuffer[] buffers = new ByteBuffer[chunkCount(length)];
+        for (int i = 0; i < buffers.length; i++) {
+            long position = offset + ((long) i << CHUNK_SHIFT) * Integer.BYTES;
+            buffers[i] = channel.map(mode, position, (long) chunkLength(length, i) * Integer.BYTES);
+        }
+        return new OffHeapIntArray(buffers, length);
+    }
+
+    /**
+     * @return number of ints in the array
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * @param index of the int
+     * @return the int at the index
+     */
+    public int get(long index) {
+        return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+    }
+
+    /**
+     * @param index of the int
+     * @param value new value of the int
+     */
+    public void set(long index, int value) {
+        chunks[(int) (index >>> CHUNK_SHIFT)].put((int) (index & CHUNK_MASK), value);
+    }
+
+    /**
+     * Sets all the ints of the array to the value
+     * @param value new value of the ints
+     */
+    public void fill(int value) {
+        for (IntBuffer chunk : chunks)
+            for (int i = 0; i < chunk.capacity(); i++)
+                chunk.put(i, value);
+    }
+
+    /**
+     * Writes the changes of a memory-mapped array to the file, does nothing for a direct array
+     */
+    public void force() {
+        for (ByteBuffer buffer : buffers)
+            if (buffer instanceof MappedByteBuffer mapped)
+                mapped.force();
+    }
+
+    private static int chunkCount(long length) {
+        return (int) ((length + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+    }
+
+    private static int chunkLength(long length, int chunk) {
+        return (int) Math.min(CHUNK_SIZE, length - ((long) chunk << CHUNK_SHIFT));
+    }
+}
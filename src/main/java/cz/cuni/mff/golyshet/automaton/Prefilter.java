@@ -0,0 +1,368 @@
+package cz.cuni.mff.golyshet.automaton;
+
+import java.util.*;
+
+/**
+ * Analysis of a DFA which finds what every accepted word must contain, so a scanner can skip the text
+ * where no accepted word can start.
+ * A transition is mandatory if every path from the initial state to a final state uses it; these are the transitions
+ * dominating a virtual exit state (reached from all final states) in the graph where every transition is a node
+ * between its source and its target. Mandatory transitions following each other through a state with only this
+ * one transition are joined into a literal, so every accepted word contains every literal.
+ * A literal is extended to the left while all transitions into the states where it may start have the same symbol,
+ * and to the right while all transitions from the states where it may end have the same symbol, so e.g. the literal
+ * of [a-z]?error[0-9]+ is "error" although its first symbols are read by different transitions of the DFA.
+ * For every literal also the range of its offsets in the accepted words is computed, it is bounded if no path
+ * from the initial state to the literal goes through a cycle.
+ * All automata must be in the package cz.cuni.mff.golyshet.automaton
+ */
+public final class Prefilter {
+    private final SortedSet<String> firstSymbols = new TreeSet<>();
+    private final List<String> literals = new ArrayList<>();
+    // Offsets of the literals in the accepted words, maxOffset is -1 if the offset is not bounded
+    private final List<Integer> minOffsets = new ArrayList<>();
+    private final List<Integer> maxOffsets = new ArrayList<>();
+
+    /**
+     * Analyses the DFA
+     * @param automaton DFA with exactly one initial state whose symbols are single characters, e.g. minimal
+     * @return the prefilter of the DFA
+     */
+    public static Prefilter of(Automaton automaton) {
+        return TextScanner.of(automaton).getPrefilter();
+    }
+
+    /**
+     * @param table target of state s by symbol a at s*k+a, -1 if there is no transition or the target is useless
+     * @param accepting final states
+     * @param alphabet sorted symbols, single characters
+     */
+    Prefilter(int[] table, boolean[] accepting, String[] alphabet) {
+        int n = accepting.length;
+        int k = alphabet.length;
+        for (int symbol = 0; symbol < k; symbol++)
+            if (table[symbol] >= 0)
+                firstSymbols.add(alphabet[symbol]);
+
+        // Nodes: states 0 to n-1, transitions n to n+m-1 grouped by their sources, the exit n+m
+        int[] start = new int[n + 1];
+        for (int state = 0; state < n; state++) {
+            start[state + 1] = start[state];
+            for (int symbol = 0; symbol < k; symbol++)
+                if (table[state * k + symbol] >= 0)
+                    start[state + 1]++;
+        }
+        int m = start[n];
+        int[] source = new int[m];
+        int[] symbols = new int[m];
+        int[] target = new int[m];
+        for (int state = 0, edge = 0; state < n; state++) {
+            for (int symbol = 0; symbol < k; symbol++) {
+                if (table[state * k + symbol] < 0)
+                    continue;
+                source[edge] = state;
+                symbols[edge] = symbol;
+                target[edge++] = table[state * k + symbol];
+            }
+        }
+        Graph graph = new Graph(n, start, target, accepting);
+        int[] idom = graph.dominators();
+        int exit = n + m;
+        if (idom[exit] < 0)
+            return;
+
+        // The mandatory transitions in the order of the words, joined through states with a single transition
+        List<Integer> mandatory = new ArrayList<>();
+        for (int node = idom[exit]; node != 0; node = idom[node])
+            if (node >= n)
+                mandatory.add(node - n);
+        Collections.reverse(mandatory);
+        StringBuilder literal = new StringBuilder();
+        int first = -1;
+        for (int i = 0; i < mandatory.size(); i++) {
+            int edge = mandatory.get(i);
+            if (first < 0)
+                first = edge;
+            literal.append(alphabet[symbols[edge]]);
+            int via = target[edge];
+            boolean joined = i + 1 < mandatory.size() && source[mandatory.get(i + 1)] == via && start[via + 1] - start[via] == 1;
+            if (!joined) {
+                int[] offsets = graph.distances(source[first]);
+                int prepended = extend(literal, source[first], via, start, source, symbols, target, accepting, alphabet);
+                literals.add(literal.toString());
+                minOffsets.add(offsets[0] - prepended);
+                maxOffsets.add(offsets[1] < 0 ? -1 : offsets[1] - prepended);
+                literal.setLength(0);
+                first = -1;
+            }
+        }
+    }
+
+    /**
+     * Extends the literal by the symbols which always precede and follow it
+     * @param literal the literal read from the state from to the state to
+     * @return number of the symbols added to the left
+     */
+    private static int extend(StringBuilder literal, int from, int to, int[] start, int[] source, int[] symbols, int[] target,
+                              boolean[] accepting, String[] alphabet) {
+        // Transitions into every state
+        List<List<Integer>> incoming = new ArrayList<>();
+        for (int state = 0; state < accepting.length; state++)
+            incoming.add(new ArrayList<>());
+        for (int edge = 0; edge < target.length; edge++)
+            incoming.get(target[edge]).add(edge);
+
+        // To the left while the initial state is not among the states and they are entered by one symbol
+        int prepended = 0;
+        Set<Integer> states = Set.of(from);
+        while (!states.contains(0)) {
+            Set<Integer> sources = new HashSet<>();
+            int symbol = -1;
+            for (int state : states) {
+                for (int edge : incoming.get(state)) {
+                    symbol = symbol == -1 || symbol == symbols[edge] ? symbols[edge] : -2;
+                    sources.add(source[edge]);
+                }
+            }
+            if (symbol < 0)
+                break;
+            literal.insert(0, alphabet[symbol]);
+            prepended++;
+            states = sources;
+        }
+        // To the right while no state is final and they are left by one symbol
+        states = Set.of(to);
+        while (states.stream().noneMatch(state -> accepting[state])) {
+            Set<Integer> targets = new HashSet<>();
+            int symbol = -1;
+            for (int state : states) {
+                for (int edge = start[state]; edge < start[state + 1] && symbol != -2; edge++) {
+                    symbol = symbol == -1 || symbol == symbols[edge] ? symbols[edge] : -2;
+                    targets.add(target[edge]);
+                }
+            }
+            if (symbol < 0)
+                break;
+            literal.append(alphabet[symbol]);
+            states = targets;
+        }
+        return prepended;
+    }
+
+    /**
+     * @return symbols which can start an accepted word
+     */
+    public SortedSet<String> getFirstSymbols() {
+        return Collections.unmodifiableSortedSet(firstSymbols);
+    }
+
+    /**
+     * @return literals contained in every accepted word, in the order in which they occur in the words
+     */
+    public List<String> getLiterals() {
+        return Collections.unmodifiableList(literals);
+    }
+
+    /**
+     * @param literal index of the literal
+     * @return minimal number of symbols of an accepted word before the literal
+     */
+    public int getMinOffset(int literal) {
+        return minOffsets.get(literal);
+    }
+
+    /**
+     * @param literal index of the literal
+     * @return maximal number of symbols of an accepted word before the literal, -1 if it is not bounded
+     */
+    public int getMaxOffset(int literal) {
+        return maxOffsets.get(literal);
+    }
+
+    /**
+     * Graph of the states, the transitions as nodes between their sources and targets and the exit
+     */
+    private static final class Graph {
+        private final int n;
+        private final int m;
+        private final int[] start;
+        private final int[] target;
+        private final boolean[] accepting;
+
+        Graph(int n, int[] start, int[] target, boolean[] accepting) {
+            this.n = n;
+            this.m = start[n];
+            this.start = start;
+            this.target = target;
+            this.accepting = accepting;
+        }
+
+        /**
+         * @return the i-th successor of the node, -1 if there are fewer successors
+         */
+        private int successor(int node, int i) {
+            if (node >= n)
+                return node < n + m && i == 0 ? target[node - n] : -1;
+            int edges = start[node + 1] - start[node];
+            if (i < edges)
+                return n + start[node] + i;
+            return i == edges && accepting[node] ? n + m : -1;
+        }
+
+        /**
+         * Computes the immediate dominators from the initial state by the iterative algorithm of Cooper, Harvey and Kennedy
+         * @return immediate dominator of every node, -1 for unreachable nodes, the initial state is its own dominator
+         */
+        int[] dominators() {
+            int size = n + m + 1;
+            // Reverse postorder by DFS from the initial state
+            int[] order = new int[size];
+            int[] position = new int[size];
+            Arrays.fill(position, -1);
+            int count = 0;
+            int[] stack = new int[size];
+            int[] next = new int[size];
+            boolean[] visited = new boolean[size];
+            int depth = 0;
+            stack[depth++] = 0;
+            visited[0] = true;
+            while (depth > 0) {
+                int node = stack[depth - 1];
+                int successor = successor(node, next[node]++);
+                if (successor < 0) {
+                    order[count++] = node;
+                    depth--;
+                } else if (!visited[successor]) {
+                    visited[successor] = true;
+                    stack[depth++] = successor;
+                }
+            }
+            for (int i = 0; i < count / 2; i++) {
+                int swap = order[i];
+                order[i] = order[count - 1 - i];
+                order[count - 1 - i] = swap;
+            }
+            for (int i = 0; i < count; i++)
+                position[order[i]] = i;
+
+            // Predecessors of the reached nodes
+            List<List<Integer>> predecessors = new ArrayList<>();
+            for (int node = 0; node < size; node++)
+                predecessors.add(new ArrayList<>());
+            for (int i = 0; i < count; i++)
+                for (int j = 0, successor; (successor = successor(order[i], j)) >= 0; j++)
+                    predecessors.get(successor).add(order[i]);
+
+            int[] idom = new int[size];
+            Arrays.fill(idom, -1);
+            idom[0] = 0;
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int i = 1; i < count; i++) {
+                    int node = order[i];
+                    int dominator = -1;
+                    for (int predecessor : predecessors.get(node)) {
+                        if (idom[predecessor] < 0)
+                            continue;
+                        dominator = dominator < 0 ? predecessor : intersect(predecessor, dominator, idom, position);
+                    }
+                    if (idom[node] != dominator) {
+                        idom[node] = dominator;
+                        changed = true;
+                    }
+                }
+            }
+            return idom;
+        }
+
+        private static int intersect(int a, int b, int[] idom, int[] position) {
+            while (a != b) {
+                while (position[a] > position[b])
+                    a = idom[a];
+                while (position[b] > position[a])
+                    b = idom[b];
+            }
+            return a;
+        }
+
+        /**
+         * @param state state reached from the initial state
+         * @return the shortest and the longest length of the paths from the initial state to the state,
+         * the longest is -1 if a path goes through a cycle
+         */
+        int[] distances(int state) {
+            // States on the paths to the state: reached from the initial state and reaching the state
+            boolean[] reaching = new boolean[n];
+            Deque<Integer> queue = new ArrayDeque<>(List.of(state));
+            reaching[state] = true;
+            List<List<Integer>> predecessors = new ArrayList<>();
+            for (int i = 0; i < n; i++)
+                predecessors.add(new ArrayList<>());
+            for (int source = 0; source < n; source++)
+                for (int edge = start[source]; edge < start[source + 1]; edge++)
+                    predecessors.get(target[edge]).add(source);
+            while (!queue.isEmpty())
+                for (int predecessor : predecessors.get(queue.poll()))
+                    if (!reaching[predecessor]) {
+                        reaching[predecessor] = true;
+                        queue.add(predecessor);
+                    }
+
+            // Topological order of the states on the paths, it does not exist if they contain a cycle
+            int[] degree = new int[n];
+            for (int source = 0; source < n; source++)
+                if (reaching[source])
+                    for (int edge = start[source]; edge < start[source + 1]; edge++)
+                        if (reaching[target[edge]])
+                            degree[target[edge]]++;
+            int[] shortest = new int[n];
+            int[] longest = new int[n];
+            Arrays.fill(shortest, Integer.MAX_VALUE);
+            shortest[0] = 0;
+            boolean acyclic = degree[0] == 0;
+            if (acyclic)
+                queue.add(0);
+            int sorted = 0;
+            while (!queue.isEmpty()) {
+                int source = queue.poll();
+                sorted++;
+                for (int edge = start[source]; edge < start[source + 1]; edge++) {
+                    int next = target[edge];
+                    if (!reaching[next])
+                        continue;
+                    shortest[next] = Math.min(shortest[next], shortest[source] + 1);
+                    longest[next] = Math.max(longest[next], longest[source] + 1);
+                    if (--degree[next] == 0)
+                        queue.add(next);
+                }
+            }
+            int states = 0;
+            for (boolean on : reaching)
+                if (on)
+                    states++;
+            if (!acyclic || sorted < states)
+                return new int[]{shortestDistance(state), -1};
+            return new int[]{shortest[state], longest[state]};
+        }
+
+        /**
+         * @return the length of the shortest path from the initial state to the state by BFS
+         */
+        private int shortestDistance(int state) {
+            int[] distance = new int[n];
+            Arrays.fill(distance, -1);
+            distance[0] = 0;
+            Deque<Integer> queue = new ArrayDeque<>(List.of(0));
+            while (!queue.isEmpty()) {
+                int source = queue.poll();
+                for (int edge = start[source]; edge < start[source + 1]; edge++)
+                    if (distance[target[edge]] < 0) {
+                        distance[target[edge]] = distance[source] + 1;
+                        queue.add(target[edge]);
+                    }
+            }
+            return distance[state];
+        }
+    }
+}
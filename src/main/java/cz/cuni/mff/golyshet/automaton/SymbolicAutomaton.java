@@ -0,0 +1,209 @@
+package cz.cuni.mff.golyshet.automaton;
+
+import java.util.*;
+
+/**
+ * A finite automaton over Unicode code points whose transitions are labeled by sets of code points.
+ * Instead of one transition per symbol, every state has at most one transition to each target state,
+ * guarded by a CharSet of ranges, so an automaton over a large alphabet has only a handful of transitions per state.
+ * In a DFA the guards of the transitions of a state are disjoint and there are no epsilon transitions.
+ * The alphabet contains the code points of all guards and the symbols of the converted automaton,
+ * so a symbol without transitions is kept too.
+ * All automata must be in the package cz.cuni.mff.golyshet.automaton
+ */
+public class SymbolicAutomaton {
+
+    private final Automaton.Type type;
+    private final SortedSet<Integer> states; // The set of states
+    private final SortedSet<Integer> final_states; // The set of final states
+    private final SortedSet<Integer> initial_states; // The set of initial states
+    private final Map<Integer, List<SymbolicTransition>> transition_table; // The transitions of every state
+    private CharSet alphabet; // The code points of the alphabet
+
+    /**
+     * Constructs an empty symbolic automaton.
+     * @param type DFA or NFA
+     */
+    public SymbolicAutomaton(Automaton.Type type) {
+        this.type = type;
+        states = new TreeSet<>();
+        final_states = new TreeSet<>();
+        initial_states = new TreeSet<>();
+        transition_table = new HashMap<>();
+        alphabet = CharSet.EMPTY;
+    }
+
+    /**
+     * Converts an automaton whose symbols are single code points, "*" is an epsilon transition
+     * @param automaton the automaton
+     * @return symbolic automaton with the transitions of each pair of states joined into one guard
+     * @throws IllegalArgumentException if a symbol is not a single code point
+     */
+    public static SymbolicAutomaton of(Automaton automaton) {
+        SymbolicAutomaton result = new SymbolicAutomaton(automaton.getType());
+        result.states.addAll(automaton.getStates());
+        result.final_states.addAll(automaton.getFinalStates());
+        result.initial_states.addAll(automaton.getInitialStates());
+        for (String symbol : automaton.getAlphabet()) {
+            if (symbol.equals("*"))
+                continue;
+            if (symbol.codePointCount(0, symbol.length()) != 1)
+                throw new IllegalArgumentException("Symbol " + symbol + " is not a single character.");
+            result.alphabet = result.alphabet.union(CharSet.of(symbol.codePointAt(0)));
+        }
+        for (Map.Entry<Integer, Set<Transition>> entry : automaton.getTransitionTable().entrySet()) {
+            for (Transition transition : entry.getValue()) {
+                String symbol = transition.getSymbol();
+                if (symbol.equals("*"))
+                    result.addEpsilon(entry.getKey(), transition.getTo_state());
+                else if (symbol.codePointCount(0, symbol.length()) == 1)
+                    result.addTransition(entry.getKey(), CharSet.of(symbol.codePointAt(0)), transition.getTo_state());
+                else
+                    throw new IllegalArgumentException("Symbol " + symbol + " is not a single character.");
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Expands the guards to one transition per code point, so it is only useful for small guards
+     * @return DFA or NFA with the code points of the alphabet as symbols and "*" for epsilon transitions
+     */
+    public Automaton toAutomaton() {
+        Automaton result = type == Automaton.Type.DFA ? new DFA() : new NFA();
+        for (int i = 0; i < alphabet.rangeCount(); i++)
+            for (int codePoint = alphabet.from(i); codePoint <= alphabet.to(i); codePoint++)
+                result.getAlphabet().add(Character.toString(codePoint));
+        result.getStates().addAll(states);
+        result.getFinalStates().addAll(final_states);
+        result.getInitialStates().addAll(initial_states);
+        for (Map.Entry<Integer, List<SymbolicTransition>> entry : transition_table.entrySet()) {
+            Set<Transition> transitions = result.getTransitionTable().computeIfAbsent(entry.getKey(), k -> new HashSet<>());
+            for (SymbolicTransition transition : entry.getValue()) {
+                if (transition.isEpsilon()) {
+                    result.getAlphabet().add("*");
+                    transitions.add(Transition.of("*", transition.getTo_state()));
+                    continue;
+                }
+                CharSet guard = transition.getGuard();
+                for (int i = 0; i < guard.rangeCount(); i++)
+                    for (int codePoint = guard.from(i); codePoint <= guard.to(i); codePoint++) {
+                        transitions.add(Transition.of(Character.toString(codePoint), transition.getTo_state()));
+                    }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds a transition, the guard is joined with the guard of an existing transition to the same state
+     * and its code points are added to the alphabet
+     * @param from the source state
+     * @param guard the code points of the transition
+     * @param to the target state
+     */
+    public void addTransition(int from, CharSet guard, int to) {
+        if (guard.isEmpty())
+            return;
+        alphabet = alphabet.union(guard);
+        List<SymbolicTransition> transitions = transition_table.computeIfAbsent(from, k -> new ArrayList<>());
+        for (SymbolicTransition transition : transitions) {
+            if (!transition.isEpsilon() && transition.getTo_state() == to) {
+                transition.guard = transition.guard.union(guard);
+                return;
+            }
+        }
+        transitions.add(new SymbolicTransition(guard, to));
+    }
+
+    /**
+     * Adds an epsilon transition
+     * @param from the source state
+     * @param to the target state
+     */
+    public void addEpsilon(int from, int to) {
+        List<SymbolicTransition> transitions = transition_table.computeIfAbsent(from, k -> new ArrayList<>());
+        for (SymbolicTransition transition : transitions)
+            if (transition.isEpsilon() && transition.getTo_state() == to)
+                return;
+        transitions.add(new SymbolicTransition(null, to));
+    }
+
+    /**
+     * Runs the automaton on the word
+     * @param word the word, every code point is one symbol
+     * @return true if the word is accepted
+     */
+    public boolean accepts(CharSequence word) {
+        Set<Integer> current = closure(initial_states);
+        for (int i = 0; i < word.length() && !current.isEmpty(); ) {
+            int codePoint = Character.codePointAt(word, i);
+            i += Character.charCount(codePoint);
+            Set<Integer> next = new HashSet<>();
+            for (Integer state : current)
+                for (SymbolicTransition transition : transition_table.getOrDefault(state, Collections.emptyList()))
+                    if (!transition.isEpsilon() && transition.getGuard().contains(codePoint))
+                        next.add(transition.getTo_state());
+            current = closure(next);
+        }
+        return current.stream().anyMatch(final_states::contains);
+    }
+
+    /**
+     * @param states set of states
+     * @return the states reachable from the given states by epsilon transitions, including them
+     */
+    public Set<Integer> closure(Set<Integer> states) {
+        Set<Integer> result = new HashSet<>(states);
+        Deque<Integer> stack = new ArrayDeque<>(states);
+        while (!stack.isEmpty()) {
+            int state = stack.pop();
+            for (SymbolicTransition transition : transition_table.getOrDefault(state, Collections.emptyList()))
+                if (transition.isEpsilon() && result.add(transition.getTo_state()))
+                    stack.push(transition.getTo_state());
+        }
+        return result;
+    }
+
+    /**
+     * @return number of all transitions
+     */
+    public int transitionCount() {
+        int count = 0;
+        for (List<SymbolicTransition> transitions : transition_table.values())
+            count += transitions.size();
+        return count;
+    }
+
+    /**
+     * Adds code points to the alphabet, e.g. the alphabet of the automaton a result is derived from
+     * @param symbols the code points
+     */
+    public void addToAlphabet(CharSet symbols) {
+        alphabet = alphabet.union(symbols);
+    }
+
+    public CharSet getAlphabet() {
+        return alphabet;
+    }
+
+    public Automaton.Type getType() {
+        return type;
+    }
+
+    public SortedSet<Integer> getStates() {
+        return states;
+    }
+
+    public SortedSet<Integer> getFinalStates() {
+        return final_states;
+    }
+
+    public SortedSet<Integer> getInitialStates() {
+        return initial_states;
+    }
+
+    public Map<Integer, List<SymbolicTransition>> getTransitionTable() {
+        return transition_table;
+    }
+}
@@ -0,0 +1,42 @@
+package cz.cuni.mff.golyshet.automaton;
+
+/**
+ * Represents a transition of a symbolic automaton.
+ * The transition is taken on every code point of its guard, an epsilon transition has no guard.
+ * All transitions must be in the package cz.cuni.mff.golyshet.automaton
+ */
+public class SymbolicTransition {
+    CharSet guard;
+    int to_state;
+
+    /**
+     * Creates a new SymbolicTransition object with the given guard and destination state.
+     * @param guard the code points on which the transition is taken, null for an epsilon transition
+     * @param to_state the state that the transition leads to
+     */
+    public SymbolicTransition(CharSet guard, int to_state) {
+        this.guard = guard;
+        this.to_state = to_state;
+    }
+
+    /**
+     * @return the code points on which the transition is taken, null for an epsilon transition
+     */
+    public CharSet getGuard() {
+        return guard;
+    }
+
+    /**
+     * @return true if the transition is an epsilon transition
+     */
+    public boolean isEpsilon() {
+        return guard == null;
+    }
+
+    /**
+     * @return the state that this transition leads to
+     */
+    public int getTo_state() {
+        return to_state;
+    }
+}
@@ -0,0 +1,224 @@
+package cz.cuni.mff.golyshet.automaton;
+
+import java.util.*;
+
+/**
+ * Scanner of text for the factors accepted by a DFA whose symbols are single characters.
+ * A match is the longest accepted factor starting at the leftmost position where one starts.
+ * The DFA is run only at the candidate positions given by its Prefilter: if every accepted word contains a literal
+ * at a bounded offset, the scanner jumps to the occurrences of the literal by String.indexOf (vectorized by the JIT)
+ * and tries only the starts in the range of the offset. Otherwise it skips to the characters which can start
+ * an accepted word, and no start after the last occurrence of a literal is tried.
+ * All automata must be in the package cz.cuni.mff.golyshet.automaton
+ */
+public final class TextScanner {
+    // Target of state s by symbol a at s*k+a, -1 if there is no transition or the target is useless, the initial state is 0
+    private final int[] table;
+    private final boolean[] accepting;
+    private final int k;
+    // Symbol of every character from low to low + columns.length - 1, -1 for characters outside the alphabet
+    private final char low;
+    private final int[] columns;
+    private final Prefilter prefilter;
+    private final boolean filter;
+    // The only character which can start a match, -1 if there are more
+    private final int firstCharacter;
+    // Literal used to find the candidates, null if there is none, and the range of its offset
+    private final String literal;
+    private final int minOffset;
+    private final int maxOffset;
+
+    private TextScanner(int[] table, boolean[] accepting, String[] alphabet, boolean filter) {
+        this.table = table;
+        this.accepting = accepting;
+        this.k = alphabet.length;
+        low = k == 0 ? 0 : alphabet[0].charAt(0);
+        columns = new int[k == 0 ? 0 : alphabet[k - 1].charAt(0) - low + 1];
+        Arrays.fill(columns, -1);
+        for (int symbol = 0; symbol < k; symbol++)
+            columns[alphabet[symbol].charAt(0) - low] = symbol;
+        prefilter = new Prefilter(table, accepting, alphabet);
+        this.filter = filter;
+        firstCharacter = prefilter.getFirstSymbols().size() == 1 ? prefilter.getFirstSymbols().first().charAt(0) : -1;
+
+        // Prefer the longest literal with a bounded offset, then the longest literal
+        int best = -1;
+        for (int i = 0; filter && i < prefilter.getLiterals().size(); i++) {
+            if (best < 0) {
+                best = i;
+                continue;
+            }
+            boolean bounded = prefilter.getMaxOffset(i) >= 0;
+            if (bounded != prefilter.getMaxOffset(best) >= 0 ? bounded
+                    : prefilter.getLiterals().get(i).length() > prefilter.getLiterals().get(best).length())
+                best = i;
+        }
+        literal = best < 0 ? null : prefilter.getLiterals().get(best);
+        minOffset = best < 0 ? 0 : prefilter.getMinOffset(best);
+        maxOffset = best < 0 ? -1 : prefilter.getMaxOffset(best);
+    }
+
+    /**
+     * Creates the scanner with the prefilter
+     * @param automaton DFA with exactly one initial state whose symbols are single characters, e.g. minimal
+     * @return the scanner
+     */
+    public static TextScanner of(Automaton automaton) {
+        return of(automaton, true);
+    }
+
+    /**
+     * @param automaton DFA with exactly one initial state whose symbols are single characters, e.g. minimal
+     * @param filter false to run the DFA at every position, e.g. to compare the speed
+     * @return the scanner
+     */
+    public static TextScanner of(Automaton automaton, boolean filter) {
+        if (automaton.getType() != Automaton.Type.DFA || automaton.getInitialStates().size() != 1)
+            throw new IllegalArgumentException("Only a DFA with one initial state can scan text.");
+        String[] alphabet = automaton.getAlphabet().toArray(new String[0]);
+        for (String symbol : alphabet)
+            if (symbol.length() != 1)
+                throw new IllegalArgumentException("Only a DFA whose symbols are single characters can scan text.");
+        int k = alphabet.length;
+
+        // Number the states by BFS, so the initial state is 0
+        Map<Integer, Integer> index = new HashMap<>();
+        List<Integer> order = new ArrayList<>();
+        index.put(automaton.getInitialStates().first(), 0);
+        order.add(automaton.getInitialStates().first());
+        for (int head = 0; head < order.size(); head++)
+            for (Transition transition : automaton.getTransitionTable().getOrDefault(order.get(head), Collections.emptySet()))
+                if (!index.containsKey(transition.getTo_state())) {
+                    index.put(transition.getTo_state(), order.size());
+                    order.add(transition.getTo_state());
+                }
+        int n = order.size();
+        int[] table = new int[n * k];
+        Arrays.fill(table, -1);
+        boolean[] accepting = new boolean[n];
+        for (int state = 0; state < n; state++) {
+            for (Transition transition : automaton.getTransitionTable().getOrDefault(order.get(state), Collections.emptySet()))
+                table[state * k + Arrays.binarySearch(alphabet, transition.getSymbol())] = index.get(transition.getTo_state());
+            accepting[state] = automaton.getFinalStates().contains(order.get(state));
+        }
+
+        // Remove the transitions to states from which no final state is reachable, the scan stops there
+        boolean[] useful = accepting.clone();
+        for (boolean changed = true; changed; ) {
+            changed = false;
+            for (int state = 0; state < n; state++)
+                for (int symbol = 0; symbol < k && !useful[state]; symbol++)
+                    if (table[state * k + symbol] >= 0 && useful[table[state * k + symbol]])
+                        useful[state] = changed = true;
+        }
+        for (int i = 0; i < table.length; i++)
+            if (table[i] >= 0 && !useful[table[i]])
+                table[i] = -1;
+        return new TextScanner(table, accepting, alphabet, filter);
+    }
+
+    /**
+     * @return the analysis of the DFA
+     */
+    public Prefilter getPrefilter() {
+        return prefilter;
+    }
+
+    /**
+     * Finds the leftmost longest match
+     * @param text the text
+     * @param from the first position where the match can start
+     * @return the start and the end (exclusive) of the match, or null if there is none
+     */
+    public int[] find(String text, int from) {
+        // The empty word matches everywhere
+        if (accepting[0])
+            return new int[]{from, end(text, from)};
+        if (!filter) {
+            for (int start = from; start < text.length(); start++) {
+                int end = end(text, start);
+                if (end >= 0)
+                    return new int[]{start, end};
+            }
+            return null;
+        }
+        if (literal != null && maxOffset >= 0) {
+            // Every match has an occurrence of the literal minOffset to maxOffset characters after its start
+            int next = from;
+            for (int at = text.indexOf(literal, from + minOffset); at >= 0; at = text.indexOf(literal, at + 1)) {
+                for (int start = Math.max(next, at - maxOffset); start <= at - minOffset; start++) {
+                    int end = end(text, start);
+                    if (end >= 0)
+                        return new int[]{start, end};
+                }
+                next = Math.max(next, at - minOffset + 1);
+            }
+            return null;
+        }
+        // Every match starts by a first symbol and contains the literal after its start
+        int last = literal == null ? text.length() - 1 : text.lastIndexOf(literal);
+        for (int start = first(text, from); start >= 0 && start <= last; start = first(text, start + 1)) {
+            int end = end(text, start);
+            if (end >= 0)
+                return new int[]{start, end};
+        }
+        return null;
+    }
+
+    /**
+     * Finds all non-overlapping leftmost longest matches
+     * @param text the text
+     * @return the start and the end (exclusive) of every match
+     */
+    public List<int[]> findAll(String text) {
+        List<int[]> matches = new ArrayList<>();
+        int from = 0;
+        while (from <= text.length()) {
+            int[] match = find(text, from);
+            if (match == null)
+                break;
+            matches.add(match);
+            from = match[1] > match[0] ? match[1] : match[0] + 1;
+        }
+        return matches;
+    }
+
+    /**
+     * @return the first position from the given one where a match can start, -1 if there is none
+     */
+    private int first(String text, int from) {
+        if (firstCharacter >= 0)
+            return text.indexOf(firstCharacter, from);
+        for (int i = from; i < text.length(); i++) {
+            int symbol = column(text.charAt(i));
+            if (symbol >= 0 && table[symbol] >= 0)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Runs the DFA from the start
+     * @return the end of the longest match starting at the start, -1 if there is none
+     */
+    private int end(String text, int start) {
+        int state = 0;
+        int end = accepting[0] ? start : -1;
+        for (int i = start; i < text.length(); i++) {
+            int symbol = column(text.charAt(i));
+            if (symbol < 0)
+                break;
+            state = table[state * k + symbol];
+            if (state < 0)
+                break;
+            if (accepting[state])
+                end = i + 1;
+        }
+        return end;
+    }
+
+    private int column(char c) {
+        int i = c - low;
+        return i >= 0 && i < columns.length ? columns[i] : -1;
+    }
+}
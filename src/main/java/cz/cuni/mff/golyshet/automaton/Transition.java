@@ -1,23 +1,70 @@
 package cz.cuni.mff.golyshet.automaton;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 /**
  * Represents a transition in a finite automaton.
  * Each transition is represented by a Transition object, which contains the symbol and the destination state.
+ * Transitions are values: two transitions with the same symbol and destination state are equal,
+ * so sets of transitions contain every edge once. The symbols are interned and the transitions to small
+ * destination states are shared, Transition.of returns the same object for the same symbol and state.
+ * The cache lives as long as the program (e.g. the server), so its total size is capped: at most MAX_SYMBOLS symbols
+ * and MAX_CHUNKS chunks are cached, other transitions are created anew and are only equal to the cached ones.
  * All transitions must be in the package cz.cuni.mff.golyshet.automaton
  */
 
-public class Transition {
-    String symbol;
-    int to_state;
+public final class Transition {
+    // Transitions to the states smaller than the limit are cached in chunks of CHUNK states
+    private static final int CACHE_LIMIT = 1 << 16;
+    private static final int CHUNK = 1 << 10;
+    // Caps of the whole cache, at most MAX_CHUNKS * CHUNK shared transitions
+    private static final int MAX_SYMBOLS = 1 << 12;
+    private static final int MAX_CHUNKS = 1 << 10;
+    private static final ConcurrentHashMap<String, AtomicReferenceArray<Transition[]>> cache = new ConcurrentHashMap<>();
+    private static final AtomicInteger chunks = new AtomicInteger();
+
+    private final String symbol;
+    private final int to_state;
+
+    private Transition(String symbol, int to_state) {
+        this.symbol = symbol;
+        this.to_state = to_state;
+    }
 
     /**
-     * Creates a new Transition object with the given symbol and destination state.
+     * Returns the transition with the given symbol and destination state, shared if the state is small
+     * and the cache is not full.
      * @param s the symbol on which the transition is taken
      * @param to_state the state that the transition leads to
+     * @return the transition
      */
-    public Transition(String s, int to_state) {
-        this.symbol = s;
-        this.to_state = to_state;
+    public static Transition of(String s, int to_state) {
+        if (to_state < 0 || to_state >= CACHE_LIMIT)
+            return new Transition(s.intern(), to_state);
+        AtomicReferenceArray<Transition[]> symbolChunks = cache.get(s);
+        if (symbolChunks == null) {
+            if (cache.size() >= MAX_SYMBOLS)
+                return new Transition(s.intern(), to_state);
+            symbolChunks = cache.computeIfAbsent(s.intern(), symbol -> new AtomicReferenceArray<>(CACHE_LIMIT / CHUNK));
+        }
+        Transition[] chunk = symbolChunks.get(to_state / CHUNK);
+        if (chunk == null) {
+            // Racing threads can exceed the cap by at most one chunk each
+            if (chunks.get() >= MAX_CHUNKS)
+                return new Transition(s.intern(), to_state);
+            if (symbolChunks.compareAndSet(to_state / CHUNK, null, new Transition[CHUNK]))
+                chunks.incrementAndGet();
+            chunk = symbolChunks.get(to_state / CHUNK);
+        }
+        // A race only creates an equal transition, which replaces the cached one
+        Transition transition = chunk[to_state % CHUNK];
+        if (transition == null) {
+            transition = new Transition(s.intern(), to_state);
+            chunk[to_state % CHUNK] = transition;
+        }
+        return transition;
     }
 
     /**
@@ -33,4 +80,22 @@ public class Transition {
     public int getTo_state() {
         return to_state;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Transition transition = (Transition) o;
+        return to_state == transition.to_state && symbol.equals(transition.symbol);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * symbol.hashCode() + to_state;
+    }
+
+    @Override
+    public String toString() {
+        return symbol + " -> " + to_state;
+    }
 }
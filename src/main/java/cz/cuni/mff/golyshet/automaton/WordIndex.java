@@ -0,0 +1,254 @@
+package cz.cuni.mff.golyshet.automaton;
+
+import java.util.*;
+
+/**
+ * Minimal perfect hash of the words accepted by an acyclic DFA.
+ * Every state is annotated by the number of accepted words starting in it,
+ * the accepted words are numbered from 0 in the order of the sorted alphabet (shorter prefix first).
+ * A word is mapped to its number by summing the counts of the transitions on smaller symbols along its path
+ * and back by choosing the transition whose count contains the number, both in O(|word|·k) without allocation.
+ * The transition table is a flat array of n*k ints, where -1 means no transition, and the counts are a long array,
+ * so the index is several times smaller than a map of the words.
+ * All automata must be in the package cz.cuni.mff.golyshet.automaton
+ */
+public final class WordIndex {
+    private final String[] alphabet;
+    private final int[] codePoints;
+    private final int[] codePointSymbols;
+    private final int[] transitions;
+    private final boolean[] finals;
+    private final long[] counts;
+    private final int initial;
+    private final int maxLength;
+
+    /**
+     * Builds the index of the DFA, the states are numbered in their sorted order
+     * @param automaton acyclic DFA with exactly one initial state
+     * @throws IllegalArgumentException if the automaton is not an acyclic DFA or accepts more than Long.MAX_VALUE words
+     */
+    public WordIndex(Automaton automaton) {
+        if (automaton.getType() != Automaton.Type.DFA || automaton.getInitialStates().size() != 1)
+            throw new IllegalArgumentException("Only a DFA with one initial state can be indexed.");
+        Map<Integer, Integer> index = new HashMap<>();
+        for (Integer state : automaton.getStates())
+            index.put(state, index.size());
+        alphabet = automaton.getAlphabet().toArray(new String[0]);
+        int k = alphabet.length;
+        int n = index.size();
+        if ((long) n * k > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The DFA is too large to be indexed.");
+
+        transitions = new int[n * k];
+        Arrays.fill(transitions, -1);
+        for (Map.Entry<Integer, Set<Transition>> entry : automaton.getTransitionTable().entrySet())
+            for (Transition transition : entry.getValue())
+                transitions[index.get(entry.getKey()) * k + Arrays.binarySearch(alphabet, transition.getSymbol())] =
+                        index.get(transition.getTo_state());
+        finals = new boolean[n];
+        for (Integer state : automaton.getFinalStates())
+            finals[index.get(state)] = true;
+        initial = index.get(automaton.getInitialStates().first());
+
+        // Symbols of one code point can be looked up in a character sequence
+        TreeMap<Integer, Integer> single = new TreeMap<>();
+        for (int i = 0; i < k; i++)
+            if (alphabet[i].codePointCount(0, alphabet[i].length()) == 1)
+                single.put(alphabet[i].codePointAt(0), i);
+        codePoints = single.keySet().stream().mapToInt(Integer::intValue).toArray();
+        codePointSymbols = single.values().stream().mapToInt(Integer::intValue).toArray();
+
+        counts = new long[n];
+        maxLength = count(n, k);
+    }
+
+    /**
+     * Counts the accepted words from every state reachable from the initial state by iterative post-order DFS
+     * @return length of the longest accepted word
+     */
+    private int count(int n, int k) {
+        // 0 - not visited, 1 - on the stack, 2 - counted
+        byte[] color = new byte[n];
+        int[] depth = new int[n];
+        int[] stack = new int[n];
+        int[] next = new int[n];
+        int top = 0;
+        stack[top++] = initial;
+        color[initial] = 1;
+        while (top > 0) {
+            int state = stack[top - 1];
+            if (next[state] < k) {
+                int target = transitions[state * k + next[state]++];
+                if (target < 0)
+                    continue;
+                if (color[target] == 1)
+                    throw new IllegalArgumentException("Only an acyclic DFA can be indexed.");
+                if (color[target] == 0) {
+                    color[target] = 1;
+                    stack[top++] = target;
+                }
+                continue;
+            }
+
+            // All successors are counted
+            long count = finals[state] ? 1 : 0;
+            for (int symbol = 0; symbol < k; symbol++) {
+                int target = transitions[state * k + symbol];
+                if (target < 0 || counts[target] == 0)
+                    continue;
+                try {
+                    count = Math.addExact(count, counts[target]);
+                } catch (ArithmeticException e) {
+                    throw new IllegalArgumentException("The DFA accepts too many words to be indexed.");
+                }
+                depth[state] = Math.max(depth[state], depth[target] + 1);
+            }
+            counts[state] = count;
+            color[state] = 2;
+            top--;
+        }
+        return depth[initial];
+    }
+
+    /**
+     * @return number of accepted words
+     */
+    public long size() {
+        return counts[initial];
+    }
+
+    /**
+     * @return length of the longest accepted word, the size of the buffer for wordAt
+     */
+    public int maxLength() {
+        return maxLength;
+    }
+
+    /**
+     * @param symbol index of the symbol
+     * @return the symbol
+     */
+    public String symbol(int symbol) {
+        return alphabet[symbol];
+    }
+
+    /**
+     * @param word the word as a list of symbols
+     * @return number of the word, or -1 if it is not accepted
+     */
+    public long indexOf(List<String> word) {
+        int k = alphabet.length;
+        int state = initial;
+        long result = 0;
+        for (int i = 0; i < word.size(); i++) {
+            int symbol = Arrays.binarySearch(alphabet, word.get(i));
+            if (symbol < 0)
+                return -1;
+            result += skipped(state, symbol, k);
+            state = transitions[state * k + symbol];
+            if (state < 0)
+                return -1;
+        }
+        return finals[state] ? result : -1;
+    }
+
+    /**
+     * @param word the word, every code point is one symbol
+     * @return number of the word, or -1 if it is not accepted
+     */
+    public long indexOf(CharSequence word) {
+        int k = alphabet.length;
+        int state = initial;
+        long result = 0;
+        for (int i = 0; i < word.length(); ) {
+            int codePoint = Character.codePointAt(word, i);
+            i += Character.charCount(codePoint);
+            int found = Arrays.binarySearch(codePoints, codePoint);
+            if (found < 0)
+                return -1;
+            int symbol = codePointSymbols[found];
+            result += skipped(state, symbol, k);
+            state = transitions[state * k + symbol];
+            if (state < 0)
+                return -1;
+        }
+        return finals[state] ? result : -1;
+    }
+
+    /**
+     * @return number of the words from the state which are smaller than the words continuing by the symbol
+     */
+    private long skipped(int state, int symbol, int k) {
+        long result = finals[state] ? 1 : 0;
+        for (int smaller = 0; smaller < symbol; smaller++) {
+            int target = transitions[state * k + smaller];
+            if (target >= 0)
+                result += counts[target];
+        }
+        return result;
+    }
+
+    /**
+     * Finds the word with the given number
+     * @param index number of the word
+     * @param word buffer for the indexes of the symbols of the word, at least maxLength long
+     * @return length of the word, or -1 if the number is out of range
+     */
+    public int wordAt(long index, int[] word) {
+        if (index < 0 || index >= counts[initial])
+            return -1;
+        int k = alphabet.length;
+        int state = initial;
+        int length = 0;
+        while (true) {
+            if (finals[state]) {
+                if (index == 0)
+                    return length;
+                index--;
+            }
+            // Choose the transition whose words contain the number
+            for (int symbol = 0; symbol < k; symbol++) {
+                int target = transitions[state * k + symbol];
+                if (target < 0)
+                    continue;
+                if (index < counts[target]) {
+                    word[length++] = symbol;
+                    state = target;
+                    break;
+                }
+                index -= counts[target];
+            }
+        }
+    }
+
+    /**
+     * Appends the word with the given number to the builder
+     * @param index number of the word
+     * @param builder to which the symbols of the word are appended
+     * @return false if the number is out of range
+     */
+    public boolean wordAt(long index, StringBuilder builder) {
+        if (index < 0 || index >= counts[initial])
+            return false;
+        int k = alphabet.length;
+        int state = initial;
+        while (true) {
+            if (finals[state]) {
+                if (index == 0)
+                    return true;
+                index--;
+            }
+            for (int symbol = 0; symbol < k; symbol++) {
+                int target = transitions[state * k + symbol];
+                if (target < 0)
+                    continue;
+                if (index < counts[target]) {
+                    builder.append(alphabet[symbol]);
+                    state = target;
+                    break;
+                }
+                index -= counts[target];
+            }
+        }
+    }
+}
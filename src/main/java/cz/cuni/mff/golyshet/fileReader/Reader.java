@@ -4,9 +4,12 @@ import cz.cuni.mff.golyshet.automaton.Automaton;
 import cz.cuni.mff.golyshet.automaton.DFA;
 import cz.cuni.mff.golyshet.automaton.NFA;
 import cz.cuni.mff.golyshet.automaton.Transition;
+import cz.cuni.mff.golyshet.stats.Phase;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 /**
@@ -17,93 +20,109 @@ public class Reader {
 
     /**
      * This method takes a path to a file as input and returns an Automaton object.
+     * It does not exit the program, so the error can be reported by the thread performing the operation.
      * @param path to the file
      * @return an Automaton object
+     * @throws UncheckedIOException if the file cannot be read
+     * @throws IllegalArgumentException if the file has a wrong format
      */
     public Automaton read(String path) {
-        try {
-            // Create a reader for the file
-            FileReader reader = new FileReader(path);
-            Automaton automaton = null;
-            BufferedReader br = new BufferedReader(reader);
-            // Read the first line of the file, which contains the type of automaton and the alphabet.
-            String str = br.readLine();
-            if (str == null || str.isEmpty()) {
-                System.out.println("File is empty");
-                System.exit(1);
-            }
-            // Get the type of automaton and its alphabet from the first line
-            String[] typeAndAlphabet = str.split("\\s+");
-            if (typeAndAlphabet.length < 2) {
-                System.out.println("Wrong format type and alphabet of file");
-                System.exit(1);
-            }
-            // Determine the type of automaton based on the first word in the first line of the file.
-            if (typeAndAlphabet[0].equals("DFA")) {
-                automaton = new DFA();
-            } else if (typeAndAlphabet[0].equals("NFA")) {
-                automaton = new NFA();
+        try (BufferedReader br = new BufferedReader(new FileReader(path))) {
+            Phase phase = Phase.begin("read", 0);
+            Automaton automaton = parse(br);
+            phase.end(automaton.getStates().size());
+            return automaton;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error while reading file " + path + " or file does not exist", e);
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Wrong format of file " + path, e);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(e.getMessage() + " in " + path, e);
+        }
+    }
+
+    /**
+     * This method reads an automaton in the format of the automaton file from the given reader.
+     * Reading stops at the end of the input or at a line containing only "END".
+     * @param br reader from which the automaton is read
+     * @return an Automaton object
+     * @throws IOException if the reader fails
+     * @throws IllegalArgumentException if the input has a wrong format
+     */
+    public Automaton parse(BufferedReader br) throws IOException {
+        Automaton automaton;
+        // Read the first line of the file, which contains the type of automaton and the alphabet.
+        String str = br.readLine();
+        if (str == null || str.isEmpty()) {
+            throw new IllegalArgumentException("File is empty");
+        }
+        // Get the type of automaton and its alphabet from the first line
+        String[] typeAndAlphabet = str.split("\\s+");
+        if (typeAndAlphabet.length < 2) {
+            throw new IllegalArgumentException("Wrong format type and alphabet of file");
+        }
+        // Determine the type of automaton based on the first word in the first line of the file.
+        if (typeAndAlphabet[0].equals("DFA")) {
+            automaton = new DFA();
+        } else if (typeAndAlphabet[0].equals("NFA")) {
+            automaton = new NFA();
+        } else {
+            throw new IllegalArgumentException("Wrong format of file");
+        }
+        // Add the alphabet to the automaton
+        List<String> alphabet = new ArrayList<>();
+        for (int i = 1; i < typeAndAlphabet.length; i++) {
+            automaton.getAlphabet().add(typeAndAlphabet[i]);
+            alphabet.add(typeAndAlphabet[i]);
+        }
+        if (alphabet.size() != automaton.getAlphabet().size()) {
+            throw new IllegalArgumentException("Duplicate symbol in alphabet");
+        }
+        // Read the rest of the file line by line
+        str = br.readLine();
+        while (str != null) {
+            str = str.trim();
+            if (str.equals("END"))
+                break;
+            int transitionBegin = 2;
+            String[] line = str.split("\\s+");
+            int state;
+            // Check if the line is a final state, an initial state, or none of them
+            if (Objects.equals(line[0], ">")) {
+                automaton.getInitialStates().add(Integer.parseInt(line[1]));
+                automaton.getStates().add(Integer.parseInt(line[1]));
+                state = Integer.parseInt(line[1]);
+            } else if (Objects.equals(line[0], "<")) {
+                automaton.getFinalStates().add(Integer.parseInt(line[1]));
+                automaton.getStates().add(Integer.parseInt(line[1]));
+                state = Integer.parseInt(line[1]);
+            } else if (Objects.equals(line[0], "<>") || Objects.equals(line[0], "><")) {
+                automaton.getFinalStates().add(Integer.parseInt(line[1]));
+                automaton.getInitialStates().add(Integer.parseInt(line[1]));
+                automaton.getStates().add(Integer.parseInt(line[1]));
+                state = Integer.parseInt(line[1]);
             } else {
-                System.out.println("Wrong format of file");
-                System.exit(1);
-            }
-            // Add the alphabet to the automaton
-            List<String> alphabet = new ArrayList<>();
-            for (int i = 1; i < typeAndAlphabet.length; i++) {
-                automaton.getAlphabet().add(typeAndAlphabet[i]);
-                alphabet.add(typeAndAlphabet[i]);
+                transitionBegin = 1;
+                state = Integer.parseInt(line[0]);
+                automaton.getStates().add(Integer.parseInt(line[0]));
             }
-            if (alphabet.size() != automaton.getAlphabet().size()) {
-                System.exit(1);
-            }
-            // Read the rest of the file line by line
-            str = br.readLine();
-            while (str != null) {
-                str = str.trim();
-                int transitionBegin = 2;
-                String[] line = str.split("\\s+");
-                int state;
-                // Check if the line is a final state, an initial state, or none of them
-                if (Objects.equals(line[0], ">")) {
-                    automaton.getInitialStates().add(Integer.parseInt(line[1]));
-                    automaton.getStates().add(Integer.parseInt(line[1]));
-                    state = Integer.parseInt(line[1]);
-                } else if (Objects.equals(line[0], "<")) {
-                    automaton.getFinalStates().add(Integer.parseInt(line[1]));
-                    automaton.getStates().add(Integer.parseInt(line[1]));
-                    state = Integer.parseInt(line[1]);
-                } else if (Objects.equals(line[0], "<>") || Objects.equals(line[0], "><")) {
-                    automaton.getFinalStates().add(Integer.parseInt(line[1]));
-                    automaton.getInitialStates().add(Integer.parseInt(line[1]));
-                    automaton.getStates().add(Integer.parseInt(line[1]));
-                    state = Integer.parseInt(line[1]);
-                } else {
-                    transitionBegin = 1;
-                    state = Integer.parseInt(line[0]);
-                    automaton.getStates().add(Integer.parseInt(line[0]));
-                }
 
-                // Parse the transitions for the current state
-                int currentSymbol = 0;
-                for (int i = transitionBegin; i < line.length; i++) {
-                    for (String cstate: line[i].split("\\|")) {
-                        if (Objects.equals(cstate, "-"))
-                            break;
-                        int to_state = Integer.parseInt(cstate);
-                        automaton.getTransitionTable().computeIfAbsent(state, k -> new HashSet<>())
-                                .add(new Transition(alphabet.get(currentSymbol), to_state));
-                        automaton.getStates().add(to_state);
-                    }
-                    currentSymbol++;
+            // Parse the transitions for the current state
+            int currentSymbol = 0;
+            for (int i = transitionBegin; i < line.length; i++) {
+                for (String cstate: line[i].split("\\|")) {
+                    if (Objects.equals(cstate, "-"))
+                        break;
+                    int to_state = Integer.parseInt(cstate);
+                    automaton.getTransitionTable().computeIfAbsent(state, k -> new HashSet<>())
+                            .add(Transition.of(alphabet.get(currentSymbol), to_state));
+                    automaton.getStates().add(to_state);
                 }
-                // Read the next line
-                str = br.readLine();
+                currentSymbol++;
             }
-            return automaton;
-        } catch (Exception e) {
-            System.out.println("Error while reading file or file does not exist");
-            System.exit(1);
+            // Read the next line
+            str = br.readLine();
         }
-        return null;
+        return automaton;
     }
 }
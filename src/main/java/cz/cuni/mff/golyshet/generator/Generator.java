@@ -0,0 +1,155 @@
+package cz.cuni.mff.golyshet.generator;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.automaton.DFA;
+import cz.cuni.mff.golyshet.automaton.NFA;
+import cz.cuni.mff.golyshet.automaton.Transition;
+
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * A class that generates synthetic automata for testing operations at scale.
+ * It generates random DFAs and NFAs and classic worst cases of the operations.
+ * Symbols of the alphabet are "a", "b", ..., "z" and then "s26", "s27", ..., epsilon is "*".
+ * All generated automata have the initial state 0 and states numbered from 0 to n-1.
+ * All generators must be in the package cz.cuni.mff.golyshet.generator
+ */
+public class Generator {
+    private final Random random;
+
+    /**
+     * Creates a new generator, the same seed always generates the same automata
+     * @param seed of the random generator
+     */
+    public Generator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Generates a random DFA
+     * @param states number of states
+     * @param symbols size of the alphabet
+     * @param density probability that a state has a transition on a symbol
+     * @param finalRatio probability that a state is final
+     * @return random DFA
+     */
+    public DFA randomDFA(int states, int symbols, double density, double finalRatio) {
+        DFA automaton = new DFA();
+        fillStates(automaton, states, symbols, finalRatio);
+        for (int state = 0; state < states; state++) {
+            for (int symbol = 0; symbol < symbols; symbol++) {
+                if (random.nextDouble() < density)
+                    addTransition(automaton, state, symbol(symbol), random.nextInt(states));
+            }
+        }
+        return automaton;
+    }
+
+    /**
+     * Generates a random NFA
+     * @param states number of states
+     * @param symbols size of the alphabet (without epsilon)
+     * @param density probability that a state has transitions on a symbol, there are one or two targets
+     * @param epsilonRatio probability that a state has an epsilon transition
+     * @param finalRatio probability that a state is final
+     * @return random NFA
+     */
+    public NFA randomNFA(int states, int symbols, double density, double epsilonRatio, double finalRatio) {
+        NFA automaton = new NFA();
+        fillStates(automaton, states, symbols, finalRatio);
+        if (epsilonRatio > 0)
+            automaton.getAlphabet().add("*");
+        for (int state = 0; state < states; state++) {
+            for (int symbol = 0; symbol < symbols; symbol++) {
+                if (random.nextDouble() < density) {
+                    int targets = 1 + random.nextInt(2);
+                    for (int i = 0; i < targets; i++)
+                        addTransition(automaton, state, symbol(symbol), random.nextInt(states));
+                }
+            }
+            if (random.nextDouble() < epsilonRatio)
+                addTransition(automaton, state, "*", random.nextInt(states));
+        }
+        return automaton;
+    }
+
+    /**
+     * Generates the NFA over {a, b} accepting words whose n-th symbol from the end is "a".
+     * It has n+1 states, but the minimal DFA has 2^n states, so it is the worst case of determinization.
+     * @param n position of the symbol from the end
+     * @return NFA with n+1 states
+     */
+    public static NFA nthSymbolFromEnd(int n) {
+        NFA automaton = new NFA();
+        automaton.getAlphabet().add("a");
+        automaton.getAlphabet().add("b");
+        for (int state = 0; state <= n; state++)
+            automaton.getStates().add(state);
+        automaton.getInitialStates().add(0);
+        automaton.getFinalStates().add(n);
+        // Loop in the initial state, then guess the "a" and count n-1 more symbols
+        addTransition(automaton, 0, "a", 0);
+        addTransition(automaton, 0, "b", 0);
+        addTransition(automaton, 0, "a", 1);
+        for (int state = 1; state < n; state++) {
+            addTransition(automaton, state, "a", state + 1);
+            addTransition(automaton, state, "b", state + 1);
+        }
+        return automaton;
+    }
+
+    /**
+     * Generates the DFA accepting numbers in base k divisible by n, written from the most significant digit.
+     * The symbols are digits named as the symbols of the generator. If n and k are coprime the DFA is already minimal,
+     * so minimization must distinguish every pair of its n states.
+     * @param n the divisor, also the number of states
+     * @param k the base, also the size of the alphabet
+     * @return DFA with n states
+     */
+    public static DFA divisibility(int n, int k) {
+        DFA automaton = new DFA();
+        for (int symbol = 0; symbol < k; symbol++)
+            automaton.getAlphabet().add(symbol(symbol));
+        for (int state = 0; state < n; state++) {
+            automaton.getStates().add(state);
+            for (int symbol = 0; symbol < k; symbol++)
+                addTransition(automaton, state, symbol(symbol), (state * k + symbol) % n);
+        }
+        automaton.getInitialStates().add(0);
+        automaton.getFinalStates().add(0);
+        return automaton;
+    }
+
+    /**
+     * @param index index of the symbol
+     * @return name of the symbol with the given index
+     */
+    public static String symbol(int index) {
+        return index < 26 ? String.valueOf((char) ('a' + index)) : "s" + index;
+    }
+
+    /**
+     * Adds the alphabet, the states, the initial state and random final states to the empty automaton.
+     * At least one state is final.
+     */
+    private void fillStates(Automaton automaton, int states, int symbols, double finalRatio) {
+        for (int symbol = 0; symbol < symbols; symbol++)
+            automaton.getAlphabet().add(symbol(symbol));
+        for (int state = 0; state < states; state++) {
+            automaton.getStates().add(state);
+            if (random.nextDouble() < finalRatio)
+                automaton.getFinalStates().add(state);
+        }
+        if (automaton.getFinalStates().isEmpty())
+            automaton.getFinalStates().add(random.nextInt(states));
+        automaton.getInitialStates().add(0);
+    }
+
+    /**
+     * Adds the transition to the transition table of the automaton
+     */
+    private static void addTransition(Automaton automaton, int from, String symbol, int to) {
+        automaton.getTransitionTable().computeIfAbsent(from, k -> new HashSet<>()).add(Transition.of(symbol, to));
+    }
+}
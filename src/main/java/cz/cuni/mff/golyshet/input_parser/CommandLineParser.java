@@ -2,6 +2,9 @@ package cz.cuni.mff.golyshet.input_parser;
 
 import cz.cuni.mff.golyshet.operation.*;
 
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,6 +17,24 @@ import java.util.Map;
 public class CommandLineParser implements Parser {
     // Create a map to store the operation and its arguments
     Map<Operation, List<String>> operation_list = new LinkedHashMap<>();
+    // Create a map to store the output file of the operations given by --out
+    Map<Operation, String> output_list = new HashMap<>();
+    // The last parsed operation, --out is applied to it
+    Operation last_operation = null;
+    // Whether the statistics of the phases should be reported
+    boolean stats = false;
+    // Whether the NFAs should be reduced by simulations before determinization
+    boolean reduce = false;
+    // Whether the results should be updated when the input files change
+    boolean watch = false;
+    // Directory of the external determinization given by --spill, null if it is disabled
+    String spill = null;
+    // Addresses of the workers of the distributed determinization given by --workers
+    List<InetSocketAddress> workers = null;
+    // Limits of the budget of every operation, 0 means no limit
+    int max_states = 0;
+    long max_heap = 0;
+    long deadline = 0;
 
     /**
      * Parses the command-line arguments and returns a map of operations and their arguments
@@ -32,59 +53,228 @@ public class CommandLineParser implements Parser {
         while (position < args.length) {
             // Check if the argument is an operation
             switch (args[position]) {
-                // If it's intersection, add an Intersection operation and its arguments to the map
-                case "--intersection" -> {
-                    if (position + 2 >= args.length) {
-                        System.out.println("Error path for intersection");
+                // If it's an output file, assign it to the previous operation
+                case "--out" -> {
+                    if (last_operation == null || output_list.containsKey(last_operation)) {
+                        System.out.println("Error --out must follow an operation");
                         System.exit(1);
                     }
-                    operation_list.put(new Intersection(), List.of(args[position + 1], args[position + 2]));
-                    position += 3;
-                }
-                // If it's union, add a Union operation and its arguments to the map
-                case "--union" -> {
-                    if (position + 2 >= args.length) {
-                        System.out.println("Error path for union");
+                    if (position + 1 >= args.length) {
+                        System.out.println("Error path for --out");
                         System.exit(1);
                     }
-                    operation_list.put(new Union(), List.of(args[position + 1], args[position + 2]));
-                    position += 3;
+                    output_list.put(last_operation, args[position + 1]);
+                    position += 2;
+                }
+                // If it's the statistics flag, remember it
+                case "--stats" -> {
+                    stats = true;
+                    position++;
+                }
+                // If it's the reduction flag, remember it
+                case "--reduce" -> {
+                    reduce = true;
+                    position++;
                 }
-                // If it's concatenation, add a Concatenation operation and its arguments to the map
-                case "--concatenation" -> {
-                    if (position + 2 >= args.length) {
-                        System.out.println("Error path for concatenation");
+                // If it's the watch flag, remember it
+                case "--watch" -> {
+                    watch = true;
+                    position++;
+                }
+                // If it's the directory of the external determinization, remember it
+                case "--spill" -> {
+                    if (position + 1 >= args.length) {
+                        System.out.println("Error path for --spill");
                         System.exit(1);
                     }
-                    operation_list.put(new Concatenation(), List.of(args[position + 1], args[position + 2]));
-                    position += 3;
+                    spill = args[position + 1];
+                    position += 2;
                 }
-                // If it's determinization, add a Determinization operation and its arguments to the map
-                case "--determinization" -> {
+                // If it's the list of the workers of the distributed determinization, remember it
+                case "--workers" -> {
                     if (position + 1 >= args.length) {
-                        System.out.println("Error path for determinization");
+                        System.out.println("Error value for --workers");
+                        System.exit(1);
+                    }
+                    try {
+                        workers = new ArrayList<>();
+                        for (String worker : args[position + 1].split(",")) {
+                            int colon = worker.lastIndexOf(':');
+                            workers.add(new InetSocketAddress(worker.substring(0, colon), Integer.parseInt(worker.substring(colon + 1))));
+                        }
+                    } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                        System.out.println("Error value for --workers");
                         System.exit(1);
                     }
-                    operation_list.put(new Determinization(), List.of(args[position + 1]));
                     position += 2;
                 }
-                // If it's minimization, add a Minimization operation and its argument to the map
-                case "--minimization" -> {
+                // If it's a limit of the budget, remember it
+                case "--max-states", "--max-heap", "--deadline" -> {
                     if (position + 1 >= args.length) {
-                        System.out.println("Error path for minimization");
+                        System.out.println("Error value for " + args[position]);
+                        System.exit(1);
+                    }
+                    try {
+                        long value = Long.parseLong(args[position + 1]);
+                        switch (args[position]) {
+                            case "--max-states" -> max_states = (int) Math.min(value, Integer.MAX_VALUE);
+                            case "--max-heap" -> max_heap = value << 20;
+                            default -> deadline = value * 1000;
+                        }
+                    } catch (NumberFormatException e) {
+                        System.out.println("Error value for " + args[position]);
                         System.exit(1);
                     }
-                    operation_list.put(new Minimization(), List.of(args[position + 1]));
                     position += 2;
                 }
-                // If it's an unknown operation, print an error message and exit the program
+                // Otherwise it must be an operation, add it and its arguments to the map
                 default -> {
-                    System.out.println("Unknown operation");
-                    System.exit(1);
+                    // Parameters of the operation precede its paths
+                    int parameters = parameterCount(args[position]);
+                    if (position + parameters >= args.length) {
+                        System.out.println("Error value for " + args[position]);
+                        System.exit(1);
+                    }
+                    Operation operation = null;
+                    try {
+                        operation = operationFor(args[position], List.of(args).subList(position + 1, position + 1 + parameters));
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("Error value for " + args[position]);
+                        System.exit(1);
+                    }
+                    // If it's an unknown operation, print an error message and exit the program
+                    if (operation == null) {
+                        System.out.println("Unknown operation");
+                        System.exit(1);
+                    }
+                    position += parameters;
+                    int count = pathCount(operation);
+                    if (position + count >= args.length) {
+                        System.out.println("Error path for " + args[position - parameters].substring(2));
+                        System.exit(1);
+                    }
+                    add(operation, List.of(args).subList(position + 1, position + 1 + count));
+                    position += count + 1;
                 }
             }
         }
         // Return the map of operations and their arguments
         return operation_list;
     }
+
+    /**
+     * @return true if --stats was given
+     */
+    public boolean isStats() {
+        return stats;
+    }
+
+    /**
+     * @return true if --reduce was given
+     */
+    public boolean isReduce() {
+        return reduce;
+    }
+
+    /**
+     * @return true if --watch was given
+     */
+    public boolean isWatch() {
+        return watch;
+    }
+
+    /**
+     * @return directory given by --spill, null if it was not given
+     */
+    public String getSpill() {
+        return spill;
+    }
+
+    /**
+     * @return addresses given by --workers, null if it was not given
+     */
+    public List<InetSocketAddress> getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Returns the budget given by --max-states (states), --max-heap (megabytes) and --deadline (seconds)
+     * @return the budget of every operation
+     */
+    public Budget getBudget() {
+        return new Budget(max_states, max_heap, deadline, new CancellationToken());
+    }
+
+    /**
+     * Creates the operation for the given command-line option
+     * @param option the command-line option, e.g. "--union"
+     * @return a new operation, or null if the option is not an operation
+     */
+    public static Operation operationFor(String option) {
+        return operationFor(option, List.of());
+    }
+
+    /**
+     * Creates the operation for the given command-line option and its parameters
+     * @param option the command-line option, e.g. "--count"
+     * @param parameters the parameters of the operation, parameterCount(option) of them
+     * @return a new operation, or null if the option is not an operation
+     * @throws IllegalArgumentException if a parameter is not valid
+     */
+    public static Operation operationFor(String option, List<String> parameters) {
+        return switch (option) {
+            case "--intersection" -> new Intersection();
+            case "--union" -> new Union();
+            case "--concatenation" -> new Concatenation();
+            case "--star" -> new Star();
+            case "--plus" -> new Plus();
+            case "--optional" -> new Option();
+            case "--determinization" -> new Determinization();
+            case "--minimization" -> new Minimization();
+            case "--from-words" -> new FromWords();
+            case "--count" -> new Count(Long.parseLong(parameters.get(0)));
+            case "--shortest" -> new Shortest(Long.parseLong(parameters.get(0)));
+            case "--sample" -> new Sample(Long.parseLong(parameters.get(0)), Integer.parseInt(parameters.get(1)));
+            default -> null;
+        };
+    }
+
+    /**
+     * @param option the command-line option
+     * @return the number of parameters preceding the paths of the operation
+     */
+    public static int parameterCount(String option) {
+        return switch (option) {
+            case "--count", "--shortest" -> 1;
+            case "--sample" -> 2;
+            default -> 0;
+        };
+    }
+
+    /**
+     * @param operation the operation
+     * @return the number of paths the operation needs
+     */
+    public static int pathCount(Operation operation) {
+        return operation instanceof MultipleAutomatonOperation ? 2 : 1;
+    }
+
+    /**
+     * Adds the operation and its arguments to the map and remembers it as the last operation
+     * @param operation the operation
+     * @param paths the arguments of the operation
+     */
+    private void add(Operation operation, List<String> paths) {
+        operation_list.put(operation, paths);
+        last_operation = operation;
+    }
+
+    /**
+     * Returns the output files given by --out after the operations.
+     * The output "-" means the standard output. Operations without --out are not in the map.
+     * @return a map of operations and their output files
+     */
+    public Map<Operation, String> getOutputs() {
+        return output_list;
+    }
 }
@@ -0,0 +1,142 @@
+package cz.cuni.mff.golyshet.operation;
+
+import java.util.function.Supplier;
+
+/**
+ * Resource budget of an operation: maximal number of states, maximal used heap and wall-clock deadline.
+ * The budget is bound to the current thread by run, the operations check it cooperatively by check
+ * in their BFS loops and throw a BudgetExceededException when it is exceeded or its token is cancelled.
+ * Limits equal to 0 mean no limit. Without a bound budget the checks do nothing.
+ * All budgets must be in the package cz.cuni.mff.golyshet.operation
+ */
+public class Budget {
+    // The time and the heap are checked only every CHECK_INTERVAL calls, because they are more expensive
+    private static final int CHECK_INTERVAL = 64;
+    private static final ThreadLocal<Tracker> current = new ThreadLocal<>();
+
+    private final int maxStates;
+    private final long maxHeapBytes;
+    private final long deadlineMillis;
+    private final CancellationToken token;
+
+    /**
+     * Creates a new budget
+     * @param maxStates maximal number of states created by one phase, 0 means no limit
+     * @param maxHeapBytes maximal used heap in bytes, 0 means no limit
+     * @param deadlineMillis maximal wall time of the operation in milliseconds, 0 means no limit
+     * @param token cancellation token of the operation
+     */
+    public Budget(int maxStates, long maxHeapBytes, long deadlineMillis, CancellationToken token) {
+        this.maxStates = maxStates;
+        this.maxHeapBytes = maxHeapBytes;
+        this.deadlineMillis = deadlineMillis;
+        this.token = token;
+    }
+
+    /**
+     * @return a budget without limits that cannot be cancelled
+     */
+    public static Budget unlimited() {
+        return new Budget(0, 0, 0, new CancellationToken());
+    }
+
+    /**
+     * @return the same limits with the given cancellation token
+     */
+    public Budget withToken(CancellationToken token) {
+        return new Budget(maxStates, maxHeapBytes, deadlineMillis, token);
+    }
+
+    /**
+     * @return the cancellation token of the budget
+     */
+    public CancellationToken getToken() {
+        return token;
+    }
+
+    /**
+     * Runs the task with this budget bound to the current thread, the deadline counts from now
+     * @param task to be run
+     * @return the result of the task
+     */
+    public <T> T run(Supplier<T> task) {
+        Tracker previous = current.get();
+        current.set(new Tracker(this, System.nanoTime()));
+        try {
+            return task.get();
+        } finally {
+            if (previous == null)
+                current.remove();
+            else
+                current.set(previous);
+        }
+    }
+
+    /**
+     * Checks the budget bound to the current thread
+     * @param phase the name of the running phase
+     * @param states number of states the phase has created so far
+     * @throws BudgetExceededException if the budget is exceeded or cancelled
+     */
+    public static void check(String phase, int states) {
+        Tracker tracker = current.get();
+        if (tracker != null)
+            tracker.check(phase, states);
+    }
+
+    /**
+     * Checks that the memory the phase is about to allocate fits into the budget bound to the current thread
+     * @param phase the name of the running phase
+     * @param states number of states of the phase
+     * @param bytes estimated size of the allocation
+     * @throws BudgetExceededException if the allocation would exceed the heap budget
+     */
+    public static void reserve(String phase, int states, long bytes) {
+        Tracker tracker = current.get();
+        if (tracker != null && tracker.budget.maxHeapBytes > 0 && usedHeap() + bytes > tracker.budget.maxHeapBytes)
+            throw tracker.exceeded(BudgetExceededException.Reason.HEAP, phase, states);
+    }
+
+    /**
+     * @return used heap in bytes
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Budget bound to a thread together with the time it started
+     */
+    private static class Tracker {
+        final Budget budget;
+        final long startNanos;
+        int calls = 0;
+
+        Tracker(Budget budget, long startNanos) {
+            this.budget = budget;
+            this.startNanos = startNanos;
+        }
+
+        void check(String phase, int states) {
+            if (budget.token.isCancelled())
+                throw exceeded(BudgetExceededException.Reason.CANCELLED, phase, states);
+            if (budget.maxStates > 0 && states > budget.maxStates)
+                throw exceeded(BudgetExceededException.Reason.STATES, phase, states);
+            if (++calls % CHECK_INTERVAL != 0)
+                return;
+            if (budget.deadlineMillis > 0 && elapsedMillis() > budget.deadlineMillis)
+                throw exceeded(BudgetExceededException.Reason.DEADLINE, phase, states);
+            if (budget.maxHeapBytes > 0 && usedHeap() > budget.maxHeapBytes)
+                throw exceeded(BudgetExceededException.Reason.HEAP, phase, states);
+        }
+
+        BudgetExceededException exceeded(BudgetExceededException.Reason reason, String phase, int states) {
+            return new BudgetExceededException(reason, phase, states, elapsedMillis(), usedHeap());
+        }
+
+        long elapsedMillis() {
+            return (System.nanoTime() - startNanos) / 1_000_000;
+        }
+    }
+}
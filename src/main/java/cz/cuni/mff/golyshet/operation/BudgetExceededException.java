@@ -0,0 +1,74 @@
+package cz.cuni.mff.golyshet.operation;
+
+/**
+ * Exception thrown when an operation exceeds its budget or is cancelled.
+ * It carries the statistics of the work done until then.
+ * All exceptions of operations must be in the package cz.cuni.mff.golyshet.operation
+ */
+public class BudgetExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Enum to represent the reason why the operation was stopped
+     */
+    public enum Reason {STATES, HEAP, DEADLINE, CANCELLED}
+
+    private final Reason reason;
+    private final String phase;
+    private final int states;
+    private final long elapsedMillis;
+    private final long heapBytes;
+
+    /**
+     * Creates a new exception
+     * @param reason why the operation was stopped
+     * @param phase in which the operation was stopped
+     * @param states number of states created by the phase so far
+     * @param elapsedMillis wall time since the operation started
+     * @param heapBytes used heap when the operation was stopped
+     */
+    public BudgetExceededException(Reason reason, String phase, int states, long elapsedMillis, long heapBytes) {
+        super("Budget exceeded (" + reason + ") in " + phase + " after " + states + " states, "
+                + elapsedMillis + " ms, " + (heapBytes >> 20) + " MB heap");
+        this.reason = reason;
+        this.phase = phase;
+        this.states = states;
+        this.elapsedMillis = elapsedMillis;
+        this.heapBytes = heapBytes;
+    }
+
+    /**
+     * @return the reason why the operation was stopped
+     */
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * @return the phase in which the operation was stopped
+     */
+    public String getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return number of states created by the phase so far
+     */
+    public int getStates() {
+        return states;
+    }
+
+    /**
+     * @return wall time since the operation started in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return used heap when the operation was stopped in bytes
+     */
+    public long getHeapBytes() {
+        return heapBytes;
+    }
+}
@@ -0,0 +1,41 @@
+package cz.cuni.mff.golyshet.operation;
+
+/**
+ * Token by which the caller cancels running operations.
+ * Operations check the token cooperatively in their loops and stop with a BudgetExceededException.
+ * All cancellation tokens must be in the package cz.cuni.mff.golyshet.operation
+ */
+public class CancellationToken {
+    private volatile boolean cancelled = false;
+    // Token whose cancellation cancels this token too, null if there is none
+    private final CancellationToken parent;
+
+    /**
+     * Creates a new token
+     */
+    public CancellationToken() {
+        this(null);
+    }
+
+    /**
+     * Creates a new token which is also cancelled when the parent is cancelled
+     * @param parent the parent token, e.g. of the whole server
+     */
+    public CancellationToken(CancellationToken parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Cancels all operations that use this token
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return true if the token or its parent was cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled || parent != null && parent.isCancelled();
+    }
+}
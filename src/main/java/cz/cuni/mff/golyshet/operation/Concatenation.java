@@ -1,13 +1,13 @@
 package cz.cuni.mff.golyshet.operation;
 
 import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.automaton.ImmutableAutomaton;
 import cz.cuni.mff.golyshet.automaton.NFA;
 import cz.cuni.mff.golyshet.automaton.Transition;
 import cz.cuni.mff.golyshet.fileReader.Reader;
+import cz.cuni.mff.golyshet.stats.Phase;
 
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.List;
+import java.util.*;
 
 /**
  * Class that represents the concatenation operation.
@@ -16,15 +16,168 @@ import java.util.List;
  * Then we add the states, alphabet, initial states, final states and transitions to the result automaton.
  * We add epsilon transitions from the final states of the first automaton to the initial states of the second automaton.
  * The result automaton is then minimized and determinized.
+ * If both automata are DFAs, the concatenation is built directly as a DFA without epsilon transitions:
+ * its states are pairs of a state of the first DFA and the subset of the states of the second DFA started
+ * after the prefixes accepted so far, only the pairs reachable from the initial pair are created.
  */
 public class Concatenation implements MultipleAutomatonOperation {
     @Override
     public Automaton perform(List<String> paths) {
         Automaton automaton1 = new Reader().read(paths.get(0));
         Automaton automaton2 = new Reader().read(paths.get(1));
+        return apply(List.of(automaton1, automaton2));
+    }
+
+    @Override
+    public Automaton apply(List<Automaton> automata) {
+        Automaton automaton1 = automata.get(0);
+        Automaton automaton2 = automata.get(1);
+        if (isDeterministic(automaton1) && isDeterministic(automaton2)) {
+            Phase phase = Phase.begin("concatenationProduct", automaton1.getStates().size() + automaton2.getStates().size());
+            Automaton product = product(automaton1, automaton2, phase);
+            phase.end(product.getStates().size());
+            return new Minimization().minimize(product);
+        }
         return new Minimization().minimize(new Determinization().determinize(concatenation(automaton1, automaton2)));
     }
 
+    /**
+     * The type is not enough, the reader does not check that a file labelled DFA is deterministic
+     * @return true if the automaton is a DFA with one initial state, at most one target of every state
+     * by every symbol and no epsilon transitions
+     */
+    private static boolean isDeterministic(Automaton automaton) {
+        if (automaton.getType() != Automaton.Type.DFA || automaton.getInitialStates().size() != 1)
+            return false;
+        for (Set<Transition> transitions : automaton.getTransitionTable().values()) {
+            Set<String> symbols = new HashSet<>();
+            for (Transition transition : transitions)
+                if (transition.getSymbol().equals("*") || !symbols.add(transition.getSymbol()))
+                    return false;
+        }
+        return true;
+    }
+
+    /**
+     * Builds the concatenation of two DFAs as a DFA, the states are pairs of a state of the first DFA
+     * (-1 after a symbol it has no transition on) and a sorted subset of the states of the second DFA
+     * @param automaton1 first DFA
+     * @param automaton2 second DFA
+     * @param phase measurement of the phase, counts the interned pairs and the frontier
+     * @return DFA of the reachable pairs, the initial pair is 0
+     */
+    private ImmutableAutomaton product(Automaton automaton1, Automaton automaton2, Phase phase) {
+        SortedSet<String> alphabet = new TreeSet<>(automaton1.getAlphabet());
+        alphabet.addAll(automaton2.getAlphabet());
+        String[] symbols = alphabet.toArray(new String[0]);
+        int[][] table1 = table(automaton1, symbols);
+        int[][] table2 = table(automaton2, symbols);
+        boolean[] final1 = finals(automaton1);
+        boolean[] final2 = finals(automaton2);
+        int k = symbols.length;
+
+        // The second DFA starts whenever the first one is in a final state
+        PairTable pairs = new PairTable();
+        int[] subset = new int[final2.length + 1];
+        subset[0] = 0;
+        int size = 1;
+        if (final1[0])
+            subset[size++] = 0;
+        pairs.intern(subset, size);
+
+        Map<Integer, Set<Transition>> transitions = new HashMap<>();
+        SortedSet<Integer> finalStates = new TreeSet<>();
+        boolean[] seen = new boolean[final2.length];
+        for (int pair = 0; pair < pairs.size(); pair++) {
+            phase.frontier(pairs.size() - pair);
+            Budget.check("concatenationProduct", pairs.size());
+            int[] current = pairs.get(pair);
+            for (int i = 1; i < current.length; i++)
+                if (final2[current[i]]) {
+                    finalStates.add(pair);
+                    break;
+                }
+            for (int symbol = 0; symbol < k; symbol++) {
+                // Step the first DFA and every started copy of the second one
+                int first = current[0] < 0 ? -1 : table1[current[0]][symbol];
+                size = 1;
+                subset[0] = first;
+                if (first >= 0 && final1[first]) {
+                    subset[size++] = 0;
+                    seen[0] = true;
+                }
+                for (int i = 1; i < current.length; i++) {
+                    int next = table2[current[i]][symbol];
+                    if (next >= 0 && !seen[next]) {
+                        seen[next] = true;
+                        subset[size++] = next;
+                    }
+                }
+                for (int i = 1; i < size; i++)
+                    seen[subset[i]] = false;
+                if (first < 0 && size == 1)
+                    continue;
+                Arrays.sort(subset, 1, size);
+                int target = pairs.intern(subset, size);
+                transitions.computeIfAbsent(pair, s -> new HashSet<>()).add(Transition.of(symbols[symbol], target));
+            }
+        }
+        phase.subsets(pairs.size());
+
+        SortedSet<Integer> states = new TreeSet<>();
+        for (int pair = 0; pair < pairs.size(); pair++)
+            states.add(pair);
+        ImmutableAutomaton.Builder builder = ImmutableAutomaton.builder(Automaton.Type.DFA)
+                .alphabet(alphabet)
+                .states(states)
+                .finalStates(finalStates)
+                .initialStates(new TreeSet<>(Set.of(0)));
+        for (Map.Entry<Integer, Set<Transition>> entry : transitions.entrySet())
+            builder.transitions(entry.getKey(), entry.getValue());
+        return builder.build();
+    }
+
+    /**
+     * Numbers the states of the DFA from 0, the initial state is 0
+     * @return target of every state by every symbol, -1 if there is no transition
+     */
+    private static int[][] table(Automaton automaton, String[] symbols) {
+        Map<Integer, Integer> index = index(automaton);
+        int[][] table = new int[index.size()][symbols.length];
+        for (Map.Entry<Integer, Integer> entry : index.entrySet()) {
+            Arrays.fill(table[entry.getValue()], -1);
+            for (Transition transition : automaton.getTransitionTable().getOrDefault(entry.getKey(), Collections.emptySet()))
+                table[entry.getValue()][Arrays.binarySearch(symbols, transition.getSymbol())] = index.get(transition.getTo_state());
+        }
+        return table;
+    }
+
+    /**
+     * @return final states of the DFA numbered as by table
+     */
+    private static boolean[] finals(Automaton automaton) {
+        Map<Integer, Integer> index = index(automaton);
+        boolean[] finals = new boolean[index.size()];
+        for (Integer state : automaton.getFinalStates())
+            if (index.containsKey(state))
+                finals[index.get(state)] = true;
+        return finals;
+    }
+
+    /**
+     * @return number of every state, the initial state is 0 and the other states follow in their order
+     */
+    private static Map<Integer, Integer> index(Automaton automaton) {
+        Map<Integer, Integer> index = new HashMap<>();
+        index.put(automaton.getInitialStates().first(), 0);
+        for (Integer state : automaton.getStates())
+            index.putIfAbsent(state, index.size());
+        for (Set<Transition> transitions : automaton.getTransitionTable().values())
+            for (Transition transition : transitions)
+                index.putIfAbsent(transition.getTo_state(), index.size());
+        return index;
+    }
+
     /**
      * Concatenates two automata
      * @param automaton1 first automaton
@@ -32,7 +185,8 @@ public class Concatenation implements MultipleAutomatonOperation {
      * @return concatenated automaton
      */
     private Automaton concatenation(Automaton automaton1, Automaton automaton2) {
-        // Rename the states of the second automaton
+        // Rename the states of a copy of the second automaton, the input may be immutable or shared
+        automaton2 = automaton2.copy();
         automaton2.rename(Collections.max(automaton1.getStates()) + 1);
         NFA result = new NFA();
 
@@ -47,13 +201,93 @@ public class Concatenation implements MultipleAutomatonOperation {
         result.getTransitionTable().putAll(automaton1.getTransitionTable());
         result.getTransitionTable().putAll(automaton2.getTransitionTable());
 
-        // Add epsilon transitions from the final states of the first automaton to the initial states of the second automaton
+        // Add epsilon transitions from the final states of the first automaton to the initial states of the second automaton,
+        // the sets of the first automaton are shared with the result so they are replaced by copies
         for (Integer finals: automaton1.getFinalStates()) {
+            Set<Transition> transitions = new HashSet<>(result.getTransitionTable().getOrDefault(finals, Collections.emptySet()));
             for (Integer initial: automaton2.getInitialStates())
-                result.getTransitionTable().computeIfAbsent(finals, k -> new HashSet<>())
-                        .add(new Transition("*", initial));
+                transitions.add(Transition.of("*", initial));
+            result.getTransitionTable().put(finals, transitions);
         }
 
         return result;
     }
+
+    /**
+     * Interned pairs stored one after another in one int array, the first int of a pair is the state
+     * of the first DFA and the rest is the subset; a pair is found by open addressing in a table of their numbers
+     */
+    private static final class PairTable {
+        private int[] pool = new int[1024];
+        private int used = 0;
+        // Start of every pair in the pool, the end is the start of the next one
+        private int[] starts = new int[65];
+        private int count = 0;
+        private int[] slots = new int[64];
+
+        PairTable() {
+            Arrays.fill(slots, -1);
+        }
+
+        int size() {
+            return count;
+        }
+
+        /**
+         * @return copy of the pair with the number
+         */
+        int[] get(int pair) {
+            return Arrays.copyOfRange(pool, starts[pair], starts[pair + 1]);
+        }
+
+        /**
+         * @param values the state and the sorted subset in values[0] to values[size-1]
+         * @return the number of the pair, a new pair gets the next number
+         */
+        int intern(int[] values, int size) {
+            int hash = 1;
+            for (int i = 0; i < size; i++)
+                hash = 31 * hash + values[i];
+            hash *= 0x9E3779B9;
+            int mask = slots.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                int pair = slots[slot];
+                if (pair < 0) {
+                    slots[slot] = add(values, size);
+                    if (2 * count > slots.length)
+                        rehash();
+                    return count - 1;
+                }
+                if (starts[pair + 1] - starts[pair] == size && Arrays.equals(pool, starts[pair], starts[pair + 1], values, 0, size))
+                    return pair;
+            }
+        }
+
+        private int add(int[] values, int size) {
+            while (used + size > pool.length)
+                pool = Arrays.copyOf(pool, 2 * pool.length);
+            System.arraycopy(values, 0, pool, used, size);
+            used += size;
+            if (count + 2 > starts.length)
+                starts = Arrays.copyOf(starts, 2 * starts.length);
+            starts[++count] = used;
+            return count - 1;
+        }
+
+        private void rehash() {
+            slots = new int[2 * slots.length];
+            Arrays.fill(slots, -1);
+            int mask = slots.length - 1;
+            for (int pair = 0; pair < count; pair++) {
+                int hash = 1;
+                for (int i = starts[pair]; i < starts[pair + 1]; i++)
+                    hash = 31 * hash + pool[i];
+                hash *= 0x9E3779B9;
+                int slot = hash & mask;
+                while (slots[slot] >= 0)
+                    slot = (slot + 1) & mask;
+                slots[slot] = pair;
+            }
+        }
+    }
 }
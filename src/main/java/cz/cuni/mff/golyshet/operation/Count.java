@@ -0,0 +1,288 @@
+package cz.cuni.mff.golyshet.operation;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.automaton.Transition;
+import cz.cuni.mff.golyshet.fileReader.Reader;
+import cz.cuni.mff.golyshet.stats.Phase;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Class that counts the words accepted by the automaton for every length up to the given one.
+ * Implements ReportOperation interface, the result of the operation is the minimal DFA
+ * and the saved output is the table "length,count,total" where total is the number of accepted words not longer than length.
+ * The counts are computed on the minimal DFA by dynamic programming backwards from the final states:
+ * the number of words of length l+1 accepted from a state is the sum over its transitions of the numbers of words of length l
+ * accepted from their targets. The counts are longs until a step overflows, then the step and all later ones use BigInteger.
+ * Every step is computed in parallel over the states when the DFA is large.
+ * If the length is larger than the table limit, only the row of the length is computed by repeated squaring of the transition matrix.
+ */
+public class Count implements ReportOperation {
+    // Maximal length for which the whole table is computed
+    public static final int TABLE_LIMIT = 1 << 16;
+    // Minimal number of states for which the steps are computed in parallel
+    private static final int PARALLEL_STATES = 1 << 10;
+
+    private final long length;
+
+    /**
+     * @param length maximal length of the counted words
+     */
+    public Count(long length) {
+        if (length < 0)
+            throw new IllegalArgumentException("Length must not be negative");
+        this.length = length;
+    }
+
+    @Override
+    public Automaton perform(List<String> paths) {
+        if (paths.size() != 1) {
+            throw new RuntimeException("Count operation requires exactly one input file.");
+        }
+        Reader reader = new Reader();
+        return apply(List.of(reader.read(paths.get(0))));
+    }
+
+    @Override
+    public Automaton apply(List<Automaton> automata) {
+        if (automata.size() != 1) {
+            throw new RuntimeException("Count operation requires exactly one automaton.");
+        }
+        return new Minimization().apply(automata);
+    }
+
+    /**
+     * Counts the accepted words, the operation keeps no state so it can be shared by threads
+     * @param result the minimal DFA returned by apply
+     * @return the table of the counts
+     */
+    public Table tabulate(Automaton result) {
+        Phase phase = Phase.begin("count", result.getStates().size());
+        Matrix matrix = new Matrix(result);
+        Table table = length <= TABLE_LIMIT ? table(matrix, (int) length) : power(matrix, length);
+        phase.end(result.getStates().size());
+        return table;
+    }
+
+    @Override
+    public void write(Automaton result, Writer writer) throws IOException {
+        Table table = tabulate(result);
+        writer.write("length,count,total\n");
+        for (int i = 0; i < table.lengths.length; i++)
+            writer.write(table.lengths[i] + "," + table.counts[i] + "," + table.totals[i] + "\n");
+    }
+
+    /**
+     * Computes all rows of the table by the dynamic programming
+     */
+    private Table table(Matrix matrix, int length) {
+        long[] lengths = new long[length + 1];
+        BigInteger[] counts = new BigInteger[length + 1];
+        BigInteger[] totals = new BigInteger[length + 1];
+        int n = matrix.states;
+
+        // Words of length 0 are accepted only from the final states
+        long[] current = new long[n];
+        for (int state = 0; state < n; state++)
+            current[state] = matrix.accepting[state] ? 1 : 0;
+        BigInteger[] big = null;
+        BigInteger total = BigInteger.ZERO;
+
+        for (int l = 0; ; l++) {
+            Budget.check("count", n);
+            BigInteger count = big == null ? BigInteger.valueOf(current[matrix.initial]) : big[matrix.initial];
+            total = total.add(count);
+            lengths[l] = l;
+            counts[l] = count;
+            totals[l] = total;
+            if (l == length)
+                break;
+            if (big == null) {
+                long[] next = step(matrix, current);
+                if (next != null) {
+                    current = next;
+                    continue;
+                }
+                // The step overflowed, switch to BigInteger from now on
+                big = new BigInteger[n];
+                for (int state = 0; state < n; state++)
+                    big[state] = BigInteger.valueOf(current[state]);
+            }
+            big = step(matrix, big);
+        }
+        return new Table(lengths, counts, totals);
+    }
+
+    /**
+     * @return counts of the words one symbol longer, or null if a count overflows
+     */
+    private long[] step(Matrix matrix, long[] current) {
+        long[] next = new long[matrix.states];
+        boolean[] overflow = new boolean[1];
+        states(matrix).forEach(state -> {
+            long sum = 0;
+            try {
+                for (int i = 0; i < matrix.targets[state].length; i++)
+                    sum = Math.addExact(sum, Math.multiplyExact(matrix.weights[state][i], current[matrix.targets[state][i]]));
+            } catch (ArithmeticException e) {
+                overflow[0] = true;
+            }
+            next[state] = sum;
+        });
+        return overflow[0] ? null : next;
+    }
+
+    /**
+     * @return counts of the words one symbol longer
+     */
+    private BigInteger[] step(Matrix matrix, BigInteger[] current) {
+        BigInteger[] next = new BigInteger[matrix.states];
+        states(matrix).forEach(state -> {
+            BigInteger sum = BigInteger.ZERO;
+            for (int i = 0; i < matrix.targets[state].length; i++)
+                sum = sum.add(BigInteger.valueOf(matrix.weights[state][i]).multiply(current[matrix.targets[state][i]]));
+            next[state] = sum;
+        });
+        return next;
+    }
+
+    /**
+     * @return stream of the states, parallel for large automata
+     */
+    private IntStream states(Matrix matrix) {
+        IntStream states = IntStream.range(0, matrix.states);
+        return matrix.states >= PARALLEL_STATES ? states.parallel() : states;
+    }
+
+    /**
+     * Computes the row of the length by repeated squaring.
+     * The transition matrix M is extended by a column of the final states and an accumulating state,
+     * A = [[M, f], [0, 1]], then the last column of A^k contains the sums of M^i f for i less than k,
+     * so the number of words not longer than the length is in A^(length+1) and shorter ones in A^length.
+     */
+    private Table power(Matrix matrix, long length) {
+        int n = matrix.states + 1;
+        Budget.reserve("count", matrix.states, 2L * n * n * 32);
+        BigInteger[][] a = new BigInteger[n][n];
+        for (BigInteger[] row : a)
+            Arrays.fill(row, BigInteger.ZERO);
+        for (int state = 0; state < matrix.states; state++) {
+            for (int i = 0; i < matrix.targets[state].length; i++)
+                a[state][matrix.targets[state][i]] = BigInteger.valueOf(matrix.weights[state][i]);
+            if (matrix.accepting[state])
+                a[state][n - 1] = BigInteger.ONE;
+        }
+        a[n - 1][n - 1] = BigInteger.ONE;
+
+        // Row of the initial state of A^length, the powers of A are squared for every bit of the length
+        BigInteger[] row = new BigInteger[n];
+        Arrays.fill(row, BigInteger.ZERO);
+        row[matrix.initial] = BigInteger.ONE;
+        for (long bits = length; bits > 0; bits >>>= 1) {
+            Budget.check("count", matrix.states);
+            if ((bits & 1) != 0)
+                row = multiply(row, a);
+            if (bits > 1)
+                a = square(a);
+        }
+        BigInteger shorter = row[n - 1];
+        BigInteger total = BigInteger.ZERO;
+        for (int state = 0; state < matrix.states; state++)
+            if (matrix.accepting[state])
+                total = total.add(row[state]);
+        total = total.add(shorter);
+
+        return new Table(new long[]{length}, new BigInteger[]{total.subtract(shorter)}, new BigInteger[]{total});
+    }
+
+    /**
+     * @return the row vector multiplied by the matrix
+     */
+    private BigInteger[] multiply(BigInteger[] row, BigInteger[][] matrix) {
+        int n = row.length;
+        BigInteger[] result = new BigInteger[n];
+        IntStream.range(0, n).parallel().forEach(j -> {
+            BigInteger sum = BigInteger.ZERO;
+            for (int i = 0; i < n; i++)
+                if (row[i].signum() != 0 && matrix[i][j].signum() != 0)
+                    sum = sum.add(row[i].multiply(matrix[i][j]));
+            result[j] = sum;
+        });
+        return result;
+    }
+
+    /**
+     * @return the square of the matrix, the rows are computed in parallel
+     */
+    private BigInteger[][] square(BigInteger[][] matrix) {
+        int n = matrix.length;
+        BigInteger[][] result = new BigInteger[n][];
+        IntStream.range(0, n).parallel().forEach(i -> result[i] = multiply(matrix[i], matrix));
+        return result;
+    }
+
+    /**
+     * Rows of the table "length,count,total", only the row of the length if it is larger than the table limit
+     */
+    public static final class Table {
+        private final long[] lengths;
+        private final BigInteger[] counts;
+        private final BigInteger[] totals;
+
+        private Table(long[] lengths, BigInteger[] counts, BigInteger[] totals) {
+            this.lengths = lengths;
+            this.counts = counts;
+            this.totals = totals;
+        }
+
+        /**
+         * @return number of accepted words of the length
+         */
+        public BigInteger getCount() {
+            return counts[counts.length - 1];
+        }
+
+        /**
+         * @return number of accepted words not longer than the length
+         */
+        public BigInteger getTotal() {
+            return totals[totals.length - 1];
+        }
+    }
+
+    /**
+     * Transitions of the DFA as arrays, the transitions of a state to the same target on different symbols
+     * are joined into one with the number of the symbols as its weight
+     */
+    private static class Matrix {
+        final int states;
+        final int initial;
+        final boolean[] accepting;
+        final int[][] targets;
+        final long[][] weights;
+
+        Matrix(Automaton automaton) {
+            Map<Integer, Integer> index = new HashMap<>();
+            for (Integer state : automaton.getStates())
+                index.put(state, index.size());
+            states = index.size();
+            initial = index.get(automaton.getInitialStates().first());
+            accepting = new boolean[states];
+            for (Integer state : automaton.getFinalStates())
+                accepting[index.get(state)] = true;
+            targets = new int[states][];
+            weights = new long[states][];
+            for (Integer state : automaton.getStates()) {
+                Map<Integer, Long> row = new TreeMap<>();
+                for (Transition transition : automaton.getTransitionTable().getOrDefault(state, Collections.emptySet()))
+                    row.merge(index.get(transition.getTo_state()), 1L, Long::sum);
+                targets[index.get(state)] = row.keySet().stream().mapToInt(Integer::intValue).toArray();
+                weights[index.get(state)] = row.values().stream().mapToLong(Long::longValue).toArray();
+            }
+        }
+    }
+}
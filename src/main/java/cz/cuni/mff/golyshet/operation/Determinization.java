@@ -1,10 +1,10 @@
 package cz.cuni.mff.golyshet.operation;
 
 import cz.cuni.mff.golyshet.automaton.Automaton;
-import cz.cuni.mff.golyshet.automaton.DFA;
-import cz.cuni.mff.golyshet.automaton.NFA;
+import cz.cuni.mff.golyshet.automaton.ImmutableAutomaton;
 import cz.cuni.mff.golyshet.automaton.Transition;
 import cz.cuni.mff.golyshet.fileReader.Reader;
+import cz.cuni.mff.golyshet.stats.Phase;
 
 import java.util.*;
 
@@ -12,8 +12,9 @@ import java.util.*;
  * Class that represents the determinization operation.
  * Implements the SingleAutomatonOperation interface.
  * For determinization of the automaton we simplify the initial states of the automaton.
- * Then we remove all the epsilon transitions from the automaton.
- * Determinization is done by creating a transition table for the automaton and normalize result.
+ * Then we remove all the epsilon transitions from the automaton and, if enabled, reduce it by simulations.
+ * Determinization is done by creating a transition table for the automaton and normalize result,
+ * or by ShardedDeterminization or ExternalDeterminization if the distributed or the external mode is enabled.
  */
 public class Determinization implements SingleAutomatonOperation {
     @Override
@@ -22,7 +23,15 @@ public class Determinization implements SingleAutomatonOperation {
             throw new RuntimeException("Determinization operation requires exactly one input file.");
         }
         Reader reader = new Reader();
-        Automaton automaton = reader.read(paths.get(0));
+        return apply(List.of(reader.read(paths.get(0))));
+    }
+
+    @Override
+    public Automaton apply(List<Automaton> automata) {
+        if (automata.size() != 1) {
+            throw new RuntimeException("Determinization operation requires exactly one automaton.");
+        }
+        Automaton automaton = automata.get(0);
         if (automaton.getType() == Automaton.Type.DFA) {
             return automaton;
         }
@@ -37,8 +46,37 @@ public class Determinization implements SingleAutomatonOperation {
 
     protected Automaton determinize(Automaton automaton) {
         // Make single initial state and remove epsilon transitions
-        Automaton result = removeEpsilonTransitions(simplifyInitialStates(automaton));
+        Phase phase = Phase.begin("simplifyInitialStates", automaton.getStates().size());
+        ImmutableAutomaton simplified = simplifyInitialStates(ImmutableAutomaton.of(automaton));
+        phase.end(simplified.getStates().size());
+
+        phase = Phase.begin("removeEpsilonTransitions", simplified.getStates().size());
+        ImmutableAutomaton result = removeEpsilonTransitions(simplified);
+        phase.end(result.getStates().size());
+
+        // Optionally shrink the NFA by simulations before the exponential part
+        if (SimulationReduction.isEnabled()) {
+            phase = Phase.begin("simulationReduction", result.getStates().size());
+            result = new SimulationReduction().reduce(result);
+            phase.end(result.getStates().size());
+        }
 
+        // The subsets are kept by the worker processes in the distributed mode
+        if (ShardedDeterminization.isEnabled()) {
+            phase = Phase.begin("shardedSubsetConstruction", result.getStates().size());
+            ImmutableAutomaton sharded = new ShardedDeterminization().determinize(result, phase);
+            phase.end(sharded.getStates().size());
+            return sharded;
+        }
+        // The subsets are kept on disk in the external mode
+        if (ExternalDeterminization.isEnabled()) {
+            phase = Phase.begin("externalSubsetConstruction", result.getStates().size());
+            ImmutableAutomaton external = new ExternalDeterminization().determinize(result, phase);
+            phase.end(external.getStates().size());
+            return external;
+        }
+
+        phase = Phase.begin("subsetConstruction", result.getStates().size());
         Map<Key, Set<Integer>> transitionMap = new HashMap<>();
 
         Queue<Set<Integer>> queue = new LinkedList<>();
@@ -48,6 +86,8 @@ public class Determinization implements SingleAutomatonOperation {
 
         // BFS to create the transition table
         while (!queue.isEmpty()) {
+            phase.frontier(queue.size());
+            Budget.check("subsetConstruction", explored.size());
             Set<Integer> currentStates = queue.poll();
             Map<Key, Set<Integer>> tableRow = new HashMap<>();
 
@@ -70,8 +110,14 @@ public class Determinization implements SingleAutomatonOperation {
             }
             transitionMap.putAll(tableRow);
         }
+        phase.subsets(explored.size());
+        phase.end(explored.size());
+
         // Renames the states of the automaton to be consecutive numbers starting from 0
-        return normalize(result, transitionMap);
+        phase = Phase.begin("normalize", explored.size());
+        Automaton normalized = normalize(result, transitionMap);
+        phase.end(normalized.getStates().size());
+        return normalized;
     }
 
 
@@ -81,11 +127,10 @@ public class Determinization implements SingleAutomatonOperation {
      * @param transitionMap transition map of the automaton
      * @return normalized automaton
      */
-    private Automaton normalize(Automaton automaton, Map<Key, Set<Integer>> transitionMap) {
-        Set<String> newAlphabet = new HashSet<>(automaton.getAlphabet());
-        Set<Integer> newStates = new HashSet<>();
-        Set<Integer> newFinalStates = new HashSet<>();
-        Set<Integer> newInitialStates = new HashSet<>();
+    private ImmutableAutomaton normalize(ImmutableAutomaton automaton, Map<Key, Set<Integer>> transitionMap) {
+        SortedSet<Integer> newStates = new TreeSet<>();
+        SortedSet<Integer> newFinalStates = new TreeSet<>();
+        SortedSet<Integer> newInitialStates = new TreeSet<>();
         Map<Integer, Set<Transition>> newTransitionTable = new HashMap<>();
 
         Map<Set<Integer>, Integer> mappedStates = new HashMap<>();
@@ -97,6 +142,7 @@ public class Determinization implements SingleAutomatonOperation {
         mappedStates.put(automaton.getInitialStates(), stateCounter++);
 
         while (!queue.isEmpty()) {
+            Budget.check("normalize", stateCounter);
             Set<Integer> currentStates = queue.poll();
             for (String symbol : automaton.getAlphabet()) {
                 Set<Integer> state = transitionMap.getOrDefault(new Key(currentStates, symbol), Collections.emptySet());
@@ -107,7 +153,7 @@ public class Determinization implements SingleAutomatonOperation {
                     queue.add(state);
                 }
                 newTransitionTable.computeIfAbsent(mappedStates.get(currentStates), k -> new HashSet<>())
-                        .add(new Transition(symbol, mappedStates.get(state)));
+                        .add(Transition.of(symbol, mappedStates.get(state)));
             }
             newStates.add(mappedStates.get(currentStates));
             for (Integer finalState : automaton.getFinalStates()) {
@@ -118,30 +164,36 @@ public class Determinization implements SingleAutomatonOperation {
             }
         }
 
-        DFA result = new DFA();
-        result.clear();
-
-        result.getAlphabet().addAll(newAlphabet);
-        result.getStates().addAll(newStates);
-        result.getFinalStates().addAll(newFinalStates);
-        result.getInitialStates().addAll(newInitialStates);
-        result.getTransitionTable().putAll(newTransitionTable);
-
-        return result;
+        // The alphabet is shared with the input automaton
+        ImmutableAutomaton.Builder builder = ImmutableAutomaton.builder(Automaton.Type.DFA)
+                .alphabet(automaton.getAlphabet())
+                .states(newStates)
+                .finalStates(newFinalStates)
+                .initialStates(newInitialStates);
+        for (Map.Entry<Integer, Set<Transition>> entry : newTransitionTable.entrySet())
+            builder.transitions(entry.getKey(), entry.getValue());
+        return builder.build();
     }
 
     /**
      * Removes epsilon transitions from the automaton
+     * Rows of the transition table without epsilon transitions are shared with the input automaton
      * @param automaton for which the epsilon transitions should be removed
      * @return automaton without epsilon transitions
      */
-    private Automaton removeEpsilonTransitions(Automaton automaton) {
-
-        // Construct new transition table with epsilon transitions removed
-        Map<Integer, Set<Transition>> transition_table = new HashMap<>();
-        for (Integer state : automaton.getStates()) {
+    ImmutableAutomaton removeEpsilonTransitions(ImmutableAutomaton automaton) {
+        ImmutableAutomaton.Builder builder = automaton.toBuilder().type(Automaton.Type.NFA);
+        SortedSet<Integer> final_states = null;
+
+        // Replace the rows with epsilon transitions by the transitions of their epsilon closure
+        int replaced = 0;
+        for (Map.Entry<Integer, Set<Transition>> entry : automaton.getTransitionTable().entrySet()) {
+            Budget.check("removeEpsilonTransitions", replaced);
+            Set<Transition> transitions = entry.getValue();
+            if (transitions.stream().noneMatch(transition -> transition.getSymbol().equals("*")))
+                continue;
+            int state = entry.getKey();
             Set<Transition> new_transitions = new HashSet<>();
-            Set<Transition> transitions = automaton.getTransitionTable().getOrDefault(state, Collections.emptySet());
             for (Transition transition : transitions) {
                 if (!transition.getSymbol().equals("*")) {
                     new_transitions.add(transition);
@@ -167,68 +219,62 @@ public class Determinization implements SingleAutomatonOperation {
                         }
                     }
                     // Add final states
-                    if (automaton.getFinalStates().stream().anyMatch(visited::contains))
-                        automaton.getFinalStates().add(state);
+                    if (!automaton.getFinalStates().contains(state) && automaton.getFinalStates().stream().anyMatch(visited::contains)) {
+                        if (final_states == null)
+                            final_states = new TreeSet<>(automaton.getFinalStates());
+                        final_states.add(state);
+                    }
                 }
             }
-            transition_table.put(state, new_transitions);
+            builder.transitions(state, new_transitions);
+            replaced++;
         }
 
-        // Construct new automaton
-        NFA result = new NFA();
-        result.clear();
-        SortedSet<String> alphabet = new TreeSet<>(automaton.getAlphabet());
-        alphabet.remove("*");
-        SortedSet<Integer> states = new TreeSet<>(automaton.getStates());
-        SortedSet<Integer> final_states = new TreeSet<>(automaton.getFinalStates());
-        SortedSet<Integer> initial_states = new TreeSet<>(automaton.getInitialStates());
-        result.getAlphabet().addAll(alphabet);
-        result.getStates().addAll(states);
-        result.getFinalStates().addAll(final_states);
-        result.getInitialStates().addAll(initial_states);
-        result.getTransitionTable().putAll(transition_table);
-
-        return result;
+        // Only the changed components are replaced
+        if (final_states != null)
+            builder.finalStates(final_states);
+        if (automaton.getAlphabet().contains("*")) {
+            SortedSet<String> alphabet = new TreeSet<>(automaton.getAlphabet());
+            alphabet.remove("*");
+            builder.alphabet(alphabet);
+        }
+        return builder.build();
     }
 
     /**
      * Simplifies the automaton by joining all the initial states into one
+     * Everything except the states, the final states and the new row is shared with the input automaton
      * @param automaton which should be simplified by joining initial states
      * @return simplified automaton with one initial state
      */
-    private Automaton simplifyInitialStates(Automaton automaton) {
+    ImmutableAutomaton simplifyInitialStates(ImmutableAutomaton automaton) {
         if (automaton.getInitialStates().size() == 1) {
             return automaton;
         }
 
-        SortedSet<String> alphabet = new TreeSet<>(automaton.getAlphabet());
-        SortedSet<Integer> states = new TreeSet<>(automaton.getStates());
-        SortedSet<Integer> final_states = new TreeSet<>(automaton.getFinalStates());
-        Map<Integer, Set<Transition>> transition_table = new HashMap<>(automaton.getTransitionTable());
+        ImmutableAutomaton.Builder builder = automaton.toBuilder().type(Automaton.Type.NFA);
 
         // Create a new initial state
         int new_initial_state = Collections.max(automaton.getStates()) + 1;
+        SortedSet<Integer> states = new TreeSet<>(automaton.getStates());
         states.add(new_initial_state);
+        builder.states(states).initialStates(new TreeSet<>(Set.of(new_initial_state)));
 
         // Add epsilon transitions from new initial state to old initial states
+        Set<Transition> transitions = new HashSet<>();
         for (int initial_state : automaton.getInitialStates()) {
-            transition_table.computeIfAbsent(new_initial_state, k -> new HashSet<>())
-                    .add(new Transition("*", initial_state));
+            transitions.add(Transition.of("*", initial_state));
         }
+        builder.transitions(new_initial_state, transitions);
 
         // Add new initial state to final states if any of the initial states is final
-        if (automaton.getInitialStates().stream().anyMatch(automaton.getFinalStates()::contains))
+        if (automaton.getInitialStates().stream().anyMatch(automaton.getFinalStates()::contains)) {
+            SortedSet<Integer> final_states = new TreeSet<>(automaton.getFinalStates());
             final_states.add(new_initial_state);
+            builder.finalStates(final_states);
+        }
 
-        // Create new automaton
-        NFA result = new NFA();
-        result.getAlphabet().addAll(alphabet);
-        result.getStates().addAll(states);
-        result.getFinalStates().addAll(final_states);
-        result.getInitialStates().add(new_initial_state);
-        result.getTransitionTable().putAll(transition_table);
-
-        return result;
+        return builder.build();
     }
 
 
@@ -0,0 +1,488 @@
+package cz.cuni.mff.golyshet.operation;
+
+import cz.cuni.mff.golyshet.automaton.ImmutableAutomaton;
+import cz.cuni.mff.golyshet.stats.Phase;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Class that does the subset construction of an NFA without epsilon transitions in external memory.
+ * The subsets are explored level by level. The subsets reached from a level are collected in a buffer of limited size,
+ * which is sorted and spilled to a run file whenever it is full. At the end of the level the runs are merged
+ * with the sorted file of all visited subsets, so the duplicates are detected on disk; the new subsets get their numbers
+ * and form the next level. The transitions and the final states of the DFA are appended to files.
+ * After every level a checkpoint is written, so a determinization of the same NFA interrupted by a crash
+ * continues from its last finished level when it is started again with the same directory.
+ * The directory of an NFA is locked by the run using it, a concurrent run of the same NFA (e.g. another operation
+ * of the scheduler or another process) gets its own private directory and does not touch the checkpoint.
+ * Only the NFA, the buffer and finally the resulting DFA are kept on the heap.
+ * The external mode is optional, it is enabled for all operations by --spill directory.
+ */
+public class ExternalDeterminization {
+    private static volatile Path spillDirectory = null;
+    private static volatile long spillBuffer = 0;
+
+    private final Path directory;
+    private final long bufferBytes;
+
+
+    /**
+     * Enables the external mode in the determinization of all operations, the buffer is an eighth of the heap
+     * @param directory where the work files are kept
+     */
+    public static void enable(Path directory) {
+        enable(directory, Math.max(1L << 20, Runtime.getRuntime().maxMemory() / 8));
+    }
+
+    /**
+     * Enables the external mode in the determinization of all operations
+     * @param directory where the work files are kept
+     * @param bufferBytes approximate size of the buffer of reached subsets in bytes
+     */
+    public static void enable(Path directory, long bufferBytes) {
+        spillBuffer = bufferBytes;
+        spillDirectory = directory;
+    }
+
+    /**
+     * @return true if the external mode is enabled
+     */
+    public static boolean isEnabled() {
+        return spillDirectory != null;
+    }
+
+    /**
+     * Creates the construction with the directory and the buffer given to enable
+     */
+    public ExternalDeterminization() {
+        this(spillDirectory, spillBuffer);
+    }
+
+    /**
+     * @param directory where the work files are kept, every NFA has its own subdirectory
+     * @param bufferBytes approximate size of the buffer of reached subsets in bytes
+     */
+    public ExternalDeterminization(Path directory, long bufferBytes) {
+        this.directory = directory;
+        this.bufferBytes = bufferBytes;
+    }
+
+    /**
+     * Determinizes the NFA, the work files are deleted when it is finished
+     * @param automaton NFA without epsilon transitions
+     * @param phase measurement of the phase, counts the levels and the subsets
+     * @return DFA numbered by BFS in alphabet order, the same as from Determinization
+     */
+    public ImmutableAutomaton determinize(ImmutableAutomaton automaton, Phase phase) {
+        NumberedNFA nfa = new NumberedNFA(automaton);
+        String id = id(nfa);
+        try {
+            Files.createDirectories(directory);
+            // The lock file is never deleted, a run could otherwise lock a deleted file while another run locks a new one
+            try (FileChannel channel = FileChannel.open(directory.resolve(id + ".lock"),
+                         StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock lock = tryLock(channel)) {
+                Path work = lock != null ? directory.resolve(id) : Files.createTempDirectory(directory, id + "-");
+                return determinize(nfa, work, phase);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error in the external determinization in " + directory, e);
+        }
+    }
+
+    /**
+     * @return the lock of the channel, or null if another run holds it
+     */
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by another thread of this program
+            return null;
+        }
+    }
+
+    /**
+     * Determinizes the NFA in the work directory, continues from its checkpoint if there is one
+     */
+    private ImmutableAutomaton determinize(NumberedNFA nfa, Path work, Phase phase) {
+        try {
+            Files.createDirectories(work);
+            Properties checkpoint = readCheckpoint(work);
+            if (checkpoint == null) {
+                // Level 0 is the initial subset, which is also the only visited one
+                for (String name : new String[]{level(0), visited(0)})
+                    try (Output output = new Output(work.resolve(name), false)) {
+                        output.writeRecord(nfa.initial, 0);
+                    }
+                new Output(work.resolve("edges.bin"), false).close();
+                new Output(work.resolve("finals.bin"), false).close();
+                checkpoint = writeCheckpoint(work, 0, 1, 1);
+            }
+            int level = Integer.parseInt(checkpoint.getProperty("level"));
+            int states = Integer.parseInt(checkpoint.getProperty("states"));
+            int frontier = Integer.parseInt(checkpoint.getProperty("frontier"));
+
+            // Forget everything written after the checkpoint
+            truncate(work.resolve("edges.bin"), Long.parseLong(checkpoint.getProperty("edges")));
+            truncate(work.resolve("finals.bin"), Long.parseLong(checkpoint.getProperty("finals")));
+            Set<String> kept = Set.of("checkpoint", "edges.bin", "finals.bin", level(level), visited(level));
+            deleteFiles(work, name -> !kept.contains(name));
+
+            while (frontier > 0) {
+                phase.round();
+                phase.frontier(frontier);
+                List<Path> runs = expand(nfa, work, level, states);
+                int[] result;
+                try (Output edges = new Output(work.resolve("edges.bin"), true)) {
+                    result = merge(work, level, runs, states, edges);
+                }
+                states = result[0];
+                frontier = result[1];
+                writeCheckpoint(work, level + 1, states, frontier);
+                level++;
+                Set<String> next = Set.of("checkpoint", "edges.bin", "finals.bin", level(level), visited(level));
+                deleteFiles(work, name -> !next.contains(name));
+            }
+            phase.subsets(states);
+
+            ImmutableAutomaton result = build(nfa, work, states);
+            deleteFiles(work, name -> true);
+            Files.delete(work);
+            return result;
+        } catch (IOException e) {
+            throw new RuntimeException("Error in the external determinization in " + work, e);
+        }
+    }
+
+    /**
+     * @return hash of the numbered NFA, which names its work directory
+     */
+    private static String id(NumberedNFA nfa) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 digest is not available.", e);
+        }
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.join("\u0000", nfa.alphabet)).append('\u0001');
+        for (int state = 0; state < nfa.symbols.length; state++) {
+            builder.append(nfa.accepting[state] ? 'F' : 'N');
+            for (int i = 0; i < nfa.symbols[state].length; i++)
+                builder.append(nfa.symbols[state][i]).append(':').append(Arrays.toString(nfa.targets[state][i]));
+            builder.append('\n');
+            if (builder.length() > 1 << 16) {
+                digest.update(builder.toString().getBytes(StandardCharsets.UTF_8));
+                builder.setLength(0);
+            }
+        }
+        builder.append(Arrays.toString(nfa.initial));
+        digest.update(builder.toString().getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest(), 0, 16);
+    }
+
+    /**
+     * Computes the subsets reached from the subsets of the level, the buffer is spilled to sorted runs
+     * @return the run files
+     */
+    private List<Path> expand(NumberedNFA nfa, Path work, int level, int states) throws IOException {
+        List<Path> runs = new ArrayList<>();
+        List<Reached> buffer = new ArrayList<>();
+        long[] used = new long[1];
+        try (Input input = new Input(work.resolve(level(level)), false);
+             Output finals = new Output(work.resolve("finals.bin"), true)) {
+            while (input.next()) {
+                Budget.check("externalSubsetConstruction", states);
+                int source = input.value;
+                if (nfa.isFinal(input.subset))
+                    finals.writeVarInt(source);
+                nfa.expand(input.subset, (symbol, reached) -> {
+                    buffer.add(new Reached(reached, source, symbol));
+                    used[0] += 48 + 4L * reached.length;
+                });
+                // Spill the buffer when it is full
+                if (used[0] >= bufferBytes) {
+                    runs.add(spill(work, level, runs.size(), buffer));
+                    used[0] = 0;
+                }
+            }
+        }
+        if (!buffer.isEmpty() || runs.isEmpty())
+            runs.add(spill(work, level, runs.size(), buffer));
+        return runs;
+    }
+
+    /**
+     * Sorts the buffer by the subsets, writes it to a run file and clears it
+     */
+    private Path spill(Path work, int level, int run, List<Reached> buffer) throws IOException {
+        buffer.sort((first, second) -> Arrays.compare(first.subset, second.subset));
+        Path path = work.resolve("run-" + level + "-" + run + ".bin");
+        try (Output output = new Output(path, false)) {
+            for (Reached reached : buffer) {
+                output.writeRecord(reached.subset, reached.source);
+                output.writeVarInt(reached.symbol);
+            }
+        }
+        buffer.clear();
+        return path;
+    }
+
+    /**
+     * Merges the runs with the visited subsets, numbers the new subsets and writes the transitions
+     * @return the number of states and the number of new subsets
+     */
+    private int[] merge(Path work, int level, List<Path> runs, int states, Output edges) throws IOException {
+        PriorityQueue<Input> queue = new PriorityQueue<>((first, second) -> Arrays.compare(first.subset, second.subset));
+        int added = 0;
+        try (Input old = new Input(work.resolve(visited(level)), false);
+             Output visited = new Output(work.resolve(visited(level + 1)), false);
+             Output next = new Output(work.resolve(level(level + 1)), false)) {
+            for (Path run : runs) {
+                Input input = new Input(run, true);
+                if (input.next())
+                    queue.add(input);
+                else
+                    input.close();
+            }
+            boolean hasOld = old.next();
+            while (!queue.isEmpty()) {
+                Budget.check("externalSubsetConstruction", states);
+                int[] subset = queue.peek().subset;
+                // Copy the smaller visited subsets, then find the number of the subset
+                while (hasOld && Arrays.compare(old.subset, subset) < 0) {
+                    visited.writeRecord(old.subset, old.value);
+                    hasOld = old.next();
+                }
+                int id;
+                if (hasOld && Arrays.equals(old.subset, subset)) {
+                    id = old.value;
+                    visited.writeRecord(old.subset, old.value);
+                    hasOld = old.next();
+                } else {
+                    id = states++;
+                    visited.writeRecord(subset, id);
+                    next.writeRecord(subset, id);
+                    added++;
+                }
+                // Transitions of all sources reaching the subset
+                while (!queue.isEmpty() && Arrays.equals(queue.peek().subset, subset)) {
+                    Input input = queue.poll();
+                    edges.writeVarInt(input.value);
+                    edges.writeVarInt(input.symbol);
+                    edges.writeVarInt(id);
+                    if (input.next())
+                        queue.add(input);
+                    else
+                        input.close();
+                }
+            }
+            while (hasOld) {
+                visited.writeRecord(old.subset, old.value);
+                hasOld = old.next();
+            }
+        }
+        return new int[]{states, added};
+    }
+
+    /**
+     * Reads the DFA from the files of the transitions and the final states and numbers its states
+     * by BFS in alphabet order, the same way as Determinization
+     */
+    private ImmutableAutomaton build(NumberedNFA nfa, Path work, int states) throws IOException {
+        int k = nfa.alphabet.length;
+        Budget.reserve("externalSubsetConstruction", states, (long) states * k * Integer.BYTES);
+        int[] table = new int[states * k];
+        Arrays.fill(table, -1);
+        boolean[] finals = new boolean[states];
+        try (Input edges = new Input(work.resolve("edges.bin"), false)) {
+            while (edges.hasMore())
+                table[edges.readVarInt() * k + edges.readVarInt()] = edges.readVarInt();
+        }
+        try (Input input = new Input(work.resolve("finals.bin"), false)) {
+            while (input.hasMore())
+                finals[input.readVarInt()] = true;
+        }
+        return nfa.dfa(table, finals, 0);
+    }
+
+    private static String level(int level) {
+        return "level-" + level + ".bin";
+    }
+
+    private static String visited(int level) {
+        return "visited-" + level + ".bin";
+    }
+
+    /**
+     * @return the checkpoint of the work directory, null if there is none
+     */
+    private static Properties readCheckpoint(Path work) throws IOException {
+        Path path = work.resolve("checkpoint");
+        if (!Files.exists(path))
+            return null;
+        Properties checkpoint = new Properties();
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            checkpoint.load(reader);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Atomically replaces the checkpoint, the files it refers to must already be synced
+     */
+    private static Properties writeCheckpoint(Path work, int level, int states, int frontier) throws IOException {
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty("level", Integer.toString(level));
+        checkpoint.setProperty("states", Integer.toString(states));
+        checkpoint.setProperty("frontier", Integer.toString(frontier));
+        checkpoint.setProperty("edges", Long.toString(Files.size(work.resolve("edges.bin"))));
+        checkpoint.setProperty("finals", Long.toString(Files.size(work.resolve("finals.bin"))));
+        Path temporary = work.resolve("checkpoint.tmp");
+        try (FileOutputStream output = new FileOutputStream(temporary.toFile())) {
+            checkpoint.store(output, "External subset construction");
+            output.getFD().sync();
+        }
+        Files.move(temporary, work.resolve("checkpoint"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return checkpoint;
+    }
+
+    private static void truncate(Path path, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        }
+    }
+
+    private static void deleteFiles(Path work, Predicate<String> delete) throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(work)) {
+            files = list.filter(path -> delete.test(path.getFileName().toString())).toList();
+        }
+        for (Path file : files)
+            Files.delete(file);
+    }
+
+    /**
+     * Subset reached from a source subset by a symbol
+     */
+    private static class Reached {
+        final int[] subset;
+        final int source;
+        final int symbol;
+
+        Reached(int[] subset, int source, int symbol) {
+            this.subset = subset;
+            this.source = source;
+            this.symbol = symbol;
+        }
+    }
+
+    /**
+     * Buffered file of variable-length integers, synced to the disk when closed.
+     * A record is a subset (its size and the differences of its sorted states) followed by a number.
+     */
+    private static class Output implements Closeable {
+        private final FileOutputStream file;
+        private final DataOutputStream data;
+
+        Output(Path path, boolean append) throws IOException {
+            file = new FileOutputStream(path.toFile(), append);
+            data = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+        }
+
+        void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                data.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data.write(value);
+        }
+
+        void writeRecord(int[] subset, int value) throws IOException {
+            writeVarInt(subset.length);
+            int previous = 0;
+            for (int state : subset) {
+                writeVarInt(state - previous);
+                previous = state;
+            }
+            writeVarInt(value);
+        }
+
+        @Override
+        public void close() throws IOException {
+            data.flush();
+            file.getFD().sync();
+            data.close();
+        }
+    }
+
+    /**
+     * Reader of the files written by Output, next reads the next record into the fields
+     */
+    private static class Input implements Closeable {
+        private final DataInputStream data;
+        // Runs have the symbol after the number of the source
+        private final boolean run;
+        int[] subset;
+        int value;
+        int symbol;
+
+        Input(Path path, boolean run) throws IOException {
+            data = new DataInputStream(new BufferedInputStream(new FileInputStream(path.toFile()), 1 << 16));
+            this.run = run;
+        }
+
+        boolean hasMore() throws IOException {
+            data.mark(1);
+            boolean more = data.read() >= 0;
+            data.reset();
+            return more;
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = data.read();
+                if (b < 0)
+                    throw new EOFException();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+        }
+
+        /**
+         * @return false at the end of the file
+         */
+        boolean next() throws IOException {
+            if (!hasMore())
+                return false;
+            subset = new int[readVarInt()];
+            int previous = 0;
+            for (int i = 0; i < subset.length; i++) {
+                previous += readVarInt();
+                subset[i] = previous;
+            }
+            value = readVarInt();
+            if (run)
+                symbol = readVarInt();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            data.close();
+        }
+    }
+}
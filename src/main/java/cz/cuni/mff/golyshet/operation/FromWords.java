@@ -0,0 +1,202 @@
+package cz.cuni.mff.golyshet.operation;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.automaton.DFA;
+import cz.cuni.mff.golyshet.automaton.Transition;
+import cz.cuni.mff.golyshet.stats.Phase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Class that builds the minimal acyclic DFA accepting the words of a sorted word list.
+ * Implements SingleAutomatonOperation interface, its input format is WORDS: a text file with one word per line,
+ * the lines must be sorted by code points (e.g. by "LC_ALL=C sort") and every character is one symbol.
+ * The list must contain a non-empty word, because an automaton without symbols cannot be written.
+ * The DFA is built incrementally in one pass by the algorithm of Daciuk and Mihov:
+ * after each word, the states of the previous word that are not on the common prefix are final,
+ * so they are replaced by an equivalent state from the register, or added to the register.
+ * The memory is proportional to the minimal DFA, not to the word list.
+ */
+public class FromWords implements SingleAutomatonOperation {
+    @Override
+    public Automaton perform(List<String> paths) {
+        if (paths.size() != 1) {
+            throw new RuntimeException("From words operation requires exactly one input file.");
+        }
+        return apply(List.of(getInputFormat().read(paths.get(0))));
+    }
+
+    /**
+     * The word list is read into its minimal DFA by the input format, so the DFA is the result
+     * @param automata the minimal DFA of the word list
+     * @return the same DFA
+     */
+    @Override
+    public Automaton apply(List<Automaton> automata) {
+        if (automata.size() != 1) {
+            throw new RuntimeException("From words operation requires exactly one word list.");
+        }
+        return automata.get(0);
+    }
+
+    @Override
+    public InputFormat getInputFormat() {
+        return InputFormat.WORDS;
+    }
+
+    /**
+     * Builds the minimal DFA from the sorted words
+     * @param reader of the words, one word per line
+     * @return minimal DFA accepting the words, renamed from 0 in canonical form
+     * @throws IOException if reading fails
+     * @throws IllegalArgumentException if the words are not sorted, contain whitespace or are all empty
+     */
+    public DFA build(BufferedReader reader) throws IOException {
+        Phase phase = Phase.begin("fromWords", 0);
+        Map<Node, Node> register = new HashMap<>();
+        Node root = new Node();
+        // Nodes on the path of the previous word, path.get(i) is reached after i symbols
+        List<Node> path = new ArrayList<>(List.of(root));
+        int[] previous = new int[0];
+        int words = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            Budget.check("fromWords", register.size());
+            int[] word = line.codePoints().toArray();
+            for (int symbol : word)
+                if (Character.isWhitespace(symbol))
+                    throw new IllegalArgumentException("Word \"" + line + "\" contains whitespace");
+            int compared = Arrays.compare(previous, word);
+            if (words > 0 && compared > 0)
+                throw new IllegalArgumentException("Words are not sorted: \"" + line + "\"");
+            words++;
+            if (compared == 0 && words > 1)
+                continue;
+
+            // Length of the common prefix with the previous word
+            int prefix = 0;
+            while (prefix < previous.length && prefix < word.length && previous[prefix] == word[prefix])
+                prefix++;
+
+            // The suffix of the previous word after the common prefix will not change any more
+            replaceOrRegister(path, prefix, register);
+
+            // Add the suffix of the new word
+            Node node = path.get(prefix);
+            for (int i = prefix; i < word.length; i++) {
+                Node child = new Node();
+                node.add(word[i], child);
+                path.add(child);
+                node = child;
+            }
+            node.isFinal = true;
+            previous = word;
+        }
+        replaceOrRegister(path, 0, register);
+        // An automaton without symbols cannot be written in the format of the automaton file
+        if (root.size == 0)
+            throw new IllegalArgumentException("Word list contains no non-empty word");
+
+        DFA result = toDFA(root);
+        phase.subsets(register.size());
+        phase.end(result.getStates().size());
+        return result;
+    }
+
+    /**
+     * Replaces or registers the states on the path deeper than the prefix, from the deepest one
+     * @param path states on the path of the previous word
+     * @param prefix length of the common prefix, states up to it stay on the path
+     * @param register of the states that will not change any more
+     */
+    private void replaceOrRegister(List<Node> path, int prefix, Map<Node, Node> register) {
+        for (int i = path.size() - 1; i > prefix; i--) {
+            Node child = path.remove(i);
+            Node parent = path.get(i - 1);
+            Node equivalent = register.putIfAbsent(child, child);
+            if (equivalent != null)
+                parent.children[parent.size - 1] = equivalent;
+        }
+    }
+
+    /**
+     * Converts the registered states to a DFA, numbered by BFS in alphabet order
+     * @param root the initial state
+     * @return the DFA
+     */
+    private DFA toDFA(Node root) {
+        DFA result = new DFA();
+        Map<Node, Integer> ids = new IdentityHashMap<>();
+        Queue<Node> queue = new LinkedList<>();
+        ids.put(root, 0);
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            int id = ids.get(node);
+            result.getStates().add(id);
+            if (node.isFinal)
+                result.getFinalStates().add(id);
+            for (int i = 0; i < node.size; i++) {
+                Node child = node.children[i];
+                Integer childId = ids.get(child);
+                if (childId == null) {
+                    childId = ids.size();
+                    ids.put(child, childId);
+                    queue.add(child);
+                }
+                String symbol = Character.toString(node.symbols[i]);
+                result.getAlphabet().add(symbol);
+                result.getTransitionTable().computeIfAbsent(id, k -> new HashSet<>()).add(Transition.of(symbol, childId));
+            }
+        }
+        result.getInitialStates().add(0);
+        // Renaming visits transitions in alphabet order, so the result is in the same canonical form as after minimization
+        result.rename(0);
+        return result;
+    }
+
+    /**
+     * State of the DFA under construction.
+     * Transitions are kept sorted by symbol, because the words come sorted.
+     * Two registered states are equal if they have the same finality and the same transitions to the same states.
+     */
+    private static class Node {
+        boolean isFinal;
+        int[] symbols = new int[0];
+        Node[] children = new Node[0];
+        int size;
+
+        void add(int symbol, Node child) {
+            if (size == symbols.length) {
+                symbols = Arrays.copyOf(symbols, Math.max(2, size * 2));
+                children = Arrays.copyOf(children, Math.max(2, size * 2));
+            }
+            symbols[size] = symbol;
+            children[size++] = child;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Node node = (Node) o;
+            if (isFinal != node.isFinal || size != node.size)
+                return false;
+            for (int i = 0; i < size; i++)
+                if (symbols[i] != node.symbols[i] || children[i] != node.children[i])
+                    return false;
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = isFinal ? 1 : 0;
+            for (int i = 0; i < size; i++)
+                hash = 31 * (31 * hash + symbols[i]) + System.identityHashCode(children[i]);
+            return hash;
+        }
+    }
+}
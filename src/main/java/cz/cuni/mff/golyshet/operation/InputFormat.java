@@ -0,0 +1,44 @@
+package cz.cuni.mff.golyshet.operation;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.fileReader.Reader;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Format of the input files of an operation, every input file is read into an automaton before the operation is applied.
+ * All input formats must be in the package cz.cuni.mff.golyshet.operation
+ */
+public enum InputFormat {
+    // Automaton file read by Reader
+    AUTOMATON {
+        @Override
+        public Automaton read(String path) {
+            return new Reader().read(path);
+        }
+    },
+    // Sorted word list read into its minimal DFA by FromWords
+    WORDS {
+        @Override
+        public Automaton read(String path) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(path, StandardCharsets.UTF_8))) {
+                return new FromWords().build(reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error while reading word list " + path, e);
+            }
+        }
+    };
+
+    /**
+     * Reads the input file without exiting the program on errors
+     * @param path to the file
+     * @return the automaton
+     * @throws UncheckedIOException if the file cannot be read
+     * @throws IllegalArgumentException if the file has a wrong format
+     */
+    public abstract Automaton read(String path);
+}
@@ -4,6 +4,7 @@ import cz.cuni.mff.golyshet.automaton.Automaton;
 import cz.cuni.mff.golyshet.automaton.NFA;
 import cz.cuni.mff.golyshet.automaton.Transition;
 import cz.cuni.mff.golyshet.fileReader.Reader;
+import cz.cuni.mff.golyshet.stats.Phase;
 
 import java.util.*;
 
@@ -18,20 +19,29 @@ public class Intersection implements MultipleAutomatonOperation {
     @Override
     public Automaton perform(List<String> paths) {
         Automaton automaton1 = new Reader().read(paths.get(0));
-        automaton1 = new Determinization().determinize(automaton1);
         Automaton automaton2 = new Reader().read(paths.get(1));
-        automaton2 = new Determinization().determinize(automaton2);
+        return apply(List.of(automaton1, automaton2));
+    }
 
-        return new Minimization().minimize(new Determinization().determinize(intersection(automaton1, automaton2)));
+    @Override
+    public Automaton apply(List<Automaton> automata) {
+        Automaton automaton1 = new Determinization().determinize(automata.get(0));
+        Automaton automaton2 = new Determinization().determinize(automata.get(1));
+
+        Phase phase = Phase.begin("intersectionProduct", automaton1.getStates().size() + automaton2.getStates().size());
+        Automaton product = intersection(automaton1, automaton2, phase);
+        phase.end(product.getStates().size());
+        return new Minimization().minimize(new Determinization().determinize(product));
     }
 
     /**
      * Intersects two automata
      * @param automaton1 first automaton
      * @param automaton2 second automaton
+     * @param phase measurement of the phase, counts the interned pairs and the frontier
      * @return intersected automaton
      */
-    private Automaton intersection(Automaton automaton1, Automaton automaton2) {
+    private Automaton intersection(Automaton automaton1, Automaton automaton2, Phase phase) {
 
         // Create new initial state that is a pair of the initial states of the two automata
         Pair newInitialStates = new Pair(automaton1.getInitialStates().first(), automaton2.getInitialStates().first());
@@ -61,6 +71,8 @@ public class Intersection implements MultipleAutomatonOperation {
 
         // BFS to create the new transition table
         while (!queue.isEmpty()) {
+            phase.frontier(queue.size());
+            Budget.check("intersectionProduct", currentState);
             // Get the current state
             Pair currentSet = queue.poll();
             // For each symbol in the alphabet
@@ -98,11 +110,12 @@ public class Intersection implements MultipleAutomatonOperation {
                         }
                         // Add the transition to the transition table
                         newTransitionTable.computeIfAbsent(mappedStates.get(currentSet), k -> new HashSet<>())
-                                .add(new Transition(symbol, mappedStates.get(newState)));
+                                .add(Transition.of(symbol, mappedStates.get(newState)));
                     }
                 }
             }
         }
+        phase.subsets(mappedStates.size());
         // Create the new automaton
         Automaton result = new NFA();
         // Add the alphabet, initial state, final states, states and transition table
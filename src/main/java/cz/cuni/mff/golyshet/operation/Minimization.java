@@ -2,11 +2,13 @@ package cz.cuni.mff.golyshet.operation;
 
 import cz.cuni.mff.golyshet.automaton.Automaton;
 import cz.cuni.mff.golyshet.automaton.DFA;
+import cz.cuni.mff.golyshet.automaton.DFARegistry;
+import cz.cuni.mff.golyshet.automaton.ImmutableAutomaton;
 import cz.cuni.mff.golyshet.automaton.Transition;
 import cz.cuni.mff.golyshet.fileReader.Reader;
+import cz.cuni.mff.golyshet.stats.Phase;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Class that represents minimization operation.
@@ -15,75 +17,91 @@ import java.util.stream.Collectors;
  * Unreachable state is a state that cannot be reached from the initial state.
  * Useless state is a state that cannot reach any final state.
  * Equivalent states are states that have the same set of transitions to other states.
+ * The result is renamed to canonical form and interned in the DFARegistry.
  */
 public class Minimization implements SingleAutomatonOperation {
     @Override
     public Automaton perform(List<String> paths) {
         Automaton automaton = new Reader().read(paths.get(0));
-        return minimize(new Determinization().determinize(automaton));
+        return apply(List.of(automaton));
+    }
+
+    @Override
+    public Automaton apply(List<Automaton> automata) {
+        return minimize(new Determinization().determinize(automata.get(0)));
     }
 
     /**
+     * Minimizes the automaton and interns the result in the DFARegistry,
+     * so minimal automata accepting the same language share one immutable instance.
      * @param automaton for minimization
-     * @return map of states that can reach each state
+     * @return shared immutable minimal automaton in canonical form
      */
     protected Automaton minimize(Automaton automaton) {
-        return mergeEquivalentStates(removeUselessStates(removeUnreachableStates(automaton)));
+        Phase phase = Phase.begin("removeUnreachableStates", automaton.getStates().size());
+        ImmutableAutomaton reachable = removeUnreachableStates(automaton);
+        phase.end(reachable.getStates().size());
+
+        phase = Phase.begin("removeUselessStates", reachable.getStates().size());
+        ImmutableAutomaton useful = removeUselessStates(reachable);
+        phase.end(useful.getStates().size());
+
+        phase = Phase.begin("mergeEquivalentStates", useful.getStates().size());
+        DFA merged = mergeEquivalentStates(useful, phase);
+        phase.end(merged.getStates().size());
+        return DFARegistry.intern(ImmutableAutomaton.of(merged));
     }
 
     /**
      * Removes any state that is unreachable from the initial state
+     * Rows of the transition table of the reachable states are shared with the input automaton
      * @param automaton for removing unreachable states
      * @return automaton without unreachable states
      */
-    private Automaton removeUnreachableStates(Automaton automaton) {
-        DFA result = new DFA();
+    private ImmutableAutomaton removeUnreachableStates(Automaton automaton) {
+        ImmutableAutomaton source = ImmutableAutomaton.of(automaton);
         Queue<Integer> queue = new LinkedList<>();
-        queue.add(automaton.getInitialStates().first());
-        Set<Integer> explored = new HashSet<>();
+        queue.add(source.getInitialStates().first());
+        Set<Integer> explored = new HashSet<>(queue);
 
         // BFS from initial state
         while (!queue.isEmpty()) {
+            Budget.check("removeUnreachableStates", explored.size());
             Integer state = queue.poll();
-            explored.add(state);
 
             // Add all states reachable from current state
-            Set<Transition> transitions = automaton.getTransitionTable().getOrDefault(state, Collections.emptySet());
+            Set<Transition> transitions = source.getTransitionTable().getOrDefault(state, Collections.emptySet());
             for (Transition transition : transitions) {
-                if (!explored.contains(transition.getTo_state())) {
+                if (explored.add(transition.getTo_state())) {
                     queue.add(transition.getTo_state());
                 }
             }
         }
 
-        // Create new automaton
-        Set<String> newAlphabet = new HashSet<>(automaton.getAlphabet());
-        Set<Integer> newStates = new HashSet<>(explored);
-        // Only keep final states that are reachable
-        Set<Integer> newFinalStates = automaton.getFinalStates().stream().filter(explored::contains).collect(Collectors.toSet());
-        Set<Integer> newInitialStates = new HashSet<>(automaton.getInitialStates());
-        // Only keep transitions that are from reachable states
-        Map<Integer, Set<Transition>> newTransitionTable = automaton.getTransitionTable().entrySet().stream()
-                .filter(entry -> explored.contains(entry.getKey()))
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-
-        // Create new automaton
-        result.getAlphabet().addAll(newAlphabet);
-        result.getStates().addAll(newStates);
-        result.getFinalStates().addAll(newFinalStates);
-        result.getInitialStates().addAll(newInitialStates);
-        result.getTransitionTable().putAll(newTransitionTable);
-
-        return result;
+        // If all states are reachable, the automaton does not change
+        if (explored.size() == source.getStates().size())
+            return source;
+
+        // Only keep final states that are reachable and transitions that are from reachable states
+        SortedSet<Integer> newFinalStates = new TreeSet<>();
+        for (Integer state : source.getFinalStates())
+            if (explored.contains(state))
+                newFinalStates.add(state);
+        return source.toBuilder()
+                .type(Automaton.Type.DFA)
+                .states(new TreeSet<>(explored))
+                .finalStates(newFinalStates)
+                .retainTransitions(explored)
+                .build();
     }
 
     /**
      * Removes any state that cannot reach any final state
+     * Rows of the transition table without transitions to useless states are shared with the input automaton
      * @param automaton for removing useless states
      * @return automaton without useless states
      */
-    private Automaton removeUselessStates(Automaton automaton) {
-        DFA result = new DFA();
+    private ImmutableAutomaton removeUselessStates(ImmutableAutomaton automaton) {
         Queue<Integer> queue = new LinkedList<>(automaton.getFinalStates());
         Set<Integer> explored = new HashSet<>(automaton.getFinalStates());
 
@@ -91,6 +109,7 @@ public class Minimization implements SingleAutomatonOperation {
 
         // BFS from final states
         while (!queue.isEmpty()) {
+            Budget.check("removeUselessStates", explored.size());
             Integer state = queue.poll();
             // Get all states that lead to the current state
             Set<Integer> incomingStates = incoming.getOrDefault(state, Collections.emptySet());
@@ -103,56 +122,65 @@ public class Minimization implements SingleAutomatonOperation {
             }
         }
 
-        // Create new automaton
-        Set<String> newAlphabet = new HashSet<>(automaton.getAlphabet());
-        Set<Integer> newStates = new HashSet<>(explored);
-        Set<Integer> newFinalStates = new HashSet<>(automaton.getFinalStates());
-        // Only keep initial states that are not useless
-        Set<Integer> newInitialStates = automaton.getInitialStates().stream().filter(explored::contains).collect(Collectors.toSet());
-        // Only keep transitions that are not from or to useless states
-        Map<Integer, Set<Transition>> newTransitionTable = automaton.getTransitionTable().entrySet().stream()
-                .filter(entry -> explored.contains(entry.getKey()))
-                .map(entry -> new AbstractMap.SimpleEntry<>(entry.getKey(), entry.getValue().stream()
-                        .filter(transition -> explored.contains(transition.getTo_state()))
-                        .collect(Collectors.toSet())))
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-
         // If there are no final or initial states, the automaton accepts empty language
-        if (newFinalStates.isEmpty() || newInitialStates.isEmpty()) {
-            newFinalStates.clear();
-            newInitialStates.clear();
-            newStates.clear();
-            newTransitionTable.clear();
-
-            newStates.add(0);
-            newInitialStates.add(0);
+        if (automaton.getFinalStates().isEmpty() || automaton.getInitialStates().stream().noneMatch(explored::contains)) {
+            return ImmutableAutomaton.builder(Automaton.Type.DFA)
+                    .alphabet(automaton.getAlphabet())
+                    .states(new TreeSet<>(Set.of(0)))
+                    .initialStates(new TreeSet<>(Set.of(0)))
+                    .build();
         }
 
-        // Create new automaton
-        result.getAlphabet().addAll(newAlphabet);
-        result.getStates().addAll(newStates);
-        result.getFinalStates().addAll(newFinalStates);
-        result.getInitialStates().addAll(newInitialStates);
-        result.getTransitionTable().putAll(newTransitionTable);
-
-        return result;
+        // If all states are useful, the automaton does not change
+        if (explored.size() == automaton.getStates().size())
+            return automaton;
+
+        // Only keep initial states that are not useless and transitions that are not from or to useless states
+        SortedSet<Integer> newInitialStates = new TreeSet<>();
+        for (Integer state : automaton.getInitialStates())
+            if (explored.contains(state))
+                newInitialStates.add(state);
+        ImmutableAutomaton.Builder builder = automaton.toBuilder()
+                .type(Automaton.Type.DFA)
+                .states(new TreeSet<>(explored))
+                .initialStates(newInitialStates)
+                .retainTransitions(explored);
+        for (Map.Entry<Integer, Set<Transition>> entry : automaton.getTransitionTable().entrySet()) {
+            if (!explored.contains(entry.getKey()))
+                continue;
+            if (entry.getValue().stream().allMatch(transition -> explored.contains(transition.getTo_state())))
+                continue;
+            Set<Transition> transitions = new HashSet<>();
+            for (Transition transition : entry.getValue())
+                if (explored.contains(transition.getTo_state()))
+                    transitions.add(transition);
+            builder.transitions(entry.getKey(), transitions);
+        }
+        return builder.build();
     }
 
     /**
      * Merges equivalent states
      * @param automaton for merging equivalent states
-     * @return automaton with merged equivalent states
+     * @param phase measurement of the phase, counts the refinement rounds
+     * @return automaton with merged equivalent states in canonical form
      */
-    private Automaton mergeEquivalentStates(Automaton automaton) {
+    private DFA mergeEquivalentStates(Automaton automaton, Phase phase) {
         DFA result = new DFA();
         Set<String> newAlphabet = new HashSet<>(automaton.getAlphabet());
         Set<Integer> newFinalStates = new HashSet<>();
         Set<Integer> newInitialStates = new HashSet<>();
         Map<Integer, Set<Transition>> newTransitionTable = new HashMap<>();
 
-        automaton.rename(0);
+        // States are used as indexes of the equivalent table, so they must be numbered from 0
+        if (automaton.getStates().first() != 0 || automaton.getStates().last() != automaton.getStates().size() - 1) {
+            automaton = automaton.copy();
+            automaton.rename(0);
+        }
 
-        // Create equivalent table
+        // Create equivalent table, it needs a byte for every pair of states
+        int n = automaton.getStates().size();
+        Budget.reserve("mergeEquivalentStates", n, (long) n * n);
         boolean[][] equivalentTable = new boolean[automaton.getStates().size()][automaton.getStates().size()];
         // Initialize table to true
         Arrays.stream(equivalentTable).forEach(row -> Arrays.fill(row, true));
@@ -176,8 +204,10 @@ public class Minimization implements SingleAutomatonOperation {
         while (previousEquivalentCount != equivalentCount) {
             // Update previous equivalent count
             previousEquivalentCount = equivalentCount;
+            phase.round();
             // Iterate through the triangle of the equivalent table
             for (int i = 0; i < equivalentTable.length; i++) {
+                Budget.check("mergeEquivalentStates", n);
                 for (int j = 0; j < i; j++) {
                     // If states i and j are marked as equivalent
                     if (equivalentTable[i][j]) {
@@ -273,7 +303,7 @@ public class Minimization implements SingleAutomatonOperation {
                 newTransitionTable.putIfAbsent(equivalentMap.get(equivalentMap.get(state)), new HashSet<>());
                 // Add new transition to the new transition table
                 newTransitionTable.get(equivalentMap.get(equivalentMap.get(state))).add(
-                        new Transition(transition.getSymbol(), equivalentMap.get(transition.getTo_state())));
+                        Transition.of(transition.getSymbol(), equivalentMap.get(transition.getTo_state())));
                 // Add the state to the explored set if it is not already in it
                 if (!explored.contains(equivalentMap.get(transition.getTo_state()))) {
                     queue.add(transition.getTo_state());
@@ -298,6 +328,7 @@ public class Minimization implements SingleAutomatonOperation {
         result.getInitialStates().addAll(newInitialStates);
         result.getTransitionTable().putAll(newTransitionTable);
 
+        // Renaming visits transitions in alphabet order, so the result is in canonical form
         result.rename(0);
 
         return result;
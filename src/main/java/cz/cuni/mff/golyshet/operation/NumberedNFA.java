@@ -0,0 +1,210 @@
+package cz.cuni.mff.golyshet.operation;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.automaton.ImmutableAutomaton;
+import cz.cuni.mff.golyshet.automaton.Transition;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * NFA without epsilon transitions stored in arrays for the subset constructions which keep the subsets outside the heap
+ * or in other processes. The states are numbered from 0, the symbols are indexes to the sorted alphabet
+ * and a subset is a sorted int array of states.
+ */
+final class NumberedNFA {
+    final String[] alphabet;
+    final boolean[] accepting;
+    // Sorted symbols and the sorted targets of the transitions of every state
+    final int[][] symbols;
+    final int[][][] targets;
+    final int[] initial;
+
+    // Targets of the expanded subset collected per symbol
+    private final int[][] collected;
+    private final int[] sizes;
+
+    private NumberedNFA(String[] alphabet, boolean[] accepting, int[][] symbols, int[][][] targets, int[] initial) {
+        this.alphabet = alphabet;
+        this.accepting = accepting;
+        this.symbols = symbols;
+        this.targets = targets;
+        this.initial = initial;
+        collected = new int[alphabet.length][16];
+        sizes = new int[alphabet.length];
+    }
+
+    /**
+     * Numbers the states and the symbols of the NFA
+     * @param automaton NFA without epsilon transitions
+     */
+    NumberedNFA(ImmutableAutomaton automaton) {
+        alphabet = automaton.getAlphabet().toArray(new String[0]);
+        Map<Integer, Integer> index = new HashMap<>();
+        for (Integer state : automaton.getStates())
+            index.put(state, index.size());
+        int n = index.size();
+        accepting = new boolean[n];
+        for (Integer state : automaton.getFinalStates())
+            accepting[index.get(state)] = true;
+        symbols = new int[n][];
+        targets = new int[n][][];
+        for (Integer state : automaton.getStates()) {
+            Map<Integer, SortedSet<Integer>> row = new TreeMap<>();
+            for (Transition transition : automaton.getTransitionTable().getOrDefault(state, Collections.emptySet()))
+                row.computeIfAbsent(Arrays.binarySearch(alphabet, transition.getSymbol()), k -> new TreeSet<>())
+                        .add(index.get(transition.getTo_state()));
+            int source = index.get(state);
+            symbols[source] = row.keySet().stream().mapToInt(Integer::intValue).toArray();
+            targets[source] = row.values().stream().map(set -> set.stream().mapToInt(Integer::intValue).toArray()).toArray(int[][]::new);
+        }
+        initial = automaton.getInitialStates().stream().mapToInt(index::get).sorted().toArray();
+        collected = new int[alphabet.length][16];
+        sizes = new int[alphabet.length];
+    }
+
+    /**
+     * @return true if the subset contains a final state
+     */
+    boolean isFinal(int[] subset) {
+        for (int state : subset)
+            if (accepting[state])
+                return true;
+        return false;
+    }
+
+    /**
+     * Computes the non-empty subsets reached from the subset by every symbol, in the order of the symbols
+     * @param subset sorted states
+     * @param successor receives every symbol and the subset reached by it
+     */
+    void expand(int[] subset, Successor successor) throws IOException {
+        for (int state : subset) {
+            for (int i = 0; i < symbols[state].length; i++) {
+                int symbol = symbols[state][i];
+                for (int target : targets[state][i]) {
+                    if (sizes[symbol] == collected[symbol].length)
+                        collected[symbol] = Arrays.copyOf(collected[symbol], 2 * sizes[symbol]);
+                    collected[symbol][sizes[symbol]++] = target;
+                }
+            }
+        }
+        for (int symbol = 0; symbol < alphabet.length; symbol++) {
+            if (sizes[symbol] == 0)
+                continue;
+            int[] reached = Arrays.stream(collected[symbol], 0, sizes[symbol]).sorted().distinct().toArray();
+            sizes[symbol] = 0;
+            successor.accept(symbol, reached);
+        }
+    }
+
+    /**
+     * Builds the DFA from its transition table, the states are numbered by BFS from the initial state in alphabet order,
+     * the same way as Determinization numbers them
+     * @param table target of state s by symbol a at s*k+a, negative if there is no transition
+     * @param finals final states
+     * @param start the initial state
+     * @return DFA of the states reachable from the initial state
+     */
+    ImmutableAutomaton dfa(int[] table, boolean[] finals, int start) {
+        int k = alphabet.length;
+        int[] number = new int[finals.length];
+        Arrays.fill(number, -1);
+        int[] queue = new int[finals.length];
+        int tail = 0;
+        number[start] = tail;
+        queue[tail++] = start;
+        Map<Integer, Set<Transition>> transitions = new HashMap<>();
+        SortedSet<Integer> newFinalStates = new TreeSet<>();
+        for (int head = 0; head < tail; head++) {
+            int state = queue[head];
+            for (int symbol = 0; symbol < k; symbol++) {
+                int target = table[state * k + symbol];
+                if (target < 0)
+                    continue;
+                if (number[target] < 0) {
+                    number[target] = tail;
+                    queue[tail++] = target;
+                }
+                transitions.computeIfAbsent(number[state], s -> new HashSet<>()).add(Transition.of(alphabet[symbol], number[target]));
+            }
+            if (finals[state])
+                newFinalStates.add(number[state]);
+        }
+        SortedSet<Integer> newStates = new TreeSet<>();
+        for (int state = 0; state < tail; state++)
+            newStates.add(state);
+        ImmutableAutomaton.Builder builder = ImmutableAutomaton.builder(Automaton.Type.DFA)
+                .alphabet(new TreeSet<>(Arrays.asList(alphabet)))
+                .states(newStates)
+                .finalStates(newFinalStates)
+                .initialStates(new TreeSet<>(Set.of(0)));
+        for (Map.Entry<Integer, Set<Transition>> entry : transitions.entrySet())
+            builder.transitions(entry.getKey(), entry.getValue());
+        return builder.build();
+    }
+
+    /**
+     * Writes the NFA to the stream
+     */
+    void write(DataOutput output) throws IOException {
+        output.writeInt(alphabet.length);
+        for (String symbol : alphabet)
+            output.writeUTF(symbol);
+        output.writeInt(accepting.length);
+        for (int state = 0; state < accepting.length; state++) {
+            output.writeBoolean(accepting[state]);
+            output.writeInt(symbols[state].length);
+            for (int i = 0; i < symbols[state].length; i++) {
+                output.writeInt(symbols[state][i]);
+                writeInts(output, targets[state][i]);
+            }
+        }
+        writeInts(output, initial);
+    }
+
+    /**
+     * Reads the NFA written by write
+     */
+    static NumberedNFA read(DataInput input) throws IOException {
+        String[] alphabet = new String[input.readInt()];
+        for (int i = 0; i < alphabet.length; i++)
+            alphabet[i] = input.readUTF();
+        int n = input.readInt();
+        boolean[] accepting = new boolean[n];
+        int[][] symbols = new int[n][];
+        int[][][] targets = new int[n][][];
+        for (int state = 0; state < n; state++) {
+            accepting[state] = input.readBoolean();
+            symbols[state] = new int[input.readInt()];
+            targets[state] = new int[symbols[state].length][];
+            for (int i = 0; i < symbols[state].length; i++) {
+                symbols[state][i] = input.readInt();
+                targets[state][i] = readInts(input);
+            }
+        }
+        return new NumberedNFA(alphabet, accepting, symbols, targets, readInts(input));
+    }
+
+    static void writeInts(DataOutput output, int[] values) throws IOException {
+        output.writeInt(values.length);
+        for (int value : values)
+            output.writeInt(value);
+    }
+
+    static int[] readInts(DataInput input) throws IOException {
+        int[] values = new int[input.readInt()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = input.readInt();
+        return values;
+    }
+
+    /**
+     * Receiver of the subsets computed by expand
+     */
+    interface Successor {
+        void accept(int symbol, int[] subset) throws IOException;
+    }
+}
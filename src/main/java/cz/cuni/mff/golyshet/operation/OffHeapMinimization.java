@@ -0,0 +1,150 @@
+package cz.cuni.mff.golyshet.operation;
+
+import cz.cuni.mff.golyshet.automaton.OffHeapDFA;
+import cz.cuni.mff.golyshet.automaton.OffHeapIntArray;
+
+/**
+ * Class that minimizes a DFA stored off heap.
+ * Minimization is done by Moore's partition refinement: states are split by their block and the blocks of their successors
+ * until the number of blocks does not change. Missing transitions lead to a virtual sink state,
+ * so the states equivalent to the sink are exactly the useless states.
+ * All working arrays are off heap too, so the heap usage does not depend on the size of the DFA.
+ * The result contains only reachable and useful states, numbered by BFS from the initial state in alphabet order,
+ * which is the same canonical form as the result of Minimization.
+ */
+public class OffHeapMinimization {
+
+    /**
+     * Minimizes the DFA into direct buffers
+     * @param automaton to be minimized
+     * @return minimal DFA
+     */
+    public OffHeapDFA minimize(OffHeapDFA automaton) {
+        int n = automaton.getStates();
+        int k = automaton.getAlphabet().size();
+        int sink = n;
+
+        // Initial partition: final and non-final states, the sink is non-final
+        OffHeapIntArray block = OffHeapIntArray.allocate(n + 1L);
+        OffHeapIntArray next = OffHeapIntArray.allocate(n + 1L);
+        for (int state = 0; state < n; state++)
+            block.set(state, automaton.isFinal(state) ? 1 : 0);
+        block.set(sink, 0);
+        int blocks = -1;
+
+        // Hash table of the representatives of the new blocks
+        long capacity = Long.highestOneBit(Math.max(2L, 2L * (n + 1))) << 1;
+        OffHeapIntArray table = OffHeapIntArray.allocate(capacity);
+
+        // Refine until the number of blocks does not change
+        while (true) {
+            table.fill(-1);
+            int newBlocks = 0;
+            for (int state = 0; state <= n; state++) {
+                Budget.check("offHeapMinimization", newBlocks);
+                long slot = hash(automaton, block, state, k) & (capacity - 1);
+                while (true) {
+                    int representative = table.get(slot);
+                    if (representative < 0) {
+                        table.set(slot, state);
+                        next.set(state, newBlocks++);
+                        break;
+                    }
+                    if (sameSignature(automaton, block, state, representative, k)) {
+                        next.set(state, next.get(representative));
+                        break;
+                    }
+                    slot = (slot + 1) & (capacity - 1);
+                }
+            }
+            OffHeapIntArray swap = block;
+            block = next;
+            next = swap;
+            if (newBlocks == blocks)
+                break;
+            blocks = newBlocks;
+        }
+
+        // Representative of every block
+        OffHeapIntArray representatives = OffHeapIntArray.allocate(blocks);
+        representatives.fill(-1);
+        for (int state = n; state >= 0; state--)
+            representatives.set(block.get(state), state);
+
+        // If the initial state is equivalent to the sink, the DFA accepts empty language
+        int sinkBlock = block.get(sink);
+        int initialBlock = block.get(automaton.getInitialState());
+        if (initialBlock == sinkBlock)
+            return OffHeapDFA.allocate(automaton.getAlphabet(), 1, 0);
+
+        // BFS over the blocks in alphabet order to number the reachable blocks
+        OffHeapIntArray newId = OffHeapIntArray.allocate(blocks);
+        newId.fill(-1);
+        OffHeapIntArray queue = OffHeapIntArray.allocate(blocks);
+        int head = 0;
+        int tail = 0;
+        newId.set(initialBlock, 0);
+        queue.set(tail++, initialBlock);
+        while (head < tail) {
+            int representative = representatives.get(queue.get(head++));
+            for (int symbol = 0; symbol < k; symbol++) {
+                int target = block.get(successor(automaton, representative, symbol, sink));
+                if (target != sinkBlock && newId.get(target) < 0) {
+                    newId.set(target, tail);
+                    queue.set(tail++, target);
+                }
+            }
+        }
+
+        // Build the minimal DFA from the representatives of the reachable blocks
+        OffHeapDFA result = OffHeapDFA.allocate(automaton.getAlphabet(), tail, 0);
+        for (int state = 0; state < tail; state++) {
+            int representative = representatives.get(queue.get(state));
+            result.setFinal(state, automaton.isFinal(representative));
+            for (int symbol = 0; symbol < k; symbol++) {
+                int target = block.get(successor(automaton, representative, symbol, sink));
+                if (target != sinkBlock)
+                    result.setTransition(state, symbol, newId.get(target));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the successor of the state, missing transitions and the sink lead to the sink
+     */
+    private static int successor(OffHeapDFA automaton, int state, int symbol, int sink) {
+        if (state == sink)
+            return sink;
+        int target = automaton.getTransition(state, symbol);
+        return target < 0 ? sink : target;
+    }
+
+    /**
+     * @return hash of the block of the state and the blocks of its successors
+     */
+    private static long hash(OffHeapDFA automaton, OffHeapIntArray block, int state, int k) {
+        int sink = automaton.getStates();
+        long h = block.get(state) * 0x9E3779B97F4A7C15L;
+        for (int symbol = 0; symbol < k; symbol++) {
+            h ^= block.get(successor(automaton, state, symbol, sink));
+            h *= 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 31;
+        }
+        return h;
+    }
+
+    /**
+     * @return true if both states are in the same block and their successors are in the same blocks
+     */
+    private static boolean sameSignature(OffHeapDFA automaton, OffHeapIntArray block, int state1, int state2, int k) {
+        if (block.get(state1) != block.get(state2))
+            return false;
+        int sink = automaton.getStates();
+        for (int symbol = 0; symbol < k; symbol++) {
+            if (block.get(successor(automaton, state1, symbol, sink)) != block.get(successor(automaton, state2, symbol, sink)))
+                return false;
+        }
+        return true;
+    }
+}
@@ -2,6 +2,8 @@ package cz.cuni.mff.golyshet.operation;
 
 import cz.cuni.mff.golyshet.automaton.Automaton;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
 
 /**
@@ -19,4 +21,38 @@ public interface Operation {
      */
     public Automaton perform(List<String> paths);
 
+    /**
+     * Performs the operation on the given automata
+     * The operation never modifies the automata, so stored automata can be shared by operations run at once, e.g. in server and watch mode
+     * @param automata needed for the operation
+     * @return automaton after the operation
+     */
+    public Automaton apply(List<Automaton> automata);
+
+    /**
+     * @return the format of the input files of the operation, by default automaton files
+     */
+    public default InputFormat getInputFormat() {
+        return InputFormat.AUTOMATON;
+    }
+
+    /**
+     * Saves the result of the operation, by default the automaton in the format of the automaton file
+     * @param result automaton returned by the operation
+     * @param filename name of the file, empty name means the standard output
+     */
+    public default void save(Automaton result, String filename) {
+        result.save(filename);
+    }
+
+    /**
+     * Writes the result of the operation, by default the automaton in the format of the automaton file
+     * @param result automaton returned by the operation
+     * @param writer where the result is written
+     * @throws IOException if writing fails
+     */
+    public default void write(Automaton result, Writer writer) throws IOException {
+        result.write(writer);
+    }
+
 }
@@ -0,0 +1,32 @@
+package cz.cuni.mff.golyshet.operation;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.automaton.NFA;
+import cz.cuni.mff.golyshet.fileReader.Reader;
+
+import java.util.List;
+
+/**
+ * Class that represents the optional operation, the result accepts the accepted words and the empty word.
+ * Implements the SingleAutomatonOperation interface.
+ * The initial state becomes final, or a new final initial state with copies of the transitions of the initial state
+ * is created if the initial state has incoming transitions, so no epsilon transition is needed.
+ * The result automaton is then determinized and minimized.
+ */
+public class Option implements SingleAutomatonOperation {
+    @Override
+    public Automaton perform(List<String> paths) {
+        if (paths.size() != 1) {
+            throw new RuntimeException("Optional operation requires exactly one input file.");
+        }
+        Reader reader = new Reader();
+        return apply(List.of(reader.read(paths.get(0))));
+    }
+
+    @Override
+    public Automaton apply(List<Automaton> automata) {
+        NFA result = Repetition.prepare(automata.get(0));
+        Repetition.acceptEmpty(result);
+        return new Minimization().minimize(new Determinization().determinize(result));
+    }
+}
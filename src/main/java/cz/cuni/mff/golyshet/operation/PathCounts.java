@@ -0,0 +1,187 @@
+package cz.cuni.mff.golyshet.operation;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.automaton.Transition;
+
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * Table of the numbers of accepted paths of every length from every state of a DFA.
+ * The words of one length are ordered by the alphabet, the word with a given rank is found by walking from the initial state
+ * and skipping the words continuing by smaller symbols, so no word is generated and rejected.
+ * The rows of the table are computed when they are needed. The long rows saturate at Long.MAX_VALUE,
+ * which is exact for all ranks smaller than it, the exact BigInteger rows are computed only when a count saturates.
+ * All path tables must be in the package cz.cuni.mff.golyshet.operation
+ */
+public final class PathCounts {
+    private final String[] alphabet;
+    // Symbols are separated by spaces in the words unless all of them are single characters
+    private final boolean separated;
+    private final int states;
+    private final int initial;
+    private final boolean[] accepting;
+    // Transitions of state s are offsets[s] to offsets[s+1]-1, sorted by symbol
+    private final int[] offsets;
+    private final int[] symbols;
+    private final int[] targets;
+    private final List<long[]> rows = new ArrayList<>();
+    private final List<BigInteger[]> exactRows = new ArrayList<>();
+
+    /**
+     * @param automaton DFA with one initial state, without useless states (e.g. minimal)
+     */
+    public PathCounts(Automaton automaton) {
+        if (automaton.getType() != Automaton.Type.DFA || automaton.getInitialStates().size() != 1)
+            throw new IllegalArgumentException("Only a DFA with one initial state can be counted.");
+        alphabet = automaton.getAlphabet().toArray(new String[0]);
+        separated = Arrays.stream(alphabet).anyMatch(symbol -> symbol.codePointCount(0, symbol.length()) != 1);
+        Map<Integer, Integer> index = new HashMap<>();
+        for (Integer state : automaton.getStates())
+            index.put(state, index.size());
+        states = index.size();
+        initial = index.get(automaton.getInitialStates().first());
+        accepting = new boolean[states];
+        for (Integer state : automaton.getFinalStates())
+            accepting[index.get(state)] = true;
+
+        offsets = new int[states + 1];
+        List<int[]> edges = new ArrayList<>();
+        for (Integer state : automaton.getStates()) {
+            List<Transition> transitions = new ArrayList<>(automaton.getTransitionTable().getOrDefault(state, Collections.emptySet()));
+            transitions.sort(Comparator.comparing(Transition::getSymbol));
+            for (Transition transition : transitions)
+                edges.add(new int[]{Arrays.binarySearch(alphabet, transition.getSymbol()), index.get(transition.getTo_state())});
+            offsets[index.get(state) + 1] = edges.size();
+        }
+        symbols = edges.stream().mapToInt(edge -> edge[0]).toArray();
+        targets = edges.stream().mapToInt(edge -> edge[1]).toArray();
+    }
+
+    /**
+     * @return number of states of the DFA
+     */
+    public int getStates() {
+        return states;
+    }
+
+    /**
+     * @param length length of the words
+     * @return number of accepted words of the length, Long.MAX_VALUE if there are at least so many
+     */
+    public long count(int length) {
+        return row(length)[initial];
+    }
+
+    /**
+     * @param length length of the words
+     * @return exact number of accepted words of the length
+     */
+    public BigInteger exactCount(int length) {
+        long count = count(length);
+        return count < Long.MAX_VALUE ? BigInteger.valueOf(count) : exactRow(length)[initial];
+    }
+
+    /**
+     * Appends the accepted word of the length with the given rank in the alphabet order
+     * @param length length of the word
+     * @param rank rank of the word, smaller than count(length)
+     * @param builder to which the word is appended
+     */
+    public void appendWord(int length, long rank, StringBuilder builder) {
+        int state = initial;
+        for (int remaining = length; remaining > 0; remaining--) {
+            long[] row = row(remaining - 1);
+            for (int i = offsets[state]; ; i++) {
+                long count = row[targets[i]];
+                if (rank < count) {
+                    append(builder, symbols[i], remaining == length);
+                    state = targets[i];
+                    break;
+                }
+                rank -= count;
+            }
+        }
+    }
+
+    /**
+     * Appends the accepted word of the length with the given rank in the alphabet order
+     * @param length length of the word
+     * @param rank rank of the word, smaller than exactCount(length)
+     * @param builder to which the word is appended
+     */
+    public void appendWord(int length, BigInteger rank, StringBuilder builder) {
+        if (rank.bitLength() < Long.SIZE - 1) {
+            appendWord(length, rank.longValue(), builder);
+            return;
+        }
+        int state = initial;
+        for (int remaining = length; remaining > 0; remaining--) {
+            BigInteger[] row = exactRow(remaining - 1);
+            for (int i = offsets[state]; ; i++) {
+                BigInteger count = row[targets[i]];
+                if (rank.compareTo(count) < 0) {
+                    append(builder, symbols[i], remaining == length);
+                    state = targets[i];
+                    break;
+                }
+                rank = rank.subtract(count);
+            }
+        }
+    }
+
+    private void append(StringBuilder builder, int symbol, boolean first) {
+        if (separated && !first)
+            builder.append(' ');
+        builder.append(alphabet[symbol]);
+    }
+
+    /**
+     * @return saturated counts of the accepted words of the length from every state
+     */
+    private long[] row(int length) {
+        while (rows.size() <= length) {
+            Budget.check("pathCounts", rows.size());
+            Budget.reserve("pathCounts", states, (long) states * Long.BYTES);
+            long[] row = new long[states];
+            if (rows.isEmpty()) {
+                for (int state = 0; state < states; state++)
+                    row[state] = accepting[state] ? 1 : 0;
+            } else {
+                long[] previous = rows.get(rows.size() - 1);
+                for (int state = 0; state < states; state++) {
+                    long sum = 0;
+                    for (int i = offsets[state]; i < offsets[state + 1]; i++)
+                        sum = Math.min(Long.MAX_VALUE - previous[targets[i]], sum) + previous[targets[i]];
+                    row[state] = sum;
+                }
+            }
+            rows.add(row);
+        }
+        return rows.get(length);
+    }
+
+    /**
+     * @return exact counts of the accepted words of the length from every state
+     */
+    private BigInteger[] exactRow(int length) {
+        while (exactRows.size() <= length) {
+            Budget.check("pathCounts", exactRows.size());
+            BigInteger[] row = new BigInteger[states];
+            if (exactRows.isEmpty()) {
+                for (int state = 0; state < states; state++)
+                    row[state] = accepting[state] ? BigInteger.ONE : BigInteger.ZERO;
+            } else {
+                BigInteger[] previous = exactRows.get(exactRows.size() - 1);
+                for (int state = 0; state < states; state++) {
+                    BigInteger sum = BigInteger.ZERO;
+                    for (int i = offsets[state]; i < offsets[state + 1]; i++)
+                        sum = sum.add(previous[targets[i]]);
+                    row[state] = sum;
+                }
+            }
+            exactRows.add(row);
+        }
+        return exactRows.get(length);
+    }
+}
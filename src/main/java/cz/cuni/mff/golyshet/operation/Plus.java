@@ -0,0 +1,31 @@
+package cz.cuni.mff.golyshet.operation;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.automaton.NFA;
+import cz.cuni.mff.golyshet.fileReader.Reader;
+
+import java.util.List;
+
+/**
+ * Class that represents the plus operation, the result accepts the concatenations of one or more accepted words.
+ * Implements the SingleAutomatonOperation interface.
+ * The plus is built without epsilon transitions: every final state gets copies of the transitions of the initial state.
+ * The result automaton is then determinized and minimized.
+ */
+public class Plus implements SingleAutomatonOperation {
+    @Override
+    public Automaton perform(List<String> paths) {
+        if (paths.size() != 1) {
+            throw new RuntimeException("Plus operation requires exactly one input file.");
+        }
+        Reader reader = new Reader();
+        return apply(List.of(reader.read(paths.get(0))));
+    }
+
+    @Override
+    public Automaton apply(List<Automaton> automata) {
+        NFA result = Repetition.prepare(automata.get(0));
+        Repetition.loop(result);
+        return new Minimization().minimize(new Determinization().determinize(result));
+    }
+}
@@ -0,0 +1,79 @@
+package cz.cuni.mff.golyshet.operation;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.automaton.ImmutableAutomaton;
+import cz.cuni.mff.golyshet.automaton.NFA;
+import cz.cuni.mff.golyshet.automaton.Transition;
+
+import java.util.*;
+
+/**
+ * Epsilon-free constructions shared by the star, plus and optional operations.
+ * They work on an NFA without epsilon transitions with one initial state, so instead of epsilon transitions
+ * from the final states back to the initial state, every final state gets copies of the transitions of the initial state.
+ * The result needs no epsilon closures in the determinization.
+ */
+final class Repetition {
+    private Repetition() {
+    }
+
+    /**
+     * Creates a mutable copy without epsilon transitions and with one initial state,
+     * the initial states are joined and the epsilon transitions removed as in the determinization,
+     * so the automaton stays nondeterministic and does not grow
+     * @param automaton the automaton
+     * @return the NFA
+     */
+    static NFA prepare(Automaton automaton) {
+        Determinization determinization = new Determinization();
+        automaton = determinization.removeEpsilonTransitions(determinization.simplifyInitialStates(ImmutableAutomaton.of(automaton)));
+
+        NFA result = new NFA();
+        result.getAlphabet().addAll(automaton.getAlphabet());
+        result.getStates().addAll(automaton.getStates());
+        result.getInitialStates().addAll(automaton.getInitialStates());
+        result.getFinalStates().addAll(automaton.getFinalStates());
+        for (Map.Entry<Integer, Set<Transition>> entry : automaton.getTransitionTable().entrySet())
+            result.getTransitionTable().put(entry.getKey(), new HashSet<>(entry.getValue()));
+        return result;
+    }
+
+    /**
+     * Allows to repeat the accepted words: every final state gets copies of the transitions of the initial state,
+     * so every edge into a final state also leads to the successors of the initial state
+     * @param automaton NFA from prepare
+     */
+    static void loop(NFA automaton) {
+        int initial = automaton.getInitialStates().first();
+        Set<Transition> starts = new HashSet<>(automaton.getTransitionTable().getOrDefault(initial, Collections.emptySet()));
+        if (starts.isEmpty())
+            return;
+        for (Integer state : automaton.getFinalStates())
+            automaton.getTransitionTable().computeIfAbsent(state, k -> new HashSet<>()).addAll(starts);
+    }
+
+    /**
+     * Adds the empty word to the accepted words
+     * @param automaton NFA from prepare
+     */
+    static void acceptEmpty(NFA automaton) {
+        int initial = automaton.getInitialStates().first();
+        if (automaton.getFinalStates().contains(initial))
+            return;
+        // The initial state can be made final only if no word leads back to it
+        boolean entered = automaton.getTransitionTable().values().stream()
+                .anyMatch(transitions -> transitions.stream().anyMatch(transition -> transition.getTo_state() == initial));
+        if (!entered) {
+            automaton.getFinalStates().add(initial);
+            return;
+        }
+        // Otherwise a new final initial state gets copies of the transitions of the old one
+        int newInitialState = Collections.max(automaton.getStates()) + 1;
+        automaton.getStates().add(newInitialState);
+        automaton.getFinalStates().add(newInitialState);
+        automaton.getTransitionTable().put(newInitialState,
+                new HashSet<>(automaton.getTransitionTable().getOrDefault(initial, Collections.emptySet())));
+        automaton.getInitialStates().clear();
+        automaton.getInitialStates().add(newInitialState);
+    }
+}
@@ -0,0 +1,32 @@
+package cz.cuni.mff.golyshet.operation;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+
+import java.io.*;
+
+/**
+ * Interface for operations whose saved result is a text report about the automaton instead of the automaton itself
+ * The automaton returned by such an operation is the analyzed automaton, the report is computed from it by write,
+ * so the operation keeps no state between apply and write and one instance can be used by several threads
+ * All report operations must be in the package cz.cuni.mff.golyshet.operation
+ */
+public interface ReportOperation extends SingleAutomatonOperation {
+
+    @Override
+    public default void save(Automaton result, String filename) {
+        try {
+            Writer writer = new BufferedWriter(filename.isEmpty() ? new FileWriter(FileDescriptor.out) : new FileWriter(filename));
+            write(result, writer);
+            writer.flush();
+            // Close the writer if a filename was provided
+            if (!filename.isEmpty())
+                writer.close();
+        } catch (IOException e) {
+            System.out.println("Error while saving report to file.");
+        }
+    }
+
+    @Override
+    public void write(Automaton result, Writer writer) throws IOException;
+
+}
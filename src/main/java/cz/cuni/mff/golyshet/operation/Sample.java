@@ -0,0 +1,113 @@
+package cz.cuni.mff.golyshet.operation;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.fileReader.Reader;
+import cz.cuni.mff.golyshet.stats.Phase;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Class that samples uniformly random words of the given length accepted by the automaton.
+ * Implements ReportOperation interface, the result of the operation is the minimal DFA
+ * and the saved output are the sampled words, one per line.
+ * Every sample is a uniformly random rank among the accepted words of the length, turned into the word by the path counts,
+ * so every accepted word has the same probability and no word is rejected.
+ */
+public class Sample implements ReportOperation {
+    private final long samples;
+    private final int length;
+    private final SplittableRandom random;
+
+    /**
+     * @param samples number of the sampled words
+     * @param length length of the sampled words
+     */
+    public Sample(long samples, int length) {
+        this(samples, length, new SplittableRandom());
+    }
+
+    /**
+     * @param samples number of the sampled words
+     * @param length length of the sampled words
+     * @param random source of the randomness, a seeded one gives reproducible samples
+     */
+    public Sample(long samples, int length, SplittableRandom random) {
+        if (samples < 0 || length < 0)
+            throw new IllegalArgumentException("Number of samples and length must not be negative");
+        this.samples = samples;
+        this.length = length;
+        this.random = random;
+    }
+
+    @Override
+    public Automaton perform(List<String> paths) {
+        if (paths.size() != 1) {
+            throw new RuntimeException("Sample operation requires exactly one input file.");
+        }
+        Reader reader = new Reader();
+        return apply(List.of(reader.read(paths.get(0))));
+    }
+
+    @Override
+    public Automaton apply(List<Automaton> automata) {
+        if (automata.size() != 1) {
+            throw new RuntimeException("Sample operation requires exactly one automaton.");
+        }
+        Automaton minimal = new Minimization().apply(automata);
+        // Fail before the report is written, the counts are computed again by write
+        if (samples > 0 && new PathCounts(minimal).count(length) == 0)
+            throw new IllegalArgumentException("The automaton accepts no word of length " + length);
+        return minimal;
+    }
+
+    /**
+     * @throws IllegalArgumentException if there are samples to write and the automaton accepts no word of the length
+     */
+    @Override
+    public void write(Automaton result, Writer writer) throws IOException {
+        // The counts are computed from the result, so the operation keeps no state and can be shared by threads
+        Phase phase = Phase.begin("pathCounts", result.getStates().size());
+        PathCounts counts = new PathCounts(result);
+        phase.end(result.getStates().size());
+        if (samples > 0 && counts.count(length) == 0)
+            throw new IllegalArgumentException("The automaton accepts no word of length " + length);
+        // Every write draws from its own stream split from the source, SplittableRandom is not thread-safe
+        SplittableRandom random;
+        synchronized (this.random) {
+            random = this.random.split();
+        }
+        StringBuilder builder = new StringBuilder();
+        long count = counts.count(length);
+        // Ranks of saturated counts are drawn as BigIntegers from the exact count
+        BigInteger exact = count < Long.MAX_VALUE ? null : counts.exactCount(length);
+        for (long sample = 0; sample < samples; sample++) {
+            builder.setLength(0);
+            if (exact == null)
+                counts.appendWord(length, random.nextLong(count), builder);
+            else
+                counts.appendWord(length, randomBelow(exact, random), builder);
+            writer.write(builder.append('\n').toString());
+        }
+    }
+
+    /**
+     * @return uniformly random number from 0 to bound-1, random bits are redrawn if they are not smaller than bound
+     */
+    private BigInteger randomBelow(BigInteger bound, SplittableRandom random) {
+        int bits = bound.bitLength();
+        int chunks = (bits + 61) / 62;
+        while (true) {
+            // Exactly bits random bits, so the probability of a redraw is less than 1/2
+            BigInteger value = BigInteger.ZERO;
+            for (int i = 0; i < chunks; i++)
+                value = value.shiftLeft(62).or(BigInteger.valueOf(random.nextLong(1L << 62)));
+            value = value.shiftRight(chunks * 62 - bits);
+            if (value.compareTo(bound) < 0)
+                return value;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package cz.cuni.mff.golyshet.operation;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static cz.cuni.mff.golyshet.operation.ShardedDeterminization.*;
+
+/**
+ * Worker process of ShardedDeterminization, it serves one determinization after another.
+ * A determinization starts by a connection of the coordinator, then the worker connects to all other workers
+ * and accepts their connections. The worker numbers the subsets of its shard and keeps the transitions into them,
+ * the subsets reached from its subsets are numbered by itself or sent to their owners.
+ * The messages of the other workers are read by their own threads into one queue, so sending never waits for a reader.
+ */
+public class ShardWorker {
+    private final int port;
+    private final InetAddress address;
+    // Connections of other workers which came before the coordinator of their determinization
+    private final Map<Long, List<Peer>> waiting = new HashMap<>();
+
+    /**
+     * @param port the port to listen on, 0 chooses a free port
+     * @param address the address to listen on, the loopback to run all workers on one machine
+     */
+    public ShardWorker(int port, InetAddress address) {
+        this.port = port;
+        this.address = address;
+    }
+
+    /**
+     * Serves determinizations until the program is terminated
+     */
+    public void run() {
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, address)) {
+            System.out.println("Worker listening on port " + serverSocket.getLocalPort());
+            while (true) {
+                Peer connection = new Peer(serverSocket.accept());
+                int kind;
+                long job;
+                try {
+                    kind = connection.input.readInt();
+                    job = connection.input.readLong();
+                } catch (IOException e) {
+                    connection.close();
+                    continue;
+                }
+                if (kind == PEER) {
+                    waiting.computeIfAbsent(job, j -> new ArrayList<>()).add(connection);
+                    continue;
+                }
+                try (Shard shard = new Shard(job, connection, serverSocket)) {
+                    shard.run();
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("Error in determinization " + job + ": " + e.getMessage());
+                } finally {
+                    connection.close();
+                }
+                // Connections of other determinizations are stale now
+                for (List<Peer> peers : waiting.values())
+                    for (Peer peer : peers)
+                        peer.close();
+                waiting.clear();
+            }
+        } catch (IOException e) {
+            System.out.println("Error while listening on port " + port);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Connection with buffered streams
+     */
+    private static class Peer implements Closeable {
+        final Socket socket;
+        final DataInputStream input;
+        final DataOutputStream output;
+
+        Peer(Socket socket) throws IOException {
+            this.socket = socket;
+            input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        @Override
+        public void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // The socket is closed anyway
+            }
+        }
+    }
+
+    /**
+     * Subset received from another worker, or the end of a level or of a connection
+     */
+    private static class Message {
+        static final Message END = new Message(-1, -1, null);
+        static final Message CLOSED = new Message(-1, -1, null);
+
+        final int source;
+        final int symbol;
+        final int[] subset;
+
+        Message(int source, int symbol, int[] subset) {
+            this.source = source;
+            this.symbol = symbol;
+            this.subset = subset;
+        }
+    }
+
+    /**
+     * Sorted subset as a key of the hash map
+     */
+    private static final class Key {
+        final int[] states;
+        final int hash;
+
+        Key(int[] states) {
+            this.states = states;
+            this.hash = Arrays.hashCode(states);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            return Arrays.equals(states, ((Key) o).states);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * One determinization served by the worker
+     */
+    private class Shard implements Closeable {
+        private final Peer coordinator;
+        private final int shard;
+        private final int shards;
+        private final NumberedNFA nfa;
+        private final Peer[] outgoing;
+        private final List<Peer> incoming;
+        private final BlockingQueue<Message> inbox = new LinkedBlockingQueue<>();
+
+        // Numbers of the subsets of the shard, the transitions into them and the final ones
+        private final Map<Key, Integer> numbers = new HashMap<>();
+        private int[] edges = new int[48];
+        private int edgeCount = 0;
+        private final List<Integer> finals = new ArrayList<>();
+        private List<int[]> next = new ArrayList<>();
+        private List<Integer> nextNumbers = new ArrayList<>();
+
+        Shard(long job, Peer coordinator, ServerSocket serverSocket) throws IOException {
+            this.coordinator = coordinator;
+            shard = coordinator.input.readInt();
+            shards = coordinator.input.readInt();
+            String[] hosts = new String[shards];
+            int[] ports = new int[shards];
+            for (int i = 0; i < shards; i++) {
+                hosts[i] = coordinator.input.readUTF();
+                ports[i] = coordinator.input.readInt();
+            }
+            nfa = NumberedNFA.read(coordinator.input);
+
+            // Connect to the other workers and accept their connections
+            outgoing = new Peer[shards];
+            incoming = waiting.getOrDefault(job, new ArrayList<>());
+            waiting.remove(job);
+            for (int i = 0; i < shards; i++) {
+                if (i == shard)
+                    continue;
+                outgoing[i] = new Peer(new Socket(hosts[i], ports[i]));
+                outgoing[i].output.writeInt(PEER);
+                outgoing[i].output.writeLong(job);
+                outgoing[i].output.flush();
+            }
+            while (incoming.size() < shards - 1) {
+                Peer connection = new Peer(serverSocket.accept());
+                int kind = connection.input.readInt();
+                long other = connection.input.readLong();
+                if (kind == PEER && other == job)
+                    incoming.add(connection);
+                else
+                    connection.close();
+            }
+            for (Peer peer : incoming) {
+                Thread reader = new Thread(() -> receive(peer));
+                reader.setDaemon(true);
+                reader.start();
+            }
+        }
+
+        /**
+         * Reads the messages of another worker into the inbox until the connection is closed
+         */
+        private void receive(Peer peer) {
+            try {
+                while (true) {
+                    int kind = peer.input.readInt();
+                    if (kind == END) {
+                        inbox.add(Message.END);
+                    } else {
+                        int source = peer.input.readInt();
+                        int symbol = peer.input.readInt();
+                        inbox.add(new Message(source, symbol, NumberedNFA.readInts(peer.input)));
+                    }
+                }
+            } catch (IOException e) {
+                inbox.add(Message.CLOSED);
+            }
+        }
+
+        /**
+         * Serves the commands of the coordinator
+         */
+        void run() throws IOException {
+            if (owner(nfa.initial, shards) == shard)
+                reach(-1, -1, nfa.initial);
+            while (coordinator.input.readInt() == NEXT) {
+                List<int[]> frontier = next;
+                List<Integer> frontierNumbers = nextNumbers;
+                next = new ArrayList<>();
+                nextNumbers = new ArrayList<>();
+                for (int i = 0; i < frontier.size(); i++) {
+                    int source = frontierNumbers.get(i);
+                    nfa.expand(frontier.get(i), (symbol, subset) -> {
+                        int owner = owner(subset, shards);
+                        if (owner == shard) {
+                            reach(source, symbol, subset);
+                        } else {
+                            DataOutputStream output = outgoing[owner].output;
+                            output.writeInt(REACH);
+                            output.writeInt(source);
+                            output.writeInt(symbol);
+                            NumberedNFA.writeInts(output, subset);
+                        }
+                    });
+                    // Do not let the received subsets pile up
+                    for (Message message = inbox.peek(); message != null && message.subset != null; message = inbox.peek())
+                        reach(inbox.poll());
+                }
+                for (Peer peer : outgoing) {
+                    if (peer == null)
+                        continue;
+                    peer.output.writeInt(END);
+                    peer.output.flush();
+                }
+                // The level ends when every other worker has ended it
+                for (int ended = 0; ended < shards - 1; ) {
+                    Message message;
+                    try {
+                        message = inbox.take();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException("Interrupted while waiting for the other workers.");
+                    }
+                    if (message == Message.CLOSED)
+                        throw new IOException("Another worker closed its connection.");
+                    if (message == Message.END)
+                        ended++;
+                    else
+                        reach(message);
+                }
+                coordinator.output.writeInt(next.size());
+                coordinator.output.flush();
+            }
+
+            // Send the number of the subsets, the transitions into them and the final ones
+            coordinator.output.writeInt(numbers.size());
+            coordinator.output.writeInt(edgeCount / 3);
+            for (int i = 0; i < edgeCount; i++)
+                coordinator.output.writeInt(edges[i]);
+            NumberedNFA.writeInts(coordinator.output, finals.stream().mapToInt(Integer::intValue).toArray());
+            coordinator.output.flush();
+        }
+
+        private void reach(Message message) {
+            reach(message.source, message.symbol, message.subset);
+        }
+
+        /**
+         * Numbers the subset if it is new and keeps the transition into it
+         */
+        private void reach(int source, int symbol, int[] subset) {
+            Key key = new Key(subset);
+            Integer number = numbers.get(key);
+            if (number == null) {
+                number = numbers.size() * shards + shard;
+                numbers.put(key, number);
+                next.add(subset);
+                nextNumbers.add(number);
+                if (nfa.isFinal(subset))
+                    finals.add(number);
+            }
+            if (source < 0)
+                return;
+            if (edgeCount + 3 > edges.length)
+                edges = Arrays.copyOf(edges, 2 * edges.length);
+            edges[edgeCount++] = source;
+            edges[edgeCount++] = symbol;
+            edges[edgeCount++] = number;
+        }
+
+        @Override
+        public void close() {
+            coordinator.close();
+            for (Peer peer : outgoing)
+                if (peer != null)
+                    peer.close();
+            for (Peer peer : incoming)
+                peer.close();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package cz.cuni.mff.golyshet.operation;
+
+import cz.cuni.mff.golyshet.automaton.ImmutableAutomaton;
+import cz.cuni.mff.golyshet.stats.Phase;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Class that does the subset construction of an NFA without epsilon transitions in several worker processes (ShardWorker).
+ * The subsets are partitioned by their hash, every worker owns one shard: it numbers its subsets and expands them.
+ * This class is the coordinator: it sends the NFA to the workers and then starts the levels of the BFS one by one.
+ * In a level every worker expands its new subsets and sends each reached subset to its owner, which numbers it
+ * if it is new; a level ends when every worker received the end of the level from all other workers.
+ * When a level finds no new subsets, the workers send their transitions and final states and the coordinator builds the DFA.
+ * The workers serve one determinization at a time, so all determinizations using them must run in one coordinating process.
+ * The distributed mode is optional, it is enabled for all operations by --workers host:port,...
+ */
+public class ShardedDeterminization {
+    // Kinds of connections and commands of the protocol
+    static final int COORDINATOR = 1;
+    static final int PEER = 2;
+    static final int NEXT = 3;
+    static final int FINISH = 4;
+    static final int REACH = 5;
+    static final int END = 6;
+
+    private static volatile List<InetSocketAddress> shardWorkers = null;
+    // A worker serves one determinization at a time, so the determinizations of this process take turns
+    private static final Object turn = new Object();
+
+    private final List<InetSocketAddress> workers;
+
+    /**
+     * Enables the distributed mode in the determinization of all operations
+     * @param workers addresses of the running workers
+     */
+    public static void enable(List<InetSocketAddress> workers) {
+        shardWorkers = List.copyOf(workers);
+    }
+
+    /**
+     * @return true if the distributed mode is enabled
+     */
+    public static boolean isEnabled() {
+        return shardWorkers != null;
+    }
+
+    /**
+     * Creates the coordinator of the workers given to enable
+     */
+    public ShardedDeterminization() {
+        this(shardWorkers);
+    }
+
+    /**
+     * @param workers addresses of the running workers
+     */
+    public ShardedDeterminization(List<InetSocketAddress> workers) {
+        if (workers.isEmpty())
+            throw new IllegalArgumentException("At least one worker is required.");
+        this.workers = workers;
+    }
+
+    /**
+     * @param subset sorted states
+     * @param shards number of the shards
+     * @return the shard owning the subset
+     */
+    static int owner(int[] subset, int shards) {
+        return Math.floorMod(Arrays.hashCode(subset) * 0x9E3779B9, shards);
+    }
+
+    /**
+     * Determinizes the NFA by the workers
+     * @param automaton NFA without epsilon transitions
+     * @param phase measurement of the phase, counts the levels and the subsets
+     * @return DFA numbered by BFS in alphabet order, the same as from Determinization
+     */
+    public ImmutableAutomaton determinize(ImmutableAutomaton automaton, Phase phase) {
+        synchronized (turn) {
+            return coordinate(new NumberedNFA(automaton), phase);
+        }
+    }
+
+    private ImmutableAutomaton coordinate(NumberedNFA nfa, Phase phase) {
+        int shards = workers.size();
+        long job = ThreadLocalRandom.current().nextLong();
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            DataInputStream[] inputs = new DataInputStream[shards];
+            DataOutputStream[] outputs = new DataOutputStream[shards];
+            for (int shard = 0; shard < shards; shard++) {
+                Socket socket = new Socket(workers.get(shard).getAddress(), workers.get(shard).getPort());
+                sockets.add(socket);
+                inputs[shard] = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                outputs[shard] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                // Every worker gets its shard, the addresses of the other workers and the NFA
+                DataOutputStream output = outputs[shard];
+                output.writeInt(COORDINATOR);
+                output.writeLong(job);
+                output.writeInt(shard);
+                output.writeInt(shards);
+                for (InetSocketAddress worker : workers) {
+                    output.writeUTF(worker.getHostString());
+                    output.writeInt(worker.getPort());
+                }
+                nfa.write(output);
+                output.flush();
+            }
+
+            // The owner of the initial subset numbers it before the first level
+            int states = 1;
+            int frontier = 1;
+            while (frontier > 0) {
+                phase.round();
+                phase.frontier(frontier);
+                Budget.check("shardedSubsetConstruction", states);
+                for (DataOutputStream output : outputs) {
+                    output.writeInt(NEXT);
+                    output.flush();
+                }
+                frontier = 0;
+                for (DataInputStream input : inputs)
+                    frontier += input.readInt();
+                states += frontier;
+            }
+            phase.subsets(states);
+
+            // A subset numbered i by its shard s is the state i*shards+s
+            for (DataOutputStream output : outputs) {
+                output.writeInt(FINISH);
+                output.flush();
+            }
+            int size = 0;
+            for (DataInputStream input : inputs)
+                size = Math.max(size, input.readInt() * shards);
+            int k = nfa.alphabet.length;
+            Budget.reserve("shardedSubsetConstruction", states, (long) size * k * Integer.BYTES);
+            int[] table = new int[size * k];
+            Arrays.fill(table, -1);
+            boolean[] finals = new boolean[size];
+            for (DataInputStream input : inputs) {
+                for (int edges = input.readInt(); edges > 0; edges--)
+                    table[input.readInt() * k + input.readInt()] = input.readInt();
+                for (int state : NumberedNFA.readInts(input))
+                    finals[state] = true;
+            }
+            return nfa.dfa(table, finals, owner(nfa.initial, shards));
+        } catch (IOException e) {
+            throw new RuntimeException("Error in the communication with the workers.", e);
+        } finally {
+            for (Socket socket : sockets) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // The socket is closed anyway
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package cz.cuni.mff.golyshet.operation;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.fileReader.Reader;
+import cz.cuni.mff.golyshet.stats.Phase;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Class that lists the k shortest words accepted by the automaton.
+ * Implements ReportOperation interface, the result of the operation is the minimal DFA
+ * and the saved output are the words, one per line, ordered by length and then by the alphabet.
+ * The words of every length are generated by their ranks from the path counts of the minimal DFA.
+ * If the automaton accepts fewer than k words, all of them are listed.
+ */
+public class Shortest implements ReportOperation {
+    private final long words;
+
+    /**
+     * @param words number of the listed words
+     */
+    public Shortest(long words) {
+        if (words < 0)
+            throw new IllegalArgumentException("Number of words must not be negative");
+        this.words = words;
+    }
+
+    @Override
+    public Automaton perform(List<String> paths) {
+        if (paths.size() != 1) {
+            throw new RuntimeException("Shortest operation requires exactly one input file.");
+        }
+        Reader reader = new Reader();
+        return apply(List.of(reader.read(paths.get(0))));
+    }
+
+    @Override
+    public Automaton apply(List<Automaton> automata) {
+        if (automata.size() != 1) {
+            throw new RuntimeException("Shortest operation requires exactly one automaton.");
+        }
+        return new Minimization().apply(automata);
+    }
+
+    @Override
+    public void write(Automaton result, Writer writer) throws IOException {
+        // The counts are computed from the result, so the operation keeps no state and can be shared by threads
+        Phase phase = Phase.begin("pathCounts", result.getStates().size());
+        PathCounts counts = new PathCounts(result);
+        phase.end(result.getStates().size());
+        int n = counts.getStates();
+        StringBuilder builder = new StringBuilder();
+        long written = 0;
+        // Lengths without words since the last word; after n of them beyond length 2n the language is finite,
+        // because every cycle of the minimal DFA would give a word in each n consecutive lengths
+        int empty = 0;
+        for (int length = 0; written < words && !(empty >= n && length >= 2 * n); length++) {
+            long count = counts.count(length);
+            empty = count == 0 ? empty + 1 : 0;
+            for (long rank = 0; rank < count && written < words; rank++, written++) {
+                builder.setLength(0);
+                counts.appendWord(length, rank, builder);
+                writer.write(builder.append('\n').toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package cz.cuni.mff.golyshet.operation;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.automaton.ImmutableAutomaton;
+import cz.cuni.mff.golyshet.automaton.Transition;
+
+import java.util.*;
+
+/**
+ * Class that reduces an NFA without epsilon transitions by simulation preorders before the subset construction.
+ * A state q forward-simulates p if q is final whenever p is final and every transition of p on a symbol
+ * is matched by a transition of q on the same symbol to a state simulating the target of p.
+ * The backward simulation is the same on the reversed automaton, where also the initial states have to be matched.
+ * For each direction the states simulating each other are merged (quotient) and the transitions to (from) a state
+ * strictly simulated by another target (source) of a transition on the same symbol are pruned.
+ * Finally the unreachable and useless states are removed. The reduction does not change the language.
+ * The reduction is optional, it is enabled for all operations by --reduce.
+ */
+public class SimulationReduction {
+    private static volatile boolean enabled = false;
+
+    /**
+     * Enables the reduction in the determinization of all operations
+     */
+    public static void enable() {
+        enabled = true;
+    }
+
+    /**
+     * @return true if the reduction is enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Reduces the NFA
+     * @param automaton NFA without epsilon transitions
+     * @return NFA with the same language and at most the same number of states and transitions
+     */
+    public ImmutableAutomaton reduce(ImmutableAutomaton automaton) {
+        // Number the states and the symbols
+        int[] states = automaton.getStates().stream().mapToInt(Integer::intValue).toArray();
+        int n = states.length;
+        Map<Integer, Integer> index = new HashMap<>();
+        for (int state : states)
+            index.put(state, index.size());
+        List<String> alphabet = new ArrayList<>(automaton.getAlphabet());
+        int k = alphabet.size();
+        Budget.reserve("simulationReduction", n, 2L * n * ((n + 63) / 64) * Long.BYTES);
+
+        boolean[] initial = new boolean[n];
+        boolean[] accepting = new boolean[n];
+        for (Integer state : automaton.getInitialStates())
+            initial[index.get(state)] = true;
+        for (Integer state : automaton.getFinalStates())
+            accepting[index.get(state)] = true;
+
+        // Sets of transitions as [source, symbol, target]
+        Set<List<Integer>> transitions = new HashSet<>();
+        for (Map.Entry<Integer, Set<Transition>> entry : automaton.getTransitionTable().entrySet())
+            for (Transition transition : entry.getValue())
+                transitions.add(List.of(index.get(entry.getKey()), Collections.binarySearch(alphabet, transition.getSymbol()),
+                        index.get(transition.getTo_state())));
+
+        // Forward: final states must be matched by final states
+        int[] label = new int[n];
+        for (int p = 0; p < n; p++)
+            label[p] = accepting[p] ? 1 : 0;
+        long[][] forward = simulation(n, k, edges(n, k, transitions, false), label);
+        int[] representative = quotient(n, forward);
+        transitions = merge(transitions, representative, initial, accepting);
+        transitions = prune(n, k, transitions, forward, false);
+
+        // Backward: initial and final states must be matched by initial and final states
+        for (int p = 0; p < n; p++)
+            label[p] = (accepting[p] ? 1 : 0) | (initial[p] ? 2 : 0);
+        long[][] backward = simulation(n, k, edges(n, k, transitions, true), label);
+        representative = quotient(n, backward);
+        transitions = merge(transitions, representative, initial, accepting);
+        transitions = prune(n, k, transitions, backward, true);
+
+        return trim(automaton, states, transitions, initial, accepting, alphabet);
+    }
+
+    /**
+     * @param reversed whether the transitions are reversed
+     * @return successors of every state on every symbol
+     */
+    private int[][][] edges(int n, int k, Set<List<Integer>> transitions, boolean reversed) {
+        List<List<List<Integer>>> lists = new ArrayList<>();
+        for (int p = 0; p < n; p++) {
+            List<List<Integer>> row = new ArrayList<>();
+            for (int a = 0; a < k; a++)
+                row.add(new ArrayList<>());
+            lists.add(row);
+        }
+        for (List<Integer> transition : transitions) {
+            int from = reversed ? transition.get(2) : transition.get(0);
+            int to = reversed ? transition.get(0) : transition.get(2);
+            lists.get(from).get(transition.get(1)).add(to);
+        }
+        int[][][] result = new int[n][k][];
+        for (int p = 0; p < n; p++)
+            for (int a = 0; a < k; a++)
+                result[p][a] = lists.get(p).get(a).stream().mapToInt(Integer::intValue).toArray();
+        return result;
+    }
+
+    /**
+     * Computes the largest simulation as the greatest fixpoint, starting from the pairs with compatible labels
+     * @param edges successors of every state on every symbol
+     * @param label bits which a simulating state must have too
+     * @return bit rows, bit q of row p is set if q simulates p
+     */
+    private long[][] simulation(int n, int k, int[][][] edges, int[] label) {
+        long[][] relation = new long[n][(n + 63) / 64];
+        for (int p = 0; p < n; p++)
+            for (int q = 0; q < n; q++)
+                if ((label[p] & ~label[q]) == 0)
+                    relation[p][q >>> 6] |= 1L << q;
+
+        // Remove the pairs whose transitions are not matched until nothing changes
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int p = 0; p < n; p++) {
+                Budget.check("simulationReduction", n);
+                for (int q = 0; q < n; q++) {
+                    if (q == p || (relation[p][q >>> 6] & (1L << q)) == 0)
+                        continue;
+                    if (!matches(k, edges, relation, p, q)) {
+                        relation[p][q >>> 6] &= ~(1L << q);
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return relation;
+    }
+
+    /**
+     * @return true if every transition of p is matched by a transition of q to a state simulating its target
+     */
+    private boolean matches(int k, int[][][] edges, long[][] relation, int p, int q) {
+        for (int a = 0; a < k; a++) {
+            for (int target : edges[p][a]) {
+                boolean matched = false;
+                for (int candidate : edges[q][a]) {
+                    if ((relation[target][candidate >>> 6] & (1L << candidate)) != 0) {
+                        matched = true;
+                        break;
+                    }
+                }
+                if (!matched)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the smallest state simulating each other with every state
+     */
+    private int[] quotient(int n, long[][] relation) {
+        int[] representative = new int[n];
+        for (int p = 0; p < n; p++) {
+            representative[p] = p;
+            for (int q = 0; q < p; q++) {
+                if ((relation[p][q >>> 6] & (1L << q)) != 0 && (relation[q][p >>> 6] & (1L << p)) != 0) {
+                    representative[p] = representative[q];
+                    break;
+                }
+            }
+        }
+        return representative;
+    }
+
+    /**
+     * Redirects the transitions to the representatives, a representative is initial if a merged state is initial
+     * @return the transitions of the quotient
+     */
+    private Set<List<Integer>> merge(Set<List<Integer>> transitions, int[] representative, boolean[] initial, boolean[] accepting) {
+        for (int p = 0; p < representative.length; p++) {
+            if (representative[p] != p) {
+                initial[representative[p]] |= initial[p];
+                initial[p] = false;
+                accepting[p] = false;
+            }
+        }
+        Set<List<Integer>> result = new HashSet<>();
+        for (List<Integer> transition : transitions)
+            result.add(List.of(representative[transition.get(0)], transition.get(1), representative[transition.get(2)]));
+        return result;
+    }
+
+    /**
+     * Removes a transition if another transition from the same source (backward: to the same target)
+     * on the same symbol leads to a state strictly simulating its target (backward: source)
+     * @return the pruned transitions
+     */
+    private Set<List<Integer>> prune(int n, int k, Set<List<Integer>> transitions, long[][] relation, boolean reversed) {
+        int[][][] edges = edges(n, k, transitions, reversed);
+        Set<List<Integer>> result = new HashSet<>();
+        for (List<Integer> transition : transitions) {
+            int from = reversed ? transition.get(2) : transition.get(0);
+            int to = reversed ? transition.get(0) : transition.get(2);
+            boolean dominated = false;
+            for (int other : edges[from][transition.get(1)]) {
+                // Different representatives never simulate each other both ways, so the simulation is strict
+                if (other != to && (relation[to][other >>> 6] & (1L << other)) != 0) {
+                    dominated = true;
+                    break;
+                }
+            }
+            if (!dominated)
+                result.add(transition);
+        }
+        return result;
+    }
+
+    /**
+     * Removes the states which are not reachable from an initial state or from which no final state is reachable
+     * @return the reduced automaton with the original names of the states
+     */
+    private ImmutableAutomaton trim(ImmutableAutomaton automaton, int[] states, Set<List<Integer>> transitions,
+                                   boolean[] initial, boolean[] accepting, List<String> alphabet) {
+        int n = states.length;
+        List<List<Integer>> successors = new ArrayList<>();
+        List<List<Integer>> predecessors = new ArrayList<>();
+        for (int p = 0; p < n; p++) {
+            successors.add(new ArrayList<>());
+            predecessors.add(new ArrayList<>());
+        }
+        for (List<Integer> transition : transitions) {
+            successors.get(transition.get(0)).add(transition.get(2));
+            predecessors.get(transition.get(2)).add(transition.get(0));
+        }
+        boolean[] reachable = reach(n, initial, successors);
+        boolean[] useful = reach(n, accepting, predecessors);
+
+        SortedSet<Integer> newStates = new TreeSet<>();
+        SortedSet<Integer> newInitialStates = new TreeSet<>();
+        SortedSet<Integer> newFinalStates = new TreeSet<>();
+        for (int p = 0; p < n; p++) {
+            // Initial states are kept, so the automaton is never left without one
+            if (!initial[p] && !(reachable[p] && useful[p]))
+                continue;
+            newStates.add(states[p]);
+            if (initial[p])
+                newInitialStates.add(states[p]);
+            if (accepting[p])
+                newFinalStates.add(states[p]);
+        }
+        Map<Integer, Set<Transition>> table = new HashMap<>();
+        for (List<Integer> transition : transitions) {
+            int from = transition.get(0);
+            int to = transition.get(2);
+            if (reachable[from] && useful[from] && reachable[to] && useful[to])
+                table.computeIfAbsent(states[from], key -> new HashSet<>())
+                        .add(Transition.of(alphabet.get(transition.get(1)), states[to]));
+        }
+
+        ImmutableAutomaton.Builder builder = ImmutableAutomaton.builder(Automaton.Type.NFA)
+                .alphabet(automaton.getAlphabet())
+                .states(newStates)
+                .finalStates(newFinalStates)
+                .initialStates(newInitialStates);
+        for (Map.Entry<Integer, Set<Transition>> entry : table.entrySet())
+            builder.transitions(entry.getKey(), entry.getValue());
+        return builder.build();
+    }
+
+    /**
+     * @return the states reachable from the start states by the edges
+     */
+    private boolean[] reach(int n, boolean[] start, List<List<Integer>> edges) {
+        boolean[] result = new boolean[n];
+        Deque<Integer> stack = new ArrayDeque<>();
+        for (int p = 0; p < n; p++) {
+            if (start[p]) {
+                result[p] = true;
+                stack.push(p);
+            }
+        }
+        while (!stack.isEmpty())
+            for (int next : edges.get(stack.pop()))
+                if (!result[next]) {
+                    result[next] = true;
+                    stack.push(next);
+                }
+        return result;
+    }
+}
@@ -0,0 +1,100 @@
+package cz.cuni.mff.golyshet.operation;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.automaton.CharSet;
+import cz.cuni.mff.golyshet.automaton.SymbolicAutomaton;
+import cz.cuni.mff.golyshet.automaton.SymbolicTransition;
+import cz.cuni.mff.golyshet.stats.Phase;
+
+import java.util.*;
+
+/**
+ * Class that determinizes a symbolic automaton.
+ * Determinization is done by the subset construction over epsilon closures, but instead of iterating over the symbols,
+ * the guards of the transitions of a subset are split into minterms: the maximal sets of code points
+ * that lead to the same set of states. The minterms are found by sweeping over the bounds of the ranges of the guards,
+ * so the work per subset depends on the number of ranges and not on the size of the alphabet.
+ */
+public class SymbolicDeterminization {
+
+    /**
+     * Determinizes the automaton
+     * @param automaton to be determinized
+     * @return symbolic DFA, the states are numbered by BFS from the initial state 0
+     */
+    public SymbolicAutomaton determinize(SymbolicAutomaton automaton) {
+        Phase phase = Phase.begin("symbolicSubsetConstruction", automaton.getStates().size());
+        SymbolicAutomaton result = new SymbolicAutomaton(Automaton.Type.DFA);
+        result.addToAlphabet(automaton.getAlphabet());
+
+        Map<Set<Integer>, Integer> mappedStates = new HashMap<>();
+        Queue<Set<Integer>> queue = new LinkedList<>();
+        Set<Integer> initial = automaton.closure(automaton.getInitialStates());
+        mappedStates.put(initial, 0);
+        queue.add(initial);
+        result.getInitialStates().add(0);
+
+        // BFS over the subsets of states
+        while (!queue.isEmpty()) {
+            phase.frontier(queue.size());
+            Budget.check("symbolicSubsetConstruction", mappedStates.size());
+            Set<Integer> currentStates = queue.poll();
+            int current = mappedStates.get(currentStates);
+            result.getStates().add(current);
+            if (currentStates.stream().anyMatch(automaton.getFinalStates()::contains))
+                result.getFinalStates().add(current);
+
+            for (Map.Entry<Set<Integer>, CharSet> minterm : minterms(automaton, currentStates).entrySet()) {
+                Set<Integer> target = automaton.closure(minterm.getKey());
+                Integer id = mappedStates.get(target);
+                if (id == null) {
+                    id = mappedStates.size();
+                    mappedStates.put(target, id);
+                    queue.add(target);
+                }
+                // Minterms whose closures are the same subset are joined
+                result.addTransition(current, minterm.getValue(), id);
+            }
+        }
+        phase.subsets(mappedStates.size());
+        phase.end(result.getStates().size());
+        return result;
+    }
+
+    /**
+     * Splits the guards of the transitions of the subset into minterms
+     * @param automaton the automaton
+     * @param states the subset of states
+     * @return map of the target sets to the code points leading to them
+     */
+    private Map<Set<Integer>, CharSet> minterms(SymbolicAutomaton automaton, Set<Integer> states) {
+        // Every range of a guard is an event of activating the target at its start and deactivating it after its end
+        List<int[]> events = new ArrayList<>();
+        for (Integer state : states) {
+            for (SymbolicTransition transition : automaton.getTransitionTable().getOrDefault(state, Collections.emptyList())) {
+                if (transition.isEpsilon())
+                    continue;
+                CharSet guard = transition.getGuard();
+                for (int i = 0; i < guard.rangeCount(); i++) {
+                    events.add(new int[]{guard.from(i), transition.getTo_state(), 1});
+                    events.add(new int[]{guard.to(i) + 1, transition.getTo_state(), -1});
+                }
+            }
+        }
+        events.sort(Comparator.comparingInt(event -> event[0]));
+
+        // Sweep the events, between two consecutive bounds the set of active targets is constant
+        Map<Set<Integer>, CharSet> result = new HashMap<>();
+        Map<Integer, Integer> active = new HashMap<>();
+        for (int i = 0; i < events.size(); ) {
+            int position = events.get(i)[0];
+            for (; i < events.size() && events.get(i)[0] == position; i++)
+                active.merge(events.get(i)[1], events.get(i)[2], (a, b) -> a + b == 0 ? null : a + b);
+            if (active.isEmpty() || i == events.size())
+                continue;
+            CharSet interval = CharSet.range(position, events.get(i)[0] - 1);
+            result.merge(new TreeSet<>(active.keySet()), interval, CharSet::union);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,138 @@
+package cz.cuni.mff.golyshet.operation;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.automaton.CharSet;
+import cz.cuni.mff.golyshet.automaton.SymbolicAutomaton;
+import cz.cuni.mff.golyshet.automaton.SymbolicTransition;
+import cz.cuni.mff.golyshet.stats.Phase;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Class that minimizes a symbolic DFA.
+ * First the unreachable and useless states are removed, then the states are merged by Moore's partition refinement,
+ * where the signature of a state is its block and, for every block of its successors, the union of the guards leading there.
+ * The result is numbered by BFS from the initial state with the transitions ordered by their smallest code points,
+ * which is the same canonical form as the result of Minimization when the guards are expanded.
+ */
+public class SymbolicMinimization {
+
+    /**
+     * Minimizes the DFA
+     * @param automaton symbolic DFA with one initial state
+     * @return minimal symbolic DFA
+     */
+    public SymbolicAutomaton minimize(SymbolicAutomaton automaton) {
+        if (automaton.getType() != Automaton.Type.DFA || automaton.getInitialStates().size() != 1)
+            throw new IllegalArgumentException("Only a DFA with one initial state can be minimized.");
+        Phase phase = Phase.begin("symbolicMinimization", automaton.getStates().size());
+        int initial = automaton.getInitialStates().first();
+
+        // Keep the states which are reachable and from which a final state is reachable
+        Set<Integer> reachable = reach(Set.of(initial), state -> automaton.getTransitionTable().getOrDefault(state, Collections.emptyList())
+                .stream().map(SymbolicTransition::getTo_state).toList());
+        Map<Integer, List<Integer>> reverse = new HashMap<>();
+        for (Integer state : reachable)
+            for (SymbolicTransition transition : automaton.getTransitionTable().getOrDefault(state, Collections.emptyList()))
+                reverse.computeIfAbsent(transition.getTo_state(), k -> new ArrayList<>()).add(state);
+        Set<Integer> finals = new HashSet<>(automaton.getFinalStates());
+        finals.retainAll(reachable);
+        Set<Integer> useful = reach(finals, state -> reverse.getOrDefault(state, Collections.emptyList()));
+
+        // Number the kept states and their transitions to useful states, the initial state is always kept
+        Set<Integer> kept = new HashSet<>(useful);
+        kept.add(initial);
+        int[] states = kept.stream().mapToInt(Integer::intValue).sorted().toArray();
+        Map<Integer, Integer> index = new HashMap<>();
+        for (int state : states)
+            index.put(state, index.size());
+        int n = states.length;
+        int[][] targets = new int[n][];
+        CharSet[][] guards = new CharSet[n][];
+        for (int i = 0; i < n; i++) {
+            List<SymbolicTransition> transitions = automaton.getTransitionTable().getOrDefault(states[i], Collections.emptyList())
+                    .stream().filter(transition -> useful.contains(transition.getTo_state())).toList();
+            targets[i] = transitions.stream().mapToInt(transition -> index.get(transition.getTo_state())).toArray();
+            guards[i] = transitions.stream().map(SymbolicTransition::getGuard).toArray(CharSet[]::new);
+        }
+
+        // Refine the partition into final and non-final states until the number of blocks does not change
+        int[] block = new int[n];
+        for (int i = 0; i < n; i++)
+            block[i] = automaton.getFinalStates().contains(states[i]) ? 1 : 0;
+        int blocks = -1;
+        while (true) {
+            phase.round();
+            Map<List<Object>, Integer> signatures = new HashMap<>();
+            int[] next = new int[n];
+            for (int i = 0; i < n; i++) {
+                Budget.check("symbolicMinimization", signatures.size());
+                next[i] = signatures.computeIfAbsent(List.of(block[i], successors(block, targets[i], guards[i])), k -> signatures.size());
+            }
+            block = next;
+            if (signatures.size() == blocks)
+                break;
+            blocks = signatures.size();
+        }
+
+        // Build the result by BFS from the block of the initial state
+        SymbolicAutomaton result = new SymbolicAutomaton(Automaton.Type.DFA);
+        result.addToAlphabet(automaton.getAlphabet());
+        int[] representative = new int[blocks];
+        for (int i = n - 1; i >= 0; i--)
+            representative[block[i]] = i;
+        Map<Integer, Integer> mappedBlocks = new HashMap<>();
+        Queue<Integer> queue = new LinkedList<>();
+        int start = block[index.get(initial)];
+        mappedBlocks.put(start, 0);
+        queue.add(start);
+        result.getInitialStates().add(0);
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            int id = mappedBlocks.get(current);
+            int state = representative[current];
+            result.getStates().add(id);
+            if (automaton.getFinalStates().contains(states[state]))
+                result.getFinalStates().add(id);
+
+            // Transitions ordered by their guards, which are disjoint, so by their smallest code points
+            List<Map.Entry<Integer, CharSet>> transitions = new ArrayList<>(successors(block, targets[state], guards[state]).entrySet());
+            transitions.sort(Map.Entry.comparingByValue());
+            for (Map.Entry<Integer, CharSet> transition : transitions) {
+                Integer target = mappedBlocks.get(transition.getKey());
+                if (target == null) {
+                    target = mappedBlocks.size();
+                    mappedBlocks.put(transition.getKey(), target);
+                    queue.add(transition.getKey());
+                }
+                result.addTransition(id, transition.getValue(), target);
+            }
+        }
+        phase.end(result.getStates().size());
+        return result;
+    }
+
+    /**
+     * @return map of the blocks of the successors to the union of the guards leading to them
+     */
+    private Map<Integer, CharSet> successors(int[] block, int[] targets, CharSet[] guards) {
+        Map<Integer, CharSet> result = new HashMap<>();
+        for (int i = 0; i < targets.length; i++)
+            result.merge(block[targets[i]], guards[i], CharSet::union);
+        return result;
+    }
+
+    /**
+     * @return the states reachable from the start states by the given edges
+     */
+    private Set<Integer> reach(Set<Integer> start, Function<Integer, List<Integer>> edges) {
+        Set<Integer> result = new HashSet<>(start);
+        Deque<Integer> stack = new ArrayDeque<>(start);
+        while (!stack.isEmpty())
+            for (Integer next : edges.apply(stack.pop()))
+                if (result.add(next))
+                    stack.push(next);
+        return result;
+    }
+}
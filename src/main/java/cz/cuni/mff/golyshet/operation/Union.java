@@ -22,7 +22,12 @@ public class Union implements MultipleAutomatonOperation {
     public Automaton perform(List<String> paths) {
         Automaton automaton1 = new Reader().read(paths.get(0));
         Automaton automaton2 = new Reader().read(paths.get(1));
-        return new Minimization().minimize(new Determinization().determinize(union(automaton1, automaton2)));
+        return apply(List.of(automaton1, automaton2));
+    }
+
+    @Override
+    public Automaton apply(List<Automaton> automata) {
+        return new Minimization().minimize(new Determinization().determinize(union(automata.get(0), automata.get(1))));
     }
 
     /**
@@ -32,7 +37,8 @@ public class Union implements MultipleAutomatonOperation {
      * @return the result of the union operation
      */
     private Automaton union(Automaton automaton1, Automaton automaton2) {
-        // Rename the states of the second automaton
+        // Rename the states of a copy of the second automaton, the input may be immutable or shared
+        automaton2 = automaton2.copy();
         automaton2.rename(Collections.max(automaton1.getStates()) + 1);
         NFA result = new NFA();
         // Add the alphabet, final states, states and transitions of both automata to the result
@@ -49,12 +55,12 @@ public class Union implements MultipleAutomatonOperation {
 
         for (Integer initial: automaton1.getInitialStates()) {
             result.getTransitionTable().computeIfAbsent(newInitialState, k -> new HashSet<>())
-                    .add(new Transition("*", initial));
+                    .add(Transition.of("*", initial));
         }
 
         for (Integer initial: automaton2.getInitialStates()) {
             result.getTransitionTable().computeIfAbsent(newInitialState, k -> new HashSet<>())
-                    .add(new Transition("*", initial));
+                    .add(Transition.of("*", initial));
         }
 
         // Check if the initial state is a final state
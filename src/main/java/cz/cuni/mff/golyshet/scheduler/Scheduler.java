@@ -0,0 +1,125 @@
+package cz.cuni.mff.golyshet.scheduler;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.operation.Budget;
+import cz.cuni.mff.golyshet.operation.Operation;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A class that runs the operations in parallel on a bounded thread pool.
+ * Operations are independent unless one of them writes a file that another one reads or writes,
+ * in that case the later operation (in command-line order) waits for the earlier one.
+ * Results saved to files are written by the worker threads as soon as they are ready,
+ * results printed to the standard output are printed in command-line order.
+ * Every operation runs with the budget, if one of them fails the others are cancelled.
+ * All schedulers must be in the package cz.cuni.mff.golyshet.scheduler
+ */
+public class Scheduler {
+    private final int threads;
+    private final Budget budget;
+
+    /**
+     * Creates a new scheduler
+     * @param threads maximal number of operations running at the same time
+     * @param budget the budget of every operation, when one operation fails the others are cancelled by its token
+     */
+    public Scheduler(int threads, Budget budget) {
+        this.threads = Math.max(1, threads);
+        this.budget = budget;
+    }
+
+    /**
+     * Runs all the operations and saves their results
+     * @param operations map of operations and their arguments in command-line order
+     * @param outputs map of operations and their output files, empty file name means the standard output
+     */
+    public void run(Map<Operation, List<String>> operations, Map<Operation, String> outputs) {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, operations.size())));
+        // The first failure is reported, the other operations are then cancelled
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try {
+            List<Operation> order = new ArrayList<>(operations.keySet());
+            Map<Operation, CompletableFuture<Automaton>> futures = new HashMap<>();
+
+            for (int i = 0; i < order.size(); i++) {
+                Operation operation = order.get(i);
+                List<String> paths = operations.get(operation);
+                String filename = outputs.getOrDefault(operation, "");
+
+                // Collect the earlier operations this operation depends on
+                List<CompletableFuture<Automaton>> dependencies = new ArrayList<>();
+                for (int j = 0; j < i; j++) {
+                    Operation earlier = order.get(j);
+                    if (dependsOn(paths, filename, operations.get(earlier), outputs.getOrDefault(earlier, "")))
+                        dependencies.add(futures.get(earlier));
+                }
+
+                // Run the operation when all its dependencies are finished, save it directly if it goes to a file
+                CompletableFuture<Automaton> future = CompletableFuture
+                        .allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+                        .thenApplyAsync(ignored -> budget.run(() -> {
+                            Automaton automaton = operation.perform(paths);
+                            if (!filename.isEmpty())
+                                operation.save(automaton, filename);
+                            return automaton;
+                        }), pool)
+                        .whenComplete((automaton, e) -> {
+                            if (e != null && failure.compareAndSet(null, e instanceof CompletionException ? e.getCause() : e))
+                                budget.getToken().cancel();
+                        });
+                futures.put(operation, future);
+            }
+
+            // Print the results to the standard output in command-line order
+            for (Operation operation : order) {
+                Automaton automaton = futures.get(operation).join();
+                if (outputs.getOrDefault(operation, "").isEmpty())
+                    operation.save(automaton, "");
+            }
+        } catch (CompletionException e) {
+            Throwable cause = failure.get() != null ? failure.get() : e.getCause() == null ? e : e.getCause();
+            System.out.println("Error while performing operation: " + cause.getMessage());
+            System.exit(1);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Checks whether the later operation must wait for the earlier one
+     * @param paths input files of the later operation
+     * @param filename output file of the later operation
+     * @param earlierPaths input files of the earlier operation
+     * @param earlierFilename output file of the earlier operation
+     * @return true if the operations share a file that at least one of them writes
+     */
+    private boolean dependsOn(List<String> paths, String filename, List<String> earlierPaths, String earlierFilename) {
+        if (!earlierFilename.isEmpty()) {
+            for (String path : paths)
+                if (samePath(path, earlierFilename))
+                    return true;
+            if (!filename.isEmpty() && samePath(filename, earlierFilename))
+                return true;
+        }
+        if (!filename.isEmpty()) {
+            for (String path : earlierPaths)
+                if (samePath(path, filename))
+                    return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if both paths denote the same file
+     */
+    private boolean samePath(String path1, String path2) {
+        return Path.of(path1).toAbsolutePath().normalize().equals(Path.of(path2).toAbsolutePath().normalize());
+    }
+}
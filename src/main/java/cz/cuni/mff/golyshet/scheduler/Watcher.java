@@ -0,0 +1,217 @@
+package cz.cuni.mff.golyshet.scheduler;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.operation.Budget;
+import cz.cuni.mff.golyshet.operation.CancellationToken;
+import cz.cuni.mff.golyshet.operation.InputFormat;
+import cz.cuni.mff.golyshet.operation.Operation;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A class that performs the operations and then keeps their results up to date while the input files are edited.
+ * The parsed input files and the results of all operations are kept in memory. An operation reads its input
+ * from the result of the last earlier operation writing the same file, otherwise from the parsed file.
+ * When input files change, only the operations reading them, directly or through the results of other
+ * operations, are performed again in command-line order and their results are saved again.
+ * The files written by the operations are not watched, the results in memory are used instead.
+ * Status lines and the errors of updates go to the standard error, the standard output carries only the results.
+ * All schedulers must be in the package cz.cuni.mff.golyshet.scheduler
+ */
+public class Watcher {
+    // Time to wait for more events after a change, editors often write a file in several steps
+    private static final long SETTLE_MILLIS = 100;
+
+    private final List<Operation> order;
+    private final Map<Operation, List<String>> operations;
+    private final Map<Operation, String> outputs;
+    private final Budget budget;
+
+    // Input files parsed in their formats and the results of the operations
+    private final Map<InputFormat, Map<Path, Automaton>> inputs = new EnumMap<>(InputFormat.class);
+    private final Map<Operation, Automaton> results = new HashMap<>();
+    // Earlier operation whose result is read instead of the file, for every operation and its paths
+    private final Map<Operation, List<Operation>> sources = new HashMap<>();
+    // Input files read from disk and their formats, the ones which are not written by any operation are watched
+    private final Map<Path, Set<InputFormat>> files = new HashMap<>();
+    private final Set<Path> watched = new HashSet<>();
+
+    /**
+     * Creates a new watcher
+     * @param operations map of operations and their arguments in command-line order
+     * @param outputs map of operations and their output files, empty file name means the standard output
+     * @param budget the budget of every operation, every run of an operation gets its own token
+     */
+    public Watcher(Map<Operation, List<String>> operations, Map<Operation, String> outputs, Budget budget) {
+        this.order = new ArrayList<>(operations.keySet());
+        this.operations = operations;
+        this.outputs = outputs;
+        this.budget = budget;
+
+        // Find the source of every path, the written files are taken from memory
+        Set<Path> written = new HashSet<>();
+        for (Operation operation : order)
+            if (!outputs.getOrDefault(operation, "").isEmpty())
+                written.add(normalize(outputs.get(operation)));
+        for (int i = 0; i < order.size(); i++) {
+            List<Operation> operationSources = new ArrayList<>();
+            for (String path : operations.get(order.get(i))) {
+                Operation source = null;
+                for (int j = 0; j < i; j++) {
+                    String filename = outputs.getOrDefault(order.get(j), "");
+                    if (!filename.isEmpty() && normalize(path).equals(normalize(filename)))
+                        source = order.get(j);
+                }
+                operationSources.add(source);
+                if (source == null)
+                    files.computeIfAbsent(normalize(path), k -> EnumSet.noneOf(InputFormat.class))
+                            .add(order.get(i).getInputFormat());
+                if (source == null && !written.contains(normalize(path)))
+                    watched.add(normalize(path));
+            }
+            sources.put(order.get(i), operationSources);
+        }
+    }
+
+    /**
+     * Performs all operations, then watches the input files and updates the results until the program is terminated
+     */
+    public void run() {
+        // The first run reads all files and performs all operations
+        for (Path path : files.keySet())
+            if (!read(path))
+                System.exit(1);
+        if (!update(new HashSet<>(order)))
+            System.exit(1);
+
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            Set<Path> directories = new HashSet<>();
+            for (Path path : watched)
+                directories.add(path.getParent());
+            for (Path directory : directories)
+                directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            System.err.println("Watching " + watched.size() + " files");
+
+            while (true) {
+                // Collect the changed files until the events settle
+                Set<Path> changed = new HashSet<>();
+                WatchKey key = service.take();
+                while (key != null) {
+                    Path directory = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            changed.addAll(watched);
+                            continue;
+                        }
+                        Path path = directory.resolve((Path) event.context());
+                        if (watched.contains(path))
+                            changed.add(path);
+                    }
+                    key.reset();
+                    key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                if (!changed.isEmpty())
+                    changed(changed);
+            }
+        } catch (IOException e) {
+            System.out.println("Error while watching files: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reads the changed files and performs again the operations depending on them
+     * @param changed the changed input files
+     */
+    private void changed(Set<Path> changed) {
+        long start = System.nanoTime();
+        // A file which cannot be read keeps its previous automaton, it is probably being written
+        Set<Path> updated = new HashSet<>();
+        for (Path path : changed)
+            if (read(path))
+                updated.add(path);
+
+        // Operations reading an updated file or the result of an affected operation, in command-line order
+        Set<Operation> affected = new HashSet<>();
+        for (Operation operation : order) {
+            List<String> paths = operations.get(operation);
+            List<Operation> operationSources = sources.get(operation);
+            for (int i = 0; i < paths.size(); i++) {
+                Operation source = operationSources.get(i);
+                if (source == null ? updated.contains(normalize(paths.get(i))) : affected.contains(source))
+                    affected.add(operation);
+            }
+        }
+        if (affected.isEmpty())
+            return;
+        if (update(affected))
+            System.err.println("Updated " + affected.size() + " of " + order.size() + " operations in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    /**
+     * Performs the operations in command-line order and saves their results
+     * @param affected the operations to perform
+     * @return true if all of them succeeded, the failed ones and the ones depending on them keep their previous results
+     */
+    private boolean update(Set<Operation> affected) {
+        Set<Operation> failed = new HashSet<>();
+        for (Operation operation : order) {
+            if (!affected.contains(operation))
+                continue;
+            List<String> paths = operations.get(operation);
+            List<Operation> operationSources = sources.get(operation);
+            if (operationSources.stream().anyMatch(failed::contains)) {
+                failed.add(operation);
+                continue;
+            }
+            try {
+                Automaton result = budget.withToken(new CancellationToken()).run(() -> perform(operation, paths, operationSources));
+                results.put(operation, result);
+                operation.save(result, outputs.getOrDefault(operation, ""));
+            } catch (RuntimeException e) {
+                System.err.println("Error while performing operation: " + e.getMessage());
+                failed.add(operation);
+            }
+        }
+        return failed.isEmpty();
+    }
+
+    /**
+     * Performs the operation on the automata in memory, operations do not modify their inputs
+     */
+    private Automaton perform(Operation operation, List<String> paths, List<Operation> operationSources) {
+        List<Automaton> automata = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i++) {
+            Operation source = operationSources.get(i);
+            automata.add(source != null ? results.get(source)
+                    : inputs.get(operation.getInputFormat()).get(normalize(paths.get(i))));
+        }
+        return operation.apply(automata);
+    }
+
+    /**
+     * Parses the input file in the formats of the operations reading it, without exiting the program on errors
+     * @return true if the file was parsed
+     */
+    private boolean read(Path path) {
+        for (InputFormat format : files.get(path)) {
+            try {
+                inputs.computeIfAbsent(format, k -> new HashMap<>()).put(path, format.read(path.toString()));
+            } catch (RuntimeException e) {
+                System.err.println("Error while reading file " + path + ": " + e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Path normalize(String path) {
+        return Path.of(path).toAbsolutePath().normalize();
+    }
+}
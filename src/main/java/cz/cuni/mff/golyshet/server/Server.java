@@ -0,0 +1,363 @@
+package cz.cuni.mff.golyshet.server;
+
+import cz.cuni.mff.golyshet.automaton.Automaton;
+import cz.cuni.mff.golyshet.fileReader.Reader;
+import cz.cuni.mff.golyshet.input_parser.CommandLineParser;
+import cz.cuni.mff.golyshet.operation.Budget;
+import cz.cuni.mff.golyshet.operation.CancellationToken;
+import cz.cuni.mff.golyshet.operation.InputFormat;
+import cz.cuni.mff.golyshet.operation.Operation;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Long-running server that performs operations requested over a local TCP socket.
+ * The server keeps loaded automata in a named in-memory store shared by all clients,
+ * so the automata are parsed only once and the JVM stays warm between requests.
+ * Every client is served by its own thread.
+ * The protocol is line based, every request is one line and every response ends with a line "OK" or "ERROR message":
+ * <pre>
+ * LOAD name path           reads the automaton file into the store
+ * PUT name                 reads the automaton from the following lines up to a line "END" into the store
+ * GET name                 prints the stored automaton
+ * DROP name                removes the automaton from the store
+ * LIST                     prints the names of the stored automata
+ * --operation [parameter] input... [--into name] [--out file]
+ *                          performs the operation as on the command line, input is a path or "@name" of a stored automaton,
+ *                          the result is stored by --into, saved by --out, or printed otherwise,
+ *                          the budget is limited by --max-states n, --max-heap megabytes and --deadline seconds
+ * CANCEL                   cancels the running request and the requests sent before it, it has no response of its own
+ * QUIT                     closes the connection
+ * </pre>
+ * The requests of a client are read by a separate thread, so CANCEL is noticed while a request runs.
+ * When a client disconnects, its running request is cancelled too.
+ * All servers must be in the package cz.cuni.mff.golyshet.server
+ */
+public class Server {
+    private final int port;
+    private final Map<String, Automaton> store = new ConcurrentHashMap<>();
+    // Cancels all running operations when the server stops
+    private final CancellationToken shutdown = new CancellationToken();
+    private volatile ServerSocket serverSocket;
+
+    /**
+     * Creates a new server
+     * @param port the port on the loopback interface to listen on, 0 chooses a free port
+     */
+    public Server(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Listens for clients until the server is stopped or the program is terminated
+     */
+    public void run() {
+        ExecutorService clients = Executors.newCachedThreadPool();
+        // Running operations are cancelled when the program is terminated
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop));
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            this.serverSocket = serverSocket;
+            System.out.println("Listening on port " + serverSocket.getLocalPort());
+            while (!shutdown.isCancelled()) {
+                Socket socket = serverSocket.accept();
+                clients.execute(() -> serve(socket));
+            }
+        } catch (IOException e) {
+            // Closing the socket by stop ends the loop
+            if (!shutdown.isCancelled()) {
+                System.out.println("Error while listening on port " + port);
+                System.exit(1);
+            }
+        } finally {
+            shutdown.cancel();
+            clients.shutdown();
+        }
+    }
+
+    /**
+     * Stops listening and cancels all running operations, run then returns
+     */
+    public void stop() {
+        shutdown.cancel();
+        ServerSocket socket = serverSocket;
+        if (socket == null)
+            return;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // The socket is closed anyway
+        }
+    }
+
+    /**
+     * Serves one client until it sends QUIT or closes the connection
+     * @param socket connection to the client
+     */
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            Connection connection = new Connection(in);
+            String line;
+            while ((line = connection.next()) != null) {
+                line = line.strip();
+                if (line.isEmpty())
+                    continue;
+                if (line.equals("QUIT"))
+                    break;
+                try {
+                    handle(line.split("\\s+"), connection, out);
+                    out.write("OK\n");
+                } catch (IOException | RuntimeException e) {
+                    out.write("ERROR " + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()) + "\n");
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The client closed the connection, nothing to do
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Handles one request
+     * @param request the words of the request line
+     * @param connection lines of the client, used by PUT and for the cancellation of operations
+     * @param out writer of the response
+     * @throws IOException if reading an automaton fails
+     * @throws InterruptedException if the thread is interrupted while waiting for the body of PUT
+     */
+    private void handle(String[] request, Connection connection, Writer out) throws IOException, InterruptedException {
+        switch (request[0]) {
+            case "LOAD" -> {
+                expectArguments(request, 3);
+                store.put(request[1], readFile(request[2]));
+            }
+            case "PUT" -> {
+                // The body is read up to END first, so a wrong request or automaton does not desync the protocol
+                String body = readBody(connection);
+                expectArguments(request, 2);
+                store.put(request[1], new Reader().parse(new BufferedReader(new StringReader(body))));
+            }
+            case "GET" -> {
+                expectArguments(request, 2);
+                stored(request[1]).write(out);
+            }
+            case "DROP" -> {
+                expectArguments(request, 2);
+                if (store.remove(request[1]) == null)
+                    throw new IllegalArgumentException("Unknown automaton " + request[1]);
+            }
+            case "LIST" -> {
+                for (String name : new TreeSet<>(store.keySet()))
+                    out.write(name + "\n");
+            }
+            default -> perform(request, connection, out);
+        }
+    }
+
+    /**
+     * Performs an operation given in the command-line syntax
+     * @param request the words of the request line
+     * @param connection lines of the client, a CANCEL among them cancels the operation
+     * @param out writer of the response
+     * @throws IOException if writing the result fails
+     */
+    private void perform(String[] request, Connection connection, Writer out) throws IOException {
+        // Parameters of the operation precede its inputs
+        int parameters = CommandLineParser.parameterCount(request[0]);
+        if (request.length <= parameters)
+            throw new IllegalArgumentException("Missing value for " + request[0]);
+        Operation operation = CommandLineParser.operationFor(request[0], List.of(request).subList(1, 1 + parameters));
+        if (operation == null)
+            throw new IllegalArgumentException("Unknown operation " + request[0]);
+        int count = CommandLineParser.pathCount(operation);
+        if (request.length <= parameters + count)
+            throw new IllegalArgumentException("Error path for " + request[0].substring(2));
+
+        // The inputs are read in the input format of the operation, stored automata are already read
+        InputFormat format = operation.getInputFormat();
+        List<String> inputs = List.of(request).subList(parameters + 1, parameters + count + 1);
+        for (String input : inputs)
+            if (input.startsWith("@") && format != InputFormat.AUTOMATON)
+                throw new IllegalArgumentException("Input of " + request[0] + " must be a path");
+
+        // Parse the options after the inputs
+        String into = null;
+        String filename = null;
+        int maxStates = 0;
+        long maxHeap = 0;
+        long deadline = 0;
+        for (int i = parameters + count + 1; i < request.length; i += 2) {
+            if (i + 1 >= request.length)
+                throw new IllegalArgumentException("Missing value for " + request[i]);
+            switch (request[i]) {
+                case "--into" -> into = request[i + 1];
+                case "--out" -> filename = request[i + 1];
+                case "--max-states" -> maxStates = Integer.parseInt(request[i + 1]);
+                case "--max-heap" -> maxHeap = Long.parseLong(request[i + 1]) << 20;
+                case "--deadline" -> deadline = Long.parseLong(request[i + 1]) * 1000;
+                default -> throw new IllegalArgumentException("Unknown option " + request[i]);
+            }
+        }
+
+        Budget budget = new Budget(maxStates, maxHeap, deadline, connection.begin(shutdown));
+        Automaton result;
+        try {
+            result = budget.run(() -> {
+                // Operations do not modify their inputs, so stored automata are shared
+                List<Automaton> automata = new ArrayList<>();
+                for (String input : inputs)
+                    automata.add(input.startsWith("@") ? stored(input.substring(1)) : format.read(input));
+                return operation.apply(automata);
+            });
+        } finally {
+            connection.end();
+        }
+        if (into != null)
+            store.put(into, result);
+        if (filename != null)
+            operation.save(result, filename);
+        if (into == null && filename == null)
+            operation.write(result, out);
+    }
+
+    /**
+     * @param name of the automaton in the store
+     * @return the stored automaton
+     */
+    private Automaton stored(String name) {
+        Automaton automaton = store.get(name);
+        if (automaton == null)
+            throw new IllegalArgumentException("Unknown automaton " + name);
+        return automaton;
+    }
+
+    /**
+     * Reads the lines of a request body
+     * @param connection lines of the client
+     * @return the lines up to a line "END" or the end of the input, without the line "END"
+     * @throws InterruptedException if the thread is interrupted while waiting for a line
+     */
+    private String readBody(Connection connection) throws InterruptedException {
+        StringBuilder body = new StringBuilder();
+        String line;
+        while ((line = connection.next()) != null && !line.strip().equals("END"))
+            body.append(line).append('\n');
+        return body.toString();
+    }
+
+    /**
+     * Reads the automaton file without exiting the server on errors
+     * @param path to the file
+     * @return the automaton
+     * @throws IOException if the file cannot be read
+     */
+    private Automaton readFile(String path) throws IOException {
+        try (BufferedReader br = new BufferedReader(new FileReader(path))) {
+            return new Reader().parse(br);
+        }
+    }
+
+    /**
+     * Checks the number of words of the request
+     */
+    private void expectArguments(String[] request, int count) {
+        if (request.length != count)
+            throw new IllegalArgumentException("Wrong number of arguments for " + request[0]);
+    }
+
+    /**
+     * Lines of one client read by a separate thread, so CANCEL and the end of the connection are noticed
+     * while a request runs. CANCEL lines are not passed on, they cancel the requests read before them.
+     */
+    private static final class Connection {
+        // Lines for the client thread, empty at the end of the connection
+        private final BlockingQueue<Optional<String>> lines = new LinkedBlockingQueue<>();
+        // Number of lines read by the reader thread and taken by the client thread
+        private long read = 0;
+        private long taken = 0;
+        // Lines up to this number are cancelled
+        private volatile long cancelledLines = 0;
+        // Token of the running request, null if no request runs
+        private volatile CancellationToken running;
+
+        Connection(BufferedReader in) {
+            Thread reader = new Thread(() -> receive(in), "client-reader");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private void receive(BufferedReader in) {
+            try {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.strip().equals("CANCEL")) {
+                        cancel(read);
+                        continue;
+                    }
+                    read++;
+                    lines.add(Optional.of(line));
+                }
+            } catch (IOException e) {
+                // The connection was closed
+            }
+            // Nobody waits for the results of a client which disconnected
+            cancel(Long.MAX_VALUE);
+            lines.add(Optional.empty());
+        }
+
+        /**
+         * Cancels the running request and the requests of the lines up to the given number
+         */
+        private void cancel(long count) {
+            cancelledLines = count;
+            CancellationToken token = running;
+            if (token != null)
+                token.cancel();
+        }
+
+        /**
+         * @return the next line, null at the end of the connection
+         * @throws InterruptedException if the thread is interrupted while waiting
+         */
+        String next() throws InterruptedException {
+            Optional<String> line = lines.take();
+            if (line.isEmpty())
+                return null;
+            taken++;
+            return line.get();
+        }
+
+        /**
+         * Creates the token of the request of the last taken line, it is cancelled at once if a CANCEL followed the line
+         * @param parent the token of the server
+         * @return the token of the request
+         */
+        CancellationToken begin(CancellationToken parent) {
+            CancellationToken token = new CancellationToken(parent);
+            running = token;
+            if (taken <= cancelledLines)
+                token.cancel();
+            return token;
+        }
+
+        /**
+         * Marks the end of the running request
+         */
+        void end() {
+            running = null;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package cz.cuni.mff.golyshet.stats;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measurement of one phase of an operation.
+ * A phase is started by begin and finished by end, in between the phase can count interned subsets,
+ * the peak size of the BFS frontier and the rounds of refinement.
+ * When the phase ends it commits a JFR event and adds itself to the Statistics if they are enabled.
+ * All statistics must be in the package cz.cuni.mff.golyshet.stats
+ */
+public class Phase {
+    private final String name;
+    private final int statesIn;
+    private final PhaseEvent event;
+    private final long beginNanos;
+    private final long beginAllocated;
+    private int subsets;
+    private int frontierPeak;
+    private int rounds;
+
+    private Phase(String name, int statesIn) {
+        this.name = name;
+        this.statesIn = statesIn;
+        this.event = new PhaseEvent();
+        this.beginAllocated = allocatedBytes();
+        this.beginNanos = System.nanoTime();
+        event.begin();
+    }
+
+    /**
+     * Starts a new phase
+     * @param name of the phase
+     * @param statesIn number of states of the input automaton
+     * @return the started phase
+     */
+    public static Phase begin(String name, int statesIn) {
+        return new Phase(name, statesIn);
+    }
+
+    /**
+     * Sets the number of subsets interned by the phase
+     * @param subsets number of interned subsets
+     */
+    public void subsets(int subsets) {
+        this.subsets = subsets;
+    }
+
+    /**
+     * Updates the peak size of the BFS frontier
+     * @param size current size of the frontier
+     */
+    public void frontier(int size) {
+        if (size > frontierPeak)
+            frontierPeak = size;
+    }
+
+    /**
+     * Counts one round of refinement
+     */
+    public void round() {
+        rounds++;
+    }
+
+    /**
+     * Finishes the phase
+     * @param statesOut number of states of the output automaton
+     */
+    public void end(int statesOut) {
+        event.end();
+        long nanos = System.nanoTime() - beginNanos;
+        long allocated = allocatedBytes() - beginAllocated;
+        if (event.shouldCommit()) {
+            event.phase = name;
+            event.statesIn = statesIn;
+            event.statesOut = statesOut;
+            event.allocatedBytes = allocated;
+            event.subsets = subsets;
+            event.frontierPeak = frontierPeak;
+            event.rounds = rounds;
+            event.commit();
+        }
+        if (Statistics.isEnabled())
+            Statistics.record(name, nanos, allocated, statesIn, statesOut, subsets, frontierPeak, rounds);
+    }
+
+    /**
+     * @return bytes allocated by the current thread so far, or 0 if the JVM cannot tell
+     */
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean)
+            return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        return 0;
+    }
+}
@@ -0,0 +1,38 @@
+package cz.cuni.mff.golyshet.stats;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event recorded for one phase of an operation.
+ * The duration of the event is the wall time of the phase.
+ * Counters that do not make sense for the phase are 0.
+ * All statistics must be in the package cz.cuni.mff.golyshet.stats
+ */
+@Name("cz.cuni.mff.golyshet.Phase")
+@Label("Automaton Phase")
+@Category({"Automata", "Operations"})
+@Description("One phase of an operation on automata")
+@StackTrace(false)
+class PhaseEvent extends Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("States In")
+    int statesIn;
+
+    @Label("States Out")
+    int statesOut;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+
+    @Label("Subsets Interned")
+    int subsets;
+
+    @Label("Frontier Peak")
+    int frontierPeak;
+
+    @Label("Refinement Rounds")
+    int rounds;
+}
@@ -0,0 +1,64 @@
+package cz.cuni.mff.golyshet.stats;
+
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects the statistics of the phases of all operations for the --stats report.
+ * Statistics of the same phase are summed, peaks are maximized.
+ * All statistics must be in the package cz.cuni.mff.golyshet.stats
+ */
+public final class Statistics {
+    private static volatile boolean enabled = false;
+    private static final Map<String, long[]> phases = new LinkedHashMap<>();
+
+    // Indexes of the counters of a phase
+    private static final int CALLS = 0, NANOS = 1, ALLOCATED = 2, STATES_IN = 3, STATES_OUT = 4, SUBSETS = 5, FRONTIER_PEAK = 6, ROUNDS = 7;
+
+    private Statistics() {
+    }
+
+    /**
+     * Enables collecting of the statistics
+     */
+    public static void enable() {
+        enabled = true;
+    }
+
+    /**
+     * @return true if the statistics are collected
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Adds the measurement of one phase
+     */
+    static synchronized void record(String phase, long nanos, long allocated, int statesIn, int statesOut,
+                                    int subsets, int frontierPeak, int rounds) {
+        long[] counters = phases.computeIfAbsent(phase, k -> new long[8]);
+        counters[CALLS]++;
+        counters[NANOS] += nanos;
+        counters[ALLOCATED] += allocated;
+        counters[STATES_IN] += statesIn;
+        counters[STATES_OUT] += statesOut;
+        counters[SUBSETS] += subsets;
+        counters[FRONTIER_PEAK] = Math.max(counters[FRONTIER_PEAK], frontierPeak);
+        counters[ROUNDS] += rounds;
+    }
+
+    /**
+     * Prints the report as CSV, one line per phase in the order in which the phases were first seen
+     * @param out stream to print the report to
+     */
+    public static synchronized void report(PrintStream out) {
+        out.println("phase,calls,time_ms,allocated_bytes,states_in,states_out,subsets,frontier_peak,rounds");
+        for (Map.Entry<String, long[]> entry : phases.entrySet()) {
+            long[] c = entry.getValue();
+            out.printf("%s,%d,%.3f,%d,%d,%d,%d,%d,%d%n", entry.getKey(), c[CALLS], c[NANOS] / 1e6, c[ALLOCATED],
+                    c[STATES_IN], c[STATES_OUT], c[SUBSETS], c[FRONTIER_PEAK], c[ROUNDS]);
+        }
+    }
+}
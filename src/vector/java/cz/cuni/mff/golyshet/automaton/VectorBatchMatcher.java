@@ -0,0 +1,57 @@
+package cz.cuni.mff.golyshet.automaton;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Matcher that runs a DFA on many short words at once, one word per lane of a vector.
+ * In every step the indexes state*(k+2)+symbol of all lanes are computed by vector arithmetic
+ * and the next states are loaded from the flat transition table by one gather.
+ * It uses the incubator module jdk.incubator.vector, so it is only created by BatchMatcher.create
+ * when the program runs with --add-modules jdk.incubator.vector.
+ * All automata must be in the package cz.cuni.mff.golyshet.automaton
+ */
+public class VectorBatchMatcher extends BatchMatcher {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    /**
+     * Builds the vector matcher, the states are numbered in their sorted order
+     * @param automaton DFA with exactly one initial state
+     */
+    public VectorBatchMatcher(Automaton automaton) {
+        super(automaton);
+    }
+
+    @Override
+    public void match(int[][] words, boolean[] results) {
+        int lanes = SPECIES.length();
+        int[] symbols = new int[0];
+        int[] indexes = new int[lanes];
+        int[] states = new int[lanes];
+        for (int start = 0; start < words.length; start += lanes) {
+            int used = Math.min(lanes, words.length - start);
+            int length = 0;
+            for (int lane = 0; lane < used; lane++)
+                length = Math.max(length, words[start + lane].length);
+
+            // Transpose the symbols of the group, so the symbols of one step are consecutive, missing ones are padding
+            if (symbols.length < length * lanes)
+                symbols = new int[length * lanes];
+            for (int lane = 0; lane < lanes; lane++) {
+                int[] word = lane < used ? words[start + lane] : new int[0];
+                for (int position = 0; position < length; position++)
+                    symbols[position * lanes + lane] = position < word.length ? word[position] : padding;
+            }
+
+            IntVector state = IntVector.broadcast(SPECIES, initial);
+            for (int position = 0; position < length; position++) {
+                IntVector symbol = IntVector.fromArray(SPECIES, symbols, position * lanes);
+                state.mul(columns).add(symbol).intoArray(indexes, 0);
+                state = IntVector.fromArray(SPECIES, table, 0, indexes, 0);
+            }
+            state.intoArray(states, 0);
+            for (int lane = 0; lane < used; lane++)
+                results[start + lane] = accepting[states[lane]];
+        }
+    }
+}
@@ -0,0 +1,276 @@
+#!/bin/bash
+# Performs the operations on the automata in the folder tests and compares the outputs with the files in tests/expected.
+# Usage: tests/check.sh from the root of the project after mvn compile, the checks of the benchmarks folder
+# are run too if it is built (mvn install in the root and mvn package in benchmarks).
+# The program ends with the exit code 1 if an output differs. Bash is needed for the connections to the server.
+cd "$(dirname "$0")/.." || exit 1
+MAIN="java -cp target/classes cz.cuni.mff.golyshet.Main"
+# The scheduler runs as many operations at once as there are processors, the checks of the scheduler need several
+PARALLEL="java -XX:ActiveProcessorCount=4 -cp target/classes cz.cuni.mff.golyshet.Main"
+BENCHMARKS="java -cp benchmarks/target/benchmarks.jar"
+failed=0
+
+# check <expected output> <arguments of the program>...
+check() {
+    expected=tests/expected/$1
+    shift
+    if $MAIN "$@" 2>/dev/null | diff -u "$expected" -; then
+        echo "ok $expected"
+    else
+        echo "FAILED $expected"
+        failed=1
+    fi
+}
+
+# harness <expected output> <class> <arguments>... runs a check of the benchmarks folder,
+# which ends with a non-zero exit code if it finds a difference itself
+harness() {
+    expected=tests/expected/$1
+    shift
+    if [ ! -f benchmarks/target/benchmarks.jar ]; then
+        echo "skipped $expected, benchmarks are not built"
+        return
+    fi
+    output=$(mktemp)
+    $BENCHMARKS "$@" 2>/dev/null > "$output"
+    status=$?
+    if [ $status -eq 0 ] && diff -u "$expected" "$output"; then
+        echo "ok $expected"
+    else
+        echo "FAILED $expected"
+        failed=1
+    fi
+    rm -f "$output"
+}
+
+# same <description> <arguments of the first run> -- <arguments of the second run> compares the outputs of two runs,
+# which must not fail
+same() {
+    description=$1
+    shift
+    first=""
+    while [ "$1" != "--" ]; do
+        first="$first $1"
+        shift
+    done
+    shift
+    output=$($MAIN $first 2>&1)
+    # Two runs failing the same way are not the same result
+    if [ -n "$output" ] && ! echo "$output" | grep -q "^Error" && [ "$output" = "$($MAIN "$@" 2>&1)" ]; then
+        echo "ok $description"
+    else
+        echo "FAILED $description"
+        failed=1
+    fi
+}
+
+# sharded <input> determinizes the input by two workers on the loopback and compares the result with the determinization in memory
+sharded() {
+    port=$((40000 + $$ % 20000))
+    log1=$(mktemp)
+    log2=$(mktemp)
+    $MAIN --worker $port > "$log1" 2>&1 &
+    worker1=$!
+    $MAIN --worker $((port + 1)) > "$log2" 2>&1 &
+    worker2=$!
+    # Wait until both workers listen, at most 10 seconds
+    for i in $(seq 100); do
+        grep -q "Worker listening" "$log1" && grep -q "Worker listening" "$log2" && break
+        sleep 0.1
+    done
+    same "sharded determinization of $1" --workers 127.0.0.1:$port,127.0.0.1:$((port + 1)) --determinization "$1" --out - \
+        -- --determinization "$1" --out -
+    kill $worker1 $worker2 2>/dev/null
+    wait $worker1 $worker2 2>/dev/null
+    rm -f "$log1" "$log2"
+}
+
+# ordered <description> <arguments of the first operations> -- <arguments of the last operation> runs all operations at once
+# and compares the output with the outputs of separate runs, which must be in command-line order
+ordered() {
+    description=$1
+    shift
+    first=""
+    while [ "$1" != "--" ]; do
+        first="$first $1"
+        shift
+    done
+    shift
+    if [ "$($PARALLEL $first "$@" 2>&1)" = "$($MAIN $first 2>&1; $MAIN "$@" 2>&1)" ]; then
+        echo "ok $description"
+    else
+        echo "FAILED $description"
+        failed=1
+    fi
+}
+
+# cancelled <expected output> <arguments of the program>... like check with operations run at once,
+# the program must end with an error within 30 seconds, so a failing operation has to cancel the others
+cancelled() {
+    expected=tests/expected/$1
+    shift
+    output=$(timeout 30 $PARALLEL "$@" 2>/dev/null)
+    status=$?
+    if [ $status -eq 1 ] && [ "$output" = "$(cat "$expected")" ]; then
+        echo "ok $expected"
+    else
+        echo "FAILED $expected (exit code $status)"
+        failed=1
+    fi
+}
+
+# normalize keeps the parts of the messages of exceeded budgets that do not depend on the speed of the machine,
+# the time and the heap, and for the limits other than states also the phase and the state count
+normalize() {
+    sed -E 's/, [0-9]+ ms, [0-9]+ MB heap$//; s/\((CANCELLED|DEADLINE|HEAP)\) in .*/(\1)/'
+}
+
+# budget <expected output> <arguments of the program>... like check for a run which must stop within 30 seconds
+# with an exceeded budget
+budget() {
+    expected=tests/expected/$1
+    shift
+    output=$(timeout 30 $MAIN "$@" 2>&1)
+    status=$?
+    if [ $status -eq 1 ] && echo "$output" | normalize | diff -u "$expected" -; then
+        echo "ok $expected"
+    else
+        echo "FAILED $expected (exit code $status)"
+        failed=1
+    fi
+}
+
+# session <expected output> <session> starts a server on a loopback port, sends it the lines of the session
+# (which must end by QUIT) and compares the normalized responses with the expected output
+session() {
+    expected=tests/expected/$1
+    port=$((40002 + $$ % 20000))
+    log=$(mktemp)
+    $MAIN --server $port > "$log" 2>&1 &
+    server=$!
+    for i in $(seq 100); do
+        grep -q "Listening" "$log" && break
+        sleep 0.1
+    done
+    if (exec 3<>/dev/tcp/127.0.0.1/$port && cat "$2" >&3 && timeout 60 cat <&3) | normalize | diff -u "$expected" -; then
+        echo "ok $expected"
+    else
+        echo "FAILED $expected"
+        failed=1
+    fi
+    kill $server 2>/dev/null
+    wait $server 2>/dev/null
+    rm -f "$log"
+}
+
+# watched <input> <changed input> watches the minimization of the concatenation of a copy of the input with tests/test_11.txt,
+# replaces the copy by the changed input and compares the updated result with a run on the changed input,
+# which must differ from the first result; the minimization of tests/test_11.txt must not be performed again
+watched() {
+    work=$(mktemp -d)
+    cp "$1" "$work/a.txt"
+    $MAIN --watch --concatenation "$work/a.txt" tests/test_11.txt --out "$work/c.txt" --minimization "$work/c.txt" --out "$work/m.txt" \
+        --minimization tests/test_11.txt --out "$work/other.txt" > /dev/null 2> "$work/log" &
+    watcher=$!
+    for i in $(seq 100); do
+        grep -q "Watching" "$work/log" && break
+        sleep 0.1
+    done
+    first=$(cat "$work/m.txt")
+    # The copy is replaced at once, so the watcher does not read it half-written
+    cp "$2" "$work/new.txt" && mv "$work/new.txt" "$work/a.txt"
+    for i in $(seq 100); do
+        grep -q "Updated" "$work/log" && break
+        sleep 0.1
+    done
+    kill $watcher 2>/dev/null
+    wait $watcher 2>/dev/null
+    expected=$($MAIN --concatenation "$2" tests/test_11.txt --out "$work/expected.txt" --minimization "$work/expected.txt" --out - 2>&1)
+    if grep -q "^Updated 2 of 3 operations" "$work/log" && [ "$(cat "$work/m.txt")" = "$expected" ] && [ "$first" != "$expected" ]; then
+        echo "ok watched update of $1 to $2"
+    else
+        echo "FAILED watched update of $1 to $2"
+        failed=1
+    fi
+    rm -rf "$work"
+}
+
+# resumed <input> <states> stops the external determinization of the input by a budget of states, continues it
+# from its checkpoint and compares the result with the determinization in memory;
+# the continued run must do only the levels after the checkpoint
+resumed() {
+    spill=$(mktemp -d)
+    $MAIN --spill "$spill/stopped" --max-states "$2" --determinization "$1" --out - > /dev/null 2>&1
+    stopped=$(sed -n 's/^level=//p' "$spill"/stopped/*/checkpoint 2>/dev/null)
+    $MAIN --stats --spill "$spill/stopped" --determinization "$1" --out "$spill/resumed.txt" > /dev/null 2> "$spill/resumed.csv"
+    $MAIN --stats --spill "$spill/new" --determinization "$1" --out - > /dev/null 2> "$spill/new.csv"
+    # The rounds of the phase are its levels
+    resumedLevels=$(sed -n 's/^externalSubsetConstruction,.*,//p' "$spill/resumed.csv")
+    newLevels=$(sed -n 's/^externalSubsetConstruction,.*,//p' "$spill/new.csv")
+    if [ -n "$stopped" ] && [ "$stopped" -gt 0 ] && [ "$((stopped + resumedLevels))" = "$newLevels" ] \
+            && [ "$(cat "$spill/resumed.txt")" = "$($MAIN --determinization "$1" --out - 2>&1)" ]; then
+        echo "ok resumed determinization of $1 from the level $stopped of $newLevels"
+    else
+        echo "FAILED resumed determinization of $1 (stopped at the level '$stopped', $resumedLevels of $newLevels levels after it)"
+        failed=1
+    fi
+    rm -rf "$spill"
+}
+
+check concatenation_test_1_test_11.txt --concatenation tests/test_1.txt tests/test_11.txt --out -
+check concatenation_dfa_partial.txt --concatenation tests/dfa_partial.txt tests/dfa_partial.txt --out -
+check concatenation_dfa_labelled_nfa.txt --concatenation tests/dfa_labelled_nfa.txt tests/dfa_partial.txt --out -
+check concatenation_dfa_labelled_epsilon.txt --concatenation tests/dfa_labelled_epsilon.txt tests/dfa_partial.txt --out -
+check star_dfa_partial.txt --star tests/dfa_partial.txt --out -
+check plus_dfa_partial.txt --plus tests/dfa_partial.txt --out -
+check optional_dfa_partial.txt --optional tests/dfa_partial.txt --out -
+check star_nfa_1initial_epsilon.txt --star tests/nfa_1initial_epsilon.txt --out -
+check optional_nfa_1initial_epsilon.txt --optional tests/nfa_1initial_epsilon.txt --out -
+check optional_test_11.txt --optional tests/test_11.txt --out -
+check count_test_1.txt --count 4 tests/test_1.txt --out -
+check count_nfa.txt --count 5 tests/nfa.txt --out -
+check count_dfa_partial.txt --count 70000 tests/dfa_partial.txt --out -
+check shortest_nfa.txt --shortest 6 tests/nfa.txt --out -
+check shortest_dfa_symbols.txt --shortest 4 tests/dfa_symbols.txt --out -
+check sample_dfa_partial.txt --sample 3 4 tests/dfa_partial.txt --out -
+check from_words.txt --from-words tests/words.txt --out -
+check from_words_empty.txt --from-words tests/words_empty.txt --out -
+ordered "printed results in command-line order" --determinization tests/test_5alpha_epsilon.txt --out - \
+    -- --minimization tests/nfa.txt --out -
+work=$(mktemp -d)
+same "operation reading the output of an earlier one" --union tests/test_1.txt tests/test_22.txt --out "$work/union.txt" \
+    --minimization "$work/union.txt" --out - -- --union tests/test_1.txt tests/test_22.txt --out -
+rm -rf "$work"
+# The union takes minutes unless it is cancelled
+cancelled scheduler_cancelled.txt --union tests/test_5alpha_epsilon.txt tests/test_5alpha.txt --out - \
+    --minimization tests/missing.txt --out -
+same "reduced minimization of tests/nfa_3alpha.txt" --reduce --minimization tests/nfa_3alpha.txt --out - -- --minimization tests/nfa_3alpha.txt --out -
+same "reduced minimization of tests/nfa_3initial.txt" --reduce --minimization tests/nfa_3initial.txt --out - -- --minimization tests/nfa_3initial.txt --out -
+same "reduced minimization of tests/nfa_4initial.txt" --reduce --minimization tests/nfa_4initial.txt --out - -- --minimization tests/nfa_4initial.txt --out -
+same "reduced minimization of tests/test_2.txt" --reduce --minimization tests/test_2.txt --out - -- --minimization tests/test_2.txt --out -
+same "reduced minimization of tests/test_33.txt" --reduce --minimization tests/test_33.txt --out - -- --minimization tests/test_33.txt --out -
+same "reduced minimization of tests/test_44.txt" --reduce --minimization tests/test_44.txt --out - -- --minimization tests/test_44.txt --out -
+same "reduced minimization of tests/test_5alpha_epsilon.txt" --reduce --minimization tests/test_5alpha_epsilon.txt --out - -- --minimization tests/test_5alpha_epsilon.txt --out -
+same "reduced union of tests/test_2.txt and tests/test_22.txt" --reduce --union tests/test_2.txt tests/test_22.txt --out - \
+    -- --union tests/test_2.txt tests/test_22.txt --out -
+same "reduced concatenation of tests/nfa_4initial.txt and tests/test_44.txt" --reduce --concatenation tests/nfa_4initial.txt tests/test_44.txt --out - \
+    -- --concatenation tests/nfa_4initial.txt tests/test_44.txt --out -
+session server_session.txt tests/server_session.txt
+# The union takes minutes unless the budget stops it
+budget budget_states.txt --max-states 100 --determinization tests/test_5alpha_epsilon.txt --out -
+budget budget_deadline.txt --deadline 1 --union tests/test_5alpha_epsilon.txt tests/test_5alpha.txt --out -
+budget budget_heap.txt --max-heap 20 --union tests/test_5alpha_epsilon.txt tests/test_5alpha.txt --out -
+session server_cancel.txt tests/server_cancel.txt
+watched tests/test_1.txt tests/test_2.txt
+resumed tests/test_5alpha_epsilon.txt 1000
+sharded tests/nfa_3initial.txt
+sharded tests/test_5alpha_epsilon.txt
+harness concatenation_check.txt cz.cuni.mff.golyshet.operation.ConcatenationCheck 400 1
+harness scan_error.txt cz.cuni.mff.golyshet.benchmark.ScannerCheck tests/scan_error.txt tests/scan_text.txt
+harness scan_ms.txt cz.cuni.mff.golyshet.benchmark.ScannerCheck tests/scan_ms.txt tests/scan_text.txt
+harness bit_parallel.txt cz.cuni.mff.golyshet.benchmark.BitParallelCheck 200 1
+harness compiled_matcher.txt cz.cuni.mff.golyshet.benchmark.CompiledMatcherCheck 200 1
+harness transitions.txt cz.cuni.mff.golyshet.benchmark.TransitionCheck tests/nfa_duplicate.txt
+harness word_index.txt cz.cuni.mff.golyshet.benchmark.WordIndexCheck tests/words.txt 100 1
+
+exit $failed